@@ -2,11 +2,13 @@ package calendar.controller;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.time.DateTimeException;
 import java.time.DayOfWeek;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.LocalTime;
 import java.time.ZoneId;
-import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
@@ -19,10 +21,15 @@ import javax.swing.SwingUtilities;
 
 import calendar.gui.ICalendarGUIView;
 import calendar.gui.CalendarGUIView;
+import calendar.model.CalendarBackend;
+import calendar.model.CalendarSession;
 import calendar.model.Event;
 import calendar.model.EventSeries;
 import calendar.model.ICalendarLibrary;
+import calendar.model.ICalendarModel;
 import calendar.model.IEvent;
+import calendar.model.TimeInterval;
+import calendar.model.ZoneShift;
 import calendar.view.ICalendarView;
 
 /**
@@ -30,13 +37,29 @@ import calendar.view.ICalendarView;
  */
 public class CalendarController implements ICalendarController {
   private final ICalendarLibrary library;
+  private final CalendarSession session;
   private final ICalendarView view;
   private ICalendarGUIView guiView;
+  private boolean failed;
   private static final DateTimeFormatter DATE_TIME_FORMAT =
           DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm");
 
   public CalendarController(ICalendarLibrary library, ICalendarView view) {
+    this(library, library.getDefaultSession(), view);
+  }
+
+  /**
+   * Makes a controller for one client of a shared library, which picks its calendar through
+   * its own session.
+   *
+   * @param library the shared library
+   * @param session the client's session on the library
+   * @param view    the client's view
+   */
+  public CalendarController(ICalendarLibrary library, CalendarSession session,
+                            ICalendarView view) {
     this.library = library;
+    this.session = session;
     this.view = view;
   }
 
@@ -53,6 +76,7 @@ public class CalendarController implements ICalendarController {
       handleCommand(command);
     } catch (IllegalArgumentException e) {
       if (e.getMessage() != null && e.getMessage().startsWith("Unrecognized command:")) {
+        failed = true;
         System.out.println("Unknown command: " + command);
       } else {
         throw e;
@@ -85,11 +109,15 @@ public class CalendarController implements ICalendarController {
   /**
    * Starts the interactive mode for user input in a loop.
    * Displays the welcome message and waits for user commands.
+   * A command that fails between begin and commit, by throwing or by reporting an error,
+   * rolls the transaction back, and the rest of it is skipped up to its commit or rollback;
+   * a transaction still open when the script ends is rolled back too.
    */
   @Override
   public void runHeadless(String filePath) {
     try (Scanner scanner = new Scanner(new File(filePath))) {
       boolean exitFound = false;
+      boolean skipping = false;
 
       while (scanner.hasNextLine()) {
         String line = scanner.nextLine().trim();
@@ -103,13 +131,29 @@ public class CalendarController implements ICalendarController {
           break;
         }
 
+        if (skipping) {
+          skipping = !line.equalsIgnoreCase("commit") && !line.equalsIgnoreCase("rollback");
+          continue;
+        }
+
+        failed = false;
         try {
           processCommand(line);
-        } catch (IllegalArgumentException | IllegalStateException e) {
+        } catch (IllegalArgumentException | IllegalStateException | DateTimeException e) {
           System.out.println("Error: " + e.getMessage());
+          failed = true;
+        }
+        if (failed && library.isInTransaction()) {
+          library.rollbackTransaction();
+          System.out.println("Transaction rolled back.");
+          skipping = true;
         }
       }
 
+      if (library.isInTransaction()) {
+        library.rollbackTransaction();
+        System.out.println("Error: transaction not committed, rolled back.");
+      }
       if (!exitFound) {
         System.out.println("Error: missing exit command.");
       }
@@ -159,12 +203,27 @@ public class CalendarController implements ICalendarController {
       handlePrintEvents(command);
     } else if (lower.startsWith("show status")) {
       handleShowStatus(command);
+    } else if (lower.startsWith("find free slots")) {
+      handleFindFreeSlots(command);
     } else if (lower.startsWith("switch calendar ")) {
       handleSwitchCalendar(command);
     } else if (lower.startsWith("rename calendar ")) {
       handleRenameCalendar(command);
+    } else if (lower.startsWith("delete events between ")) {
+      handleDeleteEventsBetween(command);
+    } else if (lower.startsWith("delete series ")) {
+      handleDeleteSeries(command);
     } else if (lower.startsWith("delete calendar ")) {
       handleDeleteCalendar(command);
+    } else if (lower.equals("begin")) {
+      library.beginTransaction();
+      System.out.println("Transaction started.");
+    } else if (lower.equals("commit")) {
+      library.commitTransaction();
+      System.out.println("Transaction committed.");
+    } else if (lower.equals("rollback")) {
+      library.rollbackTransaction();
+      System.out.println("Transaction rolled back.");
     } else if (lower.equals("list calendars")) {
       handleListCalendars();
     } else if (lower.startsWith("copy event ")) {
@@ -201,25 +260,22 @@ public class CalendarController implements ICalendarController {
    * @param command the input string for creating an all-day event
    */
   private void handlePrintEvents(String command) {
-    ZoneId currentTimezone = library.getActiveCalendar().getTimezone();
+    ZoneId currentTimezone = session.getActiveCalendar().getTimezone();
     List<String> formattedOutput = new ArrayList<>();
 
     if (command.contains(" on ")) {
       String dateStr = command.substring(command.indexOf(" on ") + 4).trim();
       LocalDate date = LocalDate.parse(dateStr, DateTimeFormatter.ISO_DATE);
-      List<IEvent> events = library.getActiveCalendar().getEventsOnDate(date);
+      List<IEvent> events = session.getActiveCalendar().getEventsOnDate(date);
 
       if (events.isEmpty()) {
         formattedOutput.add("No events on " + dateStr);
       } else {
+        ZoneShift shift = new ZoneShift(session.getActiveCalendar().getCreationTimezone(),
+                currentTimezone);
         for (IEvent e : events) {
-          ZoneId creationTimezone = library.getActiveCalendar().getCreationTimezone();
-
-          ZonedDateTime originalStart = e.getStart().atZone(creationTimezone);
-          ZonedDateTime zonedStart = originalStart.withZoneSameInstant(currentTimezone);
-
-          ZonedDateTime originalEnd = e.getEnd().atZone(creationTimezone);
-          ZonedDateTime zonedEnd = originalEnd.withZoneSameInstant(currentTimezone);
+          LocalDateTime zonedStart = shift.apply(e.getStart());
+          LocalDateTime zonedEnd = shift.apply(e.getEnd());
 
           String eventStr = "• \"" + e.getSubject() + "\" ("
                   + zonedStart.toLocalDate() + " "
@@ -268,10 +324,10 @@ public class CalendarController implements ICalendarController {
       handleRecurringTimedEvent(subject, start, end, endParts[1]);
     } else {
       Event event = new Event(subject, start, end);
-      if (library.getActiveCalendar().hasConflict(event)) {
+      if (session.getActiveCalendar().hasConflict(event)) {
         throw new IllegalArgumentException("Cannot create duplicate event.");
       }
-      library.getActiveCalendar().addEvent(event);
+      session.getActiveCalendar().addEvent(event);
       if (guiView != null) {
         guiView.showEvents(List.of(event));
       } else {
@@ -304,15 +360,96 @@ public class CalendarController implements ICalendarController {
     try {
       String dateTimeStr = command.substring(command.indexOf(" on ") + 4).trim();
       LocalDateTime dateTime = parseDateTime(dateTimeStr);
-      boolean isBusy = library.getActiveCalendar().isBusy(dateTime);
+      boolean isBusy = session.getActiveCalendar().isBusy(dateTime);
       if (isBusy) {
         System.out.println("busy");
       } else {
         System.out.println("available");
       }
     } catch (DateTimeParseException e) {
-      System.out.println("Error: Invalid date/time format. Use YYYY-MM-DDThh:mm");
+      reportFailure("Invalid date/time format. Use YYYY-MM-DDThh:mm");
+    }
+  }
+
+  /**
+   * Handles the "find free slots" command, which lists the first free stretches of working
+   * time, at least a given number of minutes long, shared by several calendars.
+   * Usage: find free slots --calendars A,B --from dt --to dt --duration minutes
+   * --hours HH:mm-HH:mm [--count n] [--timezone zone]. The range, hours and results are in
+   * the given timezone, or the active calendar's timezone if none is given.
+   *
+   * @param command the full "find free slots" command
+   */
+  private void handleFindFreeSlots(String command) {
+    String[] tokens = command.split("\\s+");
+    List<String> calendars = null;
+    LocalDateTime from = null;
+    LocalDateTime to = null;
+    Duration minLength = null;
+    LocalTime workStart = null;
+    LocalTime workEnd = null;
+    int count = 1;
+    ZoneId zone = null;
+    try {
+      for (int i = 0; i + 1 < tokens.length; i++) {
+        String value = tokens[i + 1];
+        switch (tokens[i].toLowerCase()) {
+          case "--calendars":
+            calendars = List.of(value.split(","));
+            break;
+          case "--from":
+            from = parseDateTime(value);
+            break;
+          case "--to":
+            to = parseDateTime(value);
+            break;
+          case "--duration":
+            minLength = Duration.ofMinutes(Long.parseLong(value));
+            break;
+          case "--hours":
+            String[] hours = value.split("-");
+            if (hours.length != 2) {
+              throw new IllegalArgumentException("Working hours must look like 09:00-17:00.");
+            }
+            workStart = LocalTime.parse(hours[0]);
+            workEnd = LocalTime.parse(hours[1]);
+            break;
+          case "--count":
+            count = Integer.parseInt(value);
+            break;
+          case "--timezone":
+            zone = ZoneId.of(value);
+            break;
+          default:
+            break;
+        }
+      }
+    } catch (DateTimeException | NumberFormatException e) {
+      reportFailure("Invalid value in find free slots: " + e.getMessage());
+      return;
+    }
+    if (calendars == null || from == null || to == null || minLength == null
+            || workStart == null) {
+      reportFailure("Missing --calendars, --from, --to, --duration or --hours argument.");
+      return;
+    }
+    if (zone == null) {
+      zone = session.getActiveCalendar().getTimezone();
+    }
+
+    List<TimeInterval> slots = library.findFreeSlots(calendars, from, to, zone, workStart,
+            workEnd, minLength, count);
+    List<String> formattedOutput = new ArrayList<>();
+    if (slots.isEmpty()) {
+      formattedOutput.add("No free slots found");
+    }
+    for (TimeInterval slot : slots) {
+      formattedOutput.add("• " + slot.getStart().toLocalDate() + " "
+              + String.format("%02d:%02d", slot.getStart().getHour(), slot.getStart().getMinute())
+              + " - "
+              + String.format("%02d:%02d", slot.getEnd().getHour(), slot.getEnd().getMinute()));
     }
+    view.displayFormattedEvents(formattedOutput);
   }
 
   /**
@@ -448,10 +585,10 @@ public class CalendarController implements ICalendarController {
     System.out.println("DEBUG: Timezone-aware handlePrintEvents() called.");
     EditCommand editCmd = parseEditCommand(command);
 
-    IEvent matchingEvent = library.getActiveCalendar().findEvent(editCmd.subject,
+    IEvent matchingEvent = session.getActiveCalendar().findEvent(editCmd.subject,
             editCmd.fromDateTime);
     if (matchingEvent == null) {
-      view.displayError("Error: Event not found.");
+      reportFailure("Event not found.");
       return;
     }
 
@@ -480,12 +617,12 @@ public class CalendarController implements ICalendarController {
    * @param newValue new value for the property
    */
   private void handleEditSingleEvent(IEvent event, String property, String newValue) {
-    boolean success = library.getActiveCalendar().editSingleEvent(event, property, newValue,
+    boolean success = session.getActiveCalendar().editSingleEvent(event, property, newValue,
             DATE_TIME_FORMAT);
     if (success) {
       System.out.println("Edited single event.");
     } else {
-      System.out.println("Error: Cannot edit event due to a scheduling conflict.");
+      reportFailure("Cannot edit event due to a scheduling conflict.");
     }
   }
 
@@ -498,7 +635,7 @@ public class CalendarController implements ICalendarController {
    * @param newValue new value for the property
    */
   private void handleEditFutureEvents(IEvent event, String property, String newValue) {
-    int count = library.getActiveCalendar().editFutureEvents(event, property, newValue,
+    int count = session.getActiveCalendar().editFutureEvents(event, property, newValue,
             DATE_TIME_FORMAT);
     System.out.println("Modified " + count + " future event(s) in the series.");
   }
@@ -511,7 +648,7 @@ public class CalendarController implements ICalendarController {
    * @param newValue new value for the property
    */
   private void handleEditWholeSeries(IEvent event, String property, String newValue) {
-    int count = library.getActiveCalendar().editWholeSeries(event, property, newValue,
+    int count = session.getActiveCalendar().editWholeSeries(event, property, newValue,
             DATE_TIME_FORMAT);
     System.out.println("Modified " + count + " event(s) in the entire series.");
   }
@@ -556,10 +693,10 @@ public class CalendarController implements ICalendarController {
       handleRecurringAllDayEvent(subject, start, end, parts[1]);
     } else {
       Event event = new Event(subject, start, end);
-      if (library.getActiveCalendar().hasConflict(event)) {
+      if (session.getActiveCalendar().hasConflict(event)) {
         throw new IllegalArgumentException("Cannot create duplicate event.");
       }
-      library.getActiveCalendar().addEvent(event);
+      session.getActiveCalendar().addEvent(event);
       System.out.println("Created all-day event: \"" + subject + "\"");
     }
   }
@@ -604,10 +741,7 @@ public class CalendarController implements ICalendarController {
                                                 String[] repeatParts, Set<DayOfWeek> days) {
     LocalDate untilDate = LocalDate.parse(repeatParts[2], DateTimeFormatter.ISO_DATE);
     EventSeries series = new EventSeries(subject, start, end, days, untilDate);
-    List<Event> events = series.getEvents();
-    for (Event event : events) {
-      library.getActiveCalendar().addEvent(event);
-    }
+    session.getActiveCalendar().addSeries(series);
   }
 
   /**
@@ -617,10 +751,7 @@ public class CalendarController implements ICalendarController {
                                           String[] repeatParts, Set<DayOfWeek> days) {
     int count = Integer.parseInt(repeatParts[2]);
     EventSeries series = new EventSeries(subject, start, end, days, count);
-    List<Event> events = series.getEvents();
-    for (Event event : events) {
-      library.getActiveCalendar().addEvent(event);
-    }
+    session.getActiveCalendar().addSeries(series);
   }
 
   /**
@@ -690,6 +821,7 @@ public class CalendarController implements ICalendarController {
     String[] tokens = command.split("\\s+");
     String name = null;
     String timezone = null;
+    CalendarBackend backend = CalendarBackend.STANDARD;
     for (int i = 0; i < tokens.length; i++) {
       if (tokens[i].equalsIgnoreCase("--name") && i + 1 < tokens.length) {
         name = tokens[i + 1];
@@ -697,12 +829,15 @@ public class CalendarController implements ICalendarController {
       if (tokens[i].equalsIgnoreCase("--timezone") && i + 1 < tokens.length) {
         timezone = tokens[i + 1];
       }
+      if (tokens[i].equalsIgnoreCase("--backend") && i + 1 < tokens.length) {
+        backend = CalendarBackend.fromName(tokens[i + 1]);
+      }
     }
     if (name != null && timezone != null) {
-      library.createCalendar(name, timezone);
+      library.createCalendar(name, timezone, backend);
       view.displayMessage("Created calendar \"" + name + "\" with timezone " + timezone);
     } else {
-      view.displayError("Missing --name or --timezone argument.");
+      reportFailure("Missing --name or --timezone argument.");
     }
   }
 
@@ -715,10 +850,10 @@ public class CalendarController implements ICalendarController {
       }
     }
     if (name != null) {
-      library.useCalendar(name);
+      session.useCalendar(name);
       view.displayMessage("Switched to calendar \"" + name + "\"");
     } else {
-      view.displayError("Missing --name argument.");
+      reportFailure("Missing --name argument.");
     }
   }
 
@@ -735,7 +870,7 @@ public class CalendarController implements ICalendarController {
       name = name.substring(1, name.length() - 1);
     }
 
-    library.useCalendar(name);
+    session.useCalendar(name);
     System.out.println("Switched to calendar \"" + name + "\"");
   }
 
@@ -799,6 +934,59 @@ public class CalendarController implements ICalendarController {
     System.out.println("Deleted calendar \"" + name + "\"");
   }
 
+  /**
+   * Handles the "delete events between" command, which removes every event of the active
+   * calendar that overlaps the range in one bulk operation.
+   * Usage: delete events between dt and dt.
+   *
+   * @param command the full "delete events between" command
+   */
+  private void handleDeleteEventsBetween(String command) {
+    String rest = command.substring("delete events between ".length()).trim();
+    String[] parts = rest.split(" and ");
+    if (parts.length != 2) {
+      throw new IllegalArgumentException("Missing 'and' in delete events command");
+    }
+    try {
+      int count = session.getActiveCalendar().removeRange(parseDateTime(parts[0].trim()),
+              parseDateTime(parts[1].trim()));
+      System.out.println("Deleted " + count + " event(s).");
+    } catch (DateTimeParseException e) {
+      reportFailure("Invalid date/time format. Use YYYY-MM-DDThh:mm");
+    }
+  }
+
+  /**
+   * Handles the "delete series" command, which removes every occurrence of the series the
+   * named event belongs to, or just that event if it is not part of a series.
+   * Usage: delete series subject from dt.
+   *
+   * @param command the full "delete series" command
+   */
+  private void handleDeleteSeries(String command) {
+    String remaining = command.substring("delete series ".length()).trim();
+    String quoted = extractQuotedSubjectRaw(remaining);
+    String subject = quoted.startsWith("\"") ? quoted.substring(1, quoted.length() - 1) : quoted;
+    remaining = remaining.substring(quoted.length()).trim();
+    if (!remaining.startsWith("from ")) {
+      throw new IllegalArgumentException("Missing 'from' in delete series command");
+    }
+
+    ICalendarModel calendar = session.getActiveCalendar();
+    IEvent event = calendar.findEvent(subject, parseDateTime(remaining.substring(5).trim()));
+    if (event == null) {
+      reportFailure("Event not found.");
+      return;
+    }
+    int count = 1;
+    if (event.getSeriesId() != null) {
+      count = calendar.removeSeries(event.getSeriesId());
+    } else {
+      calendar.removeEvent(event);
+    }
+    System.out.println("Deleted " + count + " event(s).");
+  }
+
   /**
    * Displays all existing calendar names.
    * Marks the currently active calendar with an asterisk.
@@ -813,7 +1001,7 @@ public class CalendarController implements ICalendarController {
 
     System.out.println("Calendars:");
     for (String name : names) {
-      if (name.equals(library.getCurrentCalendarName())) {
+      if (name.equals(session.getCurrentCalendarName())) {
         System.out.println("* " + name + " (active)");
       } else {
         System.out.println("  " + name);
@@ -845,14 +1033,14 @@ public class CalendarController implements ICalendarController {
       String destStr = command.substring(toIdx + 4).trim();
       LocalDateTime dest = parseDateTime(destStr);
 
-      boolean success = library.copyEventToCalendar(subject, sourceStart, targetCal, dest);
+      boolean success = session.copyEventToCalendar(subject, sourceStart, targetCal, dest);
       if (success) {
         System.out.println("Event copied successfully.");
       } else {
-        System.out.println("Error: Event not found or conflict in target calendar.");
+        reportFailure("Event not found or conflict in target calendar.");
       }
-    } catch (Exception e) {
-      System.out.println("Error: " + e.getMessage());
+    } catch (IllegalArgumentException | IllegalStateException | DateTimeException e) {
+      reportFailure(e.getMessage());
     }
   }
 
@@ -881,10 +1069,10 @@ public class CalendarController implements ICalendarController {
                 + "copy events on command.");
       }
 
-      int count = library.copyEventsOnDateToCalendar(sourceDate, targetCalendar, destinationDate);
+      int count = session.copyEventsOnDateToCalendar(sourceDate, targetCalendar, destinationDate);
       System.out.println("Copied " + count + " event(s).");
-    } catch (Exception e) {
-      System.out.println("Error: " + e.getMessage());
+    } catch (IllegalArgumentException | IllegalStateException | DateTimeException e) {
+      reportFailure(e.getMessage());
     }
   }
 
@@ -924,11 +1112,22 @@ public class CalendarController implements ICalendarController {
       int count = library.copyEventsBetweenDatesToCalendar(
               sourceCalendar, targetCalendar, startDate, endDate, destinationStartDate);
       System.out.println("Copied " + count + " event(s).");
-    } catch (Exception e) {
-      System.out.println("Error: " + e.getMessage());
+    } catch (IllegalArgumentException | IllegalStateException | DateTimeException e) {
+      reportFailure(e.getMessage());
     }
   }
 
+  /**
+   * Shows an error for a command that failed without throwing, and remembers that it failed
+   * so a headless transaction around it is rolled back.
+   *
+   * @param message the error to show
+   */
+  private void reportFailure(String message) {
+    failed = true;
+    view.displayError(message);
+  }
+
   /**
    * Sets the GUI view for the calendar application.
    *
@@ -960,7 +1159,7 @@ public class CalendarController implements ICalendarController {
    */
   @Override
   public List<Event> getEventsOnDate(LocalDate date) {
-    List<IEvent> events = library.getActiveCalendar().getEventsOnDate(date);
+    List<IEvent> events = session.getActiveCalendar().getEventsOnDate(date);
     List<Event> result = new ArrayList<>();
     for (IEvent e : events) {
       result.add((Event) e);
@@ -1,5 +1,6 @@
 package calendar.gui;
 
+import calendar.model.CalendarSession;
 import calendar.model.Event;
 import calendar.model.ICalendarLibrary;
 import calendar.model.IEvent;
@@ -14,8 +15,10 @@ import java.util.List;
  * This class processes user input from the GUI, modifies the model, and updates the view.
  */
 public class CalendarGUIController implements ICalendarGUIController {
-  private final ICalendarLibrary library;
+  private final CalendarSession session;
   private final ICalendarGUIView view;
+  private static final int PAGE_SIZE = 10;
+  private List<IEvent> currentPage;
 
   /**
    * Constructs a CalendarGUIController.
@@ -23,7 +26,7 @@ public class CalendarGUIController implements ICalendarGUIController {
    * @param view the GUI view
    */
   public CalendarGUIController(ICalendarLibrary library, ICalendarGUIView view) {
-    this.library = library;
+    this.session = library.getDefaultSession();
     this.view = view;
     this.view.setController(this);
   }
@@ -41,7 +44,7 @@ public class CalendarGUIController implements ICalendarGUIController {
       LocalDateTime startTime = LocalDateTime.parse(start);
       LocalDateTime endTime = LocalDateTime.parse(end);
       IEvent event = new Event(subject, startTime, endTime);
-      library.getActiveCalendar().addEvent(event);
+      session.getActiveCalendar().addEvent(event);
       view.showError("Event created.");
     } catch (Exception e) {
       view.showError("Error creating event: " + e.getMessage());
@@ -57,13 +60,34 @@ public class CalendarGUIController implements ICalendarGUIController {
   public void loadEventsFromDate(String date) {
     try {
       LocalDate startDate = LocalDate.parse(date);
-      List<IEvent> events = library.getActiveCalendar().getEventsFromDate(startDate);
+      List<IEvent> events = session.getActiveCalendar().getEventsFromDate(startDate, PAGE_SIZE);
+      currentPage = events;
       view.showEvents(events);
     } catch (Exception e) {
       view.showError("Error loading events: " + e.getMessage());
     }
   }
 
+  /**
+   * Loads and displays the page of events after the last event currently shown.
+   * The last shown event is the cursor, so paging forward never rescans earlier pages.
+   */
+  @Override
+  public void loadNextPage() {
+    if (currentPage == null || currentPage.isEmpty()) {
+      view.showError("No more events.");
+      return;
+    }
+    IEvent cursor = currentPage.get(currentPage.size() - 1);
+    List<IEvent> events = session.getActiveCalendar().getEventsAfter(cursor, PAGE_SIZE);
+    if (events.isEmpty()) {
+      view.showError("No more events.");
+      return;
+    }
+    currentPage = events;
+    view.showEvents(events);
+  }
+
   /**
    * Edits an existing event by removing the old event and adding a new event with updated values.
    * Displays error messages for parsing errors or model failures.
@@ -77,9 +101,9 @@ public class CalendarGUIController implements ICalendarGUIController {
     try {
       LocalDateTime newStartTime = LocalDateTime.parse(newStart);
       LocalDateTime newEndTime = LocalDateTime.parse(newEnd);
-      library.getActiveCalendar().removeEvent(event);
+      session.getActiveCalendar().removeEvent(event);
       Event updatedEvent = new Event(newSubject, newStartTime, newEndTime);
-      library.getActiveCalendar().addEvent(updatedEvent);
+      session.getActiveCalendar().addEvent(updatedEvent);
       view.showError("Event updated.");
       loadEventsFromDate(newStartTime.toLocalDate().toString());
     } catch (DateTimeParseException e1) {
@@ -62,6 +62,8 @@ public class CalendarGUIView extends JFrame implements ICalendarGUIView {
     topPanel.add(dateField);
     JButton viewButton = new JButton("View Schedule");
     topPanel.add(viewButton);
+    JButton nextButton = new JButton("Next Page");
+    topPanel.add(nextButton);
 
     JScrollPane scrollPane = new JScrollPane(eventList);
     scrollPane.setBorder(new TitledBorder("Schedule View"));
@@ -83,6 +85,7 @@ public class CalendarGUIView extends JFrame implements ICalendarGUIView {
     createButton.addActionListener(e -> handleCreateEvent());
     clearButton.addActionListener(e -> clearFields());
     viewButton.addActionListener(e -> handleViewSchedule());
+    nextButton.addActionListener(e -> controller.loadNextPage());
     editButton.addActionListener(e -> handleEditEvent());
   }
 
@@ -24,6 +24,12 @@ public interface ICalendarGUIController {
    */
   void loadEventsFromDate(String date);
 
+  /**
+   * Loads and displays the page of events that follows the one currently shown.
+   * Displays an error message if there is no earlier page or no more events.
+   */
+  void loadNextPage();
+
   /**
    * Edits an existing event by removing the old event and adding a new event with updated values.
    * Displays error messages for parsing errors or model failures.
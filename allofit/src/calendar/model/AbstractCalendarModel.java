@@ -0,0 +1,466 @@
+package calendar.model;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * The parts of a calendar that do not depend on how its events are stored:
+ * timezones, building modified copies of events, and editing single events or series
+ * by replacing stored events with their modified copies.
+ * Subclasses supply storage, lookups and queries.
+ */
+public abstract class AbstractCalendarModel implements ICalendarModel {
+  protected static final int DEFAULT_PAGE_SIZE = 10;
+  private volatile ZoneId timezone;
+  private final ZoneId creationTimezone;
+  private final StringDictionary strings;
+  private UndoJournal journal;
+
+  /**
+   * Makes the shared part of a calendar in the given timezone.
+   *
+   * @param timezone the current timezone we are in
+   */
+  protected AbstractCalendarModel(ZoneId timezone) {
+    this.timezone = timezone;
+    this.creationTimezone = timezone;
+    this.strings = new StringDictionary();
+    this.journal = null;
+  }
+
+  /**
+   * Adds a batch by checking it whole, then adding each event. If a store still rejects an
+   * event part way through, the events already added are removed again.
+   *
+   * @param batch the events to add
+   */
+  @Override
+  public void addEvents(Collection<? extends IEvent> batch) {
+    checkBatch(batch);
+    List<IEvent> added = new ArrayList<>(batch.size());
+    try {
+      for (IEvent event : batch) {
+        addEvent(event);
+        added.add(event);
+      }
+    } catch (RuntimeException e) {
+      for (IEvent event : added) {
+        removeEvent(event);
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * Adds a series by building all of its occurrences and adding them as one batch.
+   *
+   * @param series the series
+   */
+  @Override
+  public void addSeries(IEventSeries series) {
+    addEvents(series.getEvents());
+  }
+
+  /**
+   * Checks in one pass that no event in a batch duplicates another in the batch or one
+   * already stored.
+   *
+   * @param batch the events about to be added
+   * @throws IllegalArgumentException if there is a duplicate
+   */
+  protected void checkBatch(Collection<? extends IEvent> batch) {
+    Set<EventKey> keys = new HashSet<>(batch.size() * 2);
+    for (IEvent event : batch) {
+      if (!keys.add(EventKey.of(event)) || hasConflict(event)) {
+        throw new IllegalArgumentException("Cannot add two events with the same subject");
+      }
+    }
+  }
+
+  /**
+   * Removes a batch by checking that every event in it is stored, then removing each one.
+   *
+   * @param batch the events to remove
+   */
+  @Override
+  public void removeEvents(Collection<? extends IEvent> batch) {
+    checkRemoval(batch);
+    for (IEvent event : batch) {
+      removeEvent(event);
+    }
+  }
+
+  /**
+   * Checks in one pass that every event in a batch is stored and listed only once.
+   *
+   * @param batch the events about to be removed
+   * @throws IllegalArgumentException if an event is not found
+   */
+  protected void checkRemoval(Collection<? extends IEvent> batch) {
+    Set<EventKey> keys = new HashSet<>(batch.size() * 2);
+    for (IEvent event : batch) {
+      if (!keys.add(EventKey.of(event)) || !hasConflict(event)) {
+        throw new IllegalArgumentException("Event not found in calendar");
+      }
+    }
+  }
+
+  /**
+   * Removes the events getEventsWithinDates finds for the range as one batch.
+   *
+   * @param start the start of the range
+   * @param end   the end of the range
+   * @return the number of events removed
+   */
+  @Override
+  public int removeRange(LocalDateTime start, LocalDateTime end) {
+    checkRange(start, end);
+    List<IEvent> doomed = getEventsWithinDates(start, end);
+    removeEvents(doomed);
+    return doomed.size();
+  }
+
+  /**
+   * Checks that a range to remove does not end before it starts.
+   *
+   * @param start the start of the range
+   * @param end   the end of the range
+   * @throws IllegalArgumentException if end is before start
+   */
+  protected static void checkRange(LocalDateTime start, LocalDateTime end) {
+    if (end.isBefore(start)) {
+      throw new IllegalArgumentException("End of range must not be before its start.");
+    }
+  }
+
+  /**
+   * Removes the stored occurrences of a series as one batch.
+   *
+   * @param seriesId the series to remove
+   * @return the number of events removed
+   */
+  @Override
+  public int removeSeries(UUID seriesId) {
+    NavigableSet<IEvent> occurrences = getSeriesOccurrences(seriesId);
+    if (occurrences == null) {
+      return 0;
+    }
+    List<IEvent> doomed = new ArrayList<>(occurrences);
+    removeEvents(doomed);
+    return doomed.size();
+  }
+
+  @Override
+  public void beginTransaction() {
+    if (journal != null) {
+      throw new IllegalArgumentException("A transaction is already open.");
+    }
+    journal = new UndoJournal();
+  }
+
+  @Override
+  public void commitTransaction() {
+    if (journal == null) {
+      throw new IllegalArgumentException("No transaction is open.");
+    }
+    journal = null;
+  }
+
+  /**
+   * Rolls back by running the journaled inverse operations through addEvent and removeEvent,
+   * after recording has stopped so the undo is not itself journaled.
+   */
+  @Override
+  public void rollbackTransaction() {
+    if (journal == null) {
+      throw new IllegalArgumentException("No transaction is open.");
+    }
+    UndoJournal undo = journal;
+    journal = null;
+    undo.undo(this);
+  }
+
+  @Override
+  public boolean isInTransaction() {
+    return journal != null;
+  }
+
+  /**
+   * Journals an event a store has just added, if a transaction is open.
+   *
+   * @param event the added event, with every field it was stored with
+   */
+  protected void recordAdded(IEvent event) {
+    if (journal != null) {
+      journal.recordAdded(event);
+    }
+  }
+
+  /**
+   * Journals an event a store has just removed, if a transaction is open.
+   *
+   * @param event the removed event, with every field it was stored with
+   */
+  protected void recordRemoved(IEvent event) {
+    if (journal != null) {
+      journal.recordRemoved(event);
+    }
+  }
+
+  /**
+   * Replaces the subject, location and description of an event about to be stored with the
+   * calendar's shared copies, so repeated text costs one reference per event.
+   *
+   * @param event the event to canonicalize
+   */
+  protected void canonicalize(IEvent event) {
+    event.setSubject(strings.canonicalize(event.getSubject()));
+    event.setLocation(strings.canonicalize(event.getLocation()));
+    event.setDescription(strings.canonicalize(event.getDescription()));
+  }
+
+  /**
+   * Gets the dictionary this calendar uses to share repeated event text.
+   *
+   * @return the string dictionary, for observing its size and hit rate
+   */
+  public StringDictionary getStringDictionary() {
+    return strings;
+  }
+
+  /**
+   * Gets the stored occurrences of a series, sorted by start, end and subject.
+   *
+   * @param seriesId the series to look up
+   * @return the occurrences, or null if the series has no events in this calendar
+   */
+  protected abstract NavigableSet<IEvent> getSeriesOccurrences(UUID seriesId);
+
+  /**
+   * Creates a new Event object by copying all fields of `base`, then changing exactly one property.
+   * The returned Event preserves the original seriesId if it was non-null.
+   *
+   * @param base      the existing Event to copy
+   * @param property  which property to change
+   * @param newValue  the new value for that property
+   * @param formatter the DateTimeFormatter used to parse date/time values
+   * @return a brand‐new Event reflecting the single change
+   * @throws IllegalArgumentException if property is unrecognized or newValue is badly formatted
+   */
+  public IEvent createModifiedEvent(Event base, String property, String newValue,
+                                    DateTimeFormatter formatter) {
+    IEvent copy = new Event(
+            base.getSubject(),
+            base.getStart(),
+            base.getEnd(),
+            base.getLocation(),
+            base.getDescription(),
+            base.getStatus());
+
+    if (base.getSeriesId() != null) {
+      copy.setSeriesId(base.getSeriesId());
+    }
+
+    switch (property.toLowerCase()) {
+      case "subject":
+        copy.setSubject(newValue);
+        break;
+      case "start":
+        LocalDateTime newStart = LocalDateTime.parse(newValue, formatter);
+        copy.setStart(newStart);
+        break;
+      case "end":
+        LocalDateTime newEnd = LocalDateTime.parse(newValue, formatter);
+        copy.setEnd(newEnd);
+        break;
+      case "location":
+        copy.setLocation(newValue);
+        break;
+      case "description":
+        copy.setDescription(newValue);
+        break;
+      case "status":
+        copy.setPublic(newValue.equalsIgnoreCase("public") || newValue.equalsIgnoreCase("true"));
+        break;
+      default:
+        throw new IllegalArgumentException("Invalid property: " + property);
+    }
+
+    return copy;
+  }
+
+  /**
+   * Edits a single event by creating a modified copy with one updated property.
+   * If the modified event conflicts with existing events, the change is aborted.
+   *
+   * @param event     the original event to edit
+   * @param property  the name of the property to modify
+   * @param newValue  the new value to assign to the property
+   * @param formatter the formatter to parse new date/time values if needed
+   * @return true if the event was successfully edited; false if there was a conflict
+   */
+  public boolean editSingleEvent(IEvent event, String property, String newValue,
+                                 DateTimeFormatter formatter) {
+    IEvent modified = createModifiedEvent((Event) event, property, newValue, formatter);
+
+    if (conflictsWithOthers(event, modified)) {
+      return false;
+    }
+
+    removeEvent(event);
+    addEvent(modified);
+    return true;
+  }
+
+  /**
+   * Checks whether replacing an event with its modified copy would duplicate some other event.
+   * A copy that keeps the original's subject, start and end only replaces the original.
+   *
+   * @param original the stored event being edited
+   * @param modified the edited copy
+   * @return true if the copy would duplicate a different event
+   */
+  protected boolean conflictsWithOthers(IEvent original, IEvent modified) {
+    return !EventKey.of(original).equals(EventKey.of(modified)) && hasConflict(modified);
+  }
+
+  /**
+   * Edits all future events in the same recurring series as the given event,
+   * starting from the given event's start time.
+   * If the event is not part of a series, edits only that one event.
+   * Skips conflicting events and does not modify them.
+   *
+   * @param event     the base event to edit from
+   * @param property  the property to change
+   * @param newValue  the new value for the property
+   * @param formatter the formatter to parse date/time values
+   * @return the number of events successfully modified
+   */
+  public int editFutureEvents(IEvent event, String property, String newValue,
+                              DateTimeFormatter formatter) {
+    Event base = (Event) event;
+
+    UUID seriesId = base.getSeriesId();
+    if (seriesId == null) {
+      boolean success = editSingleEvent(event, property, newValue, formatter);
+      if (success) {
+        return 1;
+      } else {
+        return 0;
+      }
+    }
+
+    NavigableSet<IEvent> occurrences = getSeriesOccurrences(seriesId);
+    if (occurrences == null) {
+      return 0;
+    }
+
+    LocalDateTime baseStart = base.getStart();
+    List<IEvent> future = new ArrayList<>();
+    for (IEvent e : occurrences.headSet(base, false).descendingSet()) {
+      if (e.getStart().isBefore(baseStart)) {
+        break;
+      }
+      future.add(e);
+    }
+    future.addAll(occurrences.tailSet(base, true));
+
+    return replaceAll(future, property, newValue, formatter);
+  }
+
+  /**
+   * Replaces each of the given stored events with a copy that has one property changed,
+   * skipping any copy that would duplicate an existing event.
+   *
+   * @param targets   the stored events to edit
+   * @param property  the property to change
+   * @param newValue  the new value for the property
+   * @param formatter the formatter to parse date/time values
+   * @return the number of events successfully modified
+   */
+  protected int replaceAll(List<IEvent> targets, String property, String newValue,
+                         DateTimeFormatter formatter) {
+    int count = 0;
+    for (IEvent e : targets) {
+      IEvent modified = createModifiedEvent((Event) e, property, newValue, formatter);
+      if (!conflictsWithOthers(e, modified)) {
+        removeEvent(e);
+        addEvent(modified);
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Edits all events in the recurring series to which the given event belongs.
+   * If the event is not part of a series, edits only that one event.
+   * Skips conflicting events and does not modify them.
+   *
+   * @param event     the base event in the series
+   * @param property  the property to change
+   * @param newValue  the new value for that property
+   * @param formatter the formatter to parse date/time values
+   * @return the number of events successfully modified
+   */
+  public int editWholeSeries(IEvent event, String property, String newValue,
+                             DateTimeFormatter formatter) {
+
+    UUID seriesId = event.getSeriesId();
+    if (seriesId == null) {
+      boolean success = editSingleEvent(event, property, newValue, formatter);
+      if (success) {
+        return 1;
+      } else {
+        return 0;
+      }
+    }
+
+    NavigableSet<IEvent> occurrences = getSeriesOccurrences(seriesId);
+    if (occurrences == null) {
+      return 0;
+    }
+    return replaceAll(new ArrayList<>(occurrences), property, newValue, formatter);
+  }
+
+  @Override
+  public ZoneId getTimezone() {
+    return timezone;
+  }
+
+  @Override
+  public void setTimezone(ZoneId timezone) {
+    this.timezone = timezone;
+  }
+
+  @Override
+  public ZoneId getCreationTimezone() {
+    return creationTimezone;
+  }
+
+  @Override
+  public List<IEvent> getEventsFromDate(LocalDate date) {
+    return getEventsFromDate(date, DEFAULT_PAGE_SIZE);
+  }
+
+  /**
+   * Gets a read-only view of the calendar as it is now, built by copying every event into a
+   * new tree. Stores that keep their own persistent tree override this to take it in O(1).
+   *
+   * @return the snapshot
+   */
+  @Override
+  public ICalendarModel snapshot() {
+    return new CalendarSnapshot(EventIntervalTree.of(getEvents()), getTimezone(),
+            getCreationTimezone());
+  }
+}
@@ -0,0 +1,196 @@
+package calendar.model;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Marks, minute by minute, when a calendar is busy, using 1440 bits per day.
+ * Days are stored sparsely, so only days with events take space.
+ * Two bits are kept for each minute m:
+ * "covered" is set if some event is in progress at some point during [m, m+1), and
+ * "inside" is set if some event starts strictly before m and ends strictly after it.
+ * For events on whole minutes, whether the calendar is busy at a time is then a single
+ * bit test: the inside bit for a time on a whole minute, the covered bit otherwise.
+ * The bits only say whether some event covers a minute, not how many, so whoever removes an
+ * event must clear its minutes and then mark again the events still overlapping them.
+ */
+final class BusyBitmap {
+  private static final int MINUTES_PER_DAY = 1440;
+  private static final int WORDS_PER_DAY = (MINUTES_PER_DAY + 63) / 64;
+  private static final int INSIDE = WORDS_PER_DAY;
+
+  private final Map<Long, long[]> days;
+
+  /**
+   * Makes an empty bitmap.
+   */
+  BusyBitmap() {
+    this.days = new HashMap<>();
+  }
+
+  /**
+   * Counts the minutes in a range during which some event is in progress, for any list of
+   * events, by building a bitmap of them.
+   *
+   * @param events the events, which may extend past the range
+   * @param from   the first minute of the range
+   * @param to     the first minute after the range
+   * @return the number of busy minutes
+   */
+  static long countBusyMinutes(Iterable<IEvent> events, long from, long to) {
+    BusyBitmap bitmap = new BusyBitmap();
+    for (IEvent event : events) {
+      bitmap.add(EpochMinutes.floor(event.getStart()), EpochMinutes.ceil(event.getEnd()));
+    }
+    return bitmap.countCovered(from, to);
+  }
+
+  /**
+   * Gets the minute range an event touches.
+   *
+   * @param event the event
+   * @return its first minute and the first minute after it
+   */
+  static long[] minutesOf(IEvent event) {
+    return new long[] {EpochMinutes.floor(event.getStart()), EpochMinutes.ceil(event.getEnd())};
+  }
+
+  /**
+   * Marks an event running from start up to end as busy.
+   *
+   * @param start the event's first minute
+   * @param end   the first minute after the event
+   */
+  void add(long start, long end) {
+    setRange(0, start, end, true);
+    setRange(INSIDE, start + 1, end, true);
+  }
+
+  /**
+   * Clears the bits an event running from start up to end would have set.
+   * Other events overlapping those minutes must then be added again, cut to the same range.
+   *
+   * @param start the event's first minute
+   * @param end   the first minute after the event
+   */
+  void clear(long start, long end) {
+    setRange(0, start, end, false);
+    setRange(INSIDE, start + 1, end, false);
+  }
+
+  /**
+   * Checks whether the calendar is busy at a time, assuming every event is on whole minutes.
+   *
+   * @param time the time to check
+   * @return true if some event starts before and ends after the time
+   */
+  boolean isBusy(LocalDateTime time) {
+    long minute = EpochMinutes.floor(time);
+    if (time.getSecond() == 0 && time.getNano() == 0) {
+      return test(INSIDE, minute);
+    }
+    return test(0, minute);
+  }
+
+  /**
+   * Counts the minutes from from up to to during which some event is in progress.
+   *
+   * @param from the first minute to count
+   * @param to   the first minute not to count
+   * @return the number of busy minutes
+   */
+  long countCovered(long from, long to) {
+    long count = 0;
+    long minute = from;
+    while (minute < to) {
+      long day = Math.floorDiv(minute, MINUTES_PER_DAY);
+      int first = (int) (minute - day * MINUTES_PER_DAY);
+      int last = (int) Math.min(MINUTES_PER_DAY, to - day * MINUTES_PER_DAY);
+      long[] words = days.get(day);
+      if (words != null) {
+        for (int word = first >>> 6; word <= (last - 1) >>> 6; word++) {
+          count += Long.bitCount(words[word] & mask(word, first, last));
+        }
+      }
+      minute = (day + 1) * MINUTES_PER_DAY;
+    }
+    return count;
+  }
+
+  /**
+   * Gets the number of days that have at least one busy minute.
+   *
+   * @return the number of stored days
+   */
+  int dayCount() {
+    return days.size();
+  }
+
+  /**
+   * Gets the days that have at least one busy minute, as days since the epoch.
+   *
+   * @return the stored days, in no particular order
+   */
+  Set<Long> days() {
+    return Collections.unmodifiableSet(days.keySet());
+  }
+
+  private boolean test(int offset, long minute) {
+    long day = Math.floorDiv(minute, MINUTES_PER_DAY);
+    long[] words = days.get(day);
+    if (words == null) {
+      return false;
+    }
+    int bit = (int) (minute - day * MINUTES_PER_DAY);
+    return (words[offset + (bit >>> 6)] & (1L << bit)) != 0;
+  }
+
+  private void setRange(int offset, long from, long to, boolean value) {
+    long minute = from;
+    while (minute < to) {
+      long day = Math.floorDiv(minute, MINUTES_PER_DAY);
+      int first = (int) (minute - day * MINUTES_PER_DAY);
+      int last = (int) Math.min(MINUTES_PER_DAY, to - day * MINUTES_PER_DAY);
+      long[] words = days.get(day);
+      if (words == null && value) {
+        words = new long[2 * WORDS_PER_DAY];
+        days.put(day, words);
+      }
+      if (words != null) {
+        for (int word = first >>> 6; word <= (last - 1) >>> 6; word++) {
+          if (value) {
+            words[offset + word] |= mask(word, first, last);
+          } else {
+            words[offset + word] &= ~mask(word, first, last);
+          }
+        }
+        if (!value && isEmpty(words)) {
+          days.remove(day);
+        }
+      }
+      minute = (day + 1) * MINUTES_PER_DAY;
+    }
+  }
+
+  /**
+   * Gets the bits of one word that fall within minutes first up to last of the day.
+   */
+  private static long mask(int word, int first, int last) {
+    int low = Math.max(first - word * 64, 0);
+    int high = Math.min(last - word * 64, 64);
+    long upTo = high == 64 ? -1L : (1L << high) - 1;
+    return upTo & (-1L << low);
+  }
+
+  private static boolean isEmpty(long[] words) {
+    for (long word : words) {
+      if (word != 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
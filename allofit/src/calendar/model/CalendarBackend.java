@@ -0,0 +1,74 @@
+package calendar.model;
+
+import java.time.ZoneId;
+
+/**
+ * The ways a calendar can store its events, chosen when the calendar is created.
+ */
+public enum CalendarBackend {
+  /**
+   * Indexed storage for a calendar used by one thread at a time.
+   */
+  STANDARD {
+    @Override
+    public ICalendarModel create(ZoneId timezone) {
+      return new CalendarModel(timezone);
+    }
+  },
+
+  /**
+   * Skip list storage that many threads can read and write at once.
+   */
+  CONCURRENT {
+    @Override
+    public ICalendarModel create(ZoneId timezone) {
+      return new ConcurrentCalendarModel(timezone);
+    }
+  },
+
+  /**
+   * Compact primitive-array storage, for large calendars whose times fall on whole minutes.
+   */
+  COLUMNAR {
+    @Override
+    public ICalendarModel create(ZoneId timezone) {
+      return new ColumnarCalendarModel(timezone);
+    }
+  },
+
+  /**
+   * Direct-memory storage outside the Java heap, for very large calendars whose times fall on
+   * whole minutes.
+   */
+  OFF_HEAP {
+    @Override
+    public ICalendarModel create(ZoneId timezone) {
+      return new OffHeapCalendarModel(timezone);
+    }
+  };
+
+  /**
+   * Makes an empty calendar that stores its events this way.
+   *
+   * @param timezone the timezone of the new calendar
+   * @return the new calendar
+   */
+  public abstract ICalendarModel create(ZoneId timezone);
+
+  /**
+   * Gets the backend with the given name, ignoring case.
+   *
+   * @param name the backend name, such as "standard" or "concurrent"
+   * @return the matching backend
+   * @throws IllegalArgumentException if no backend has that name
+   */
+  public static CalendarBackend fromName(String name) {
+    for (CalendarBackend backend : values()) {
+      if (backend.name().replace('_', '-').equalsIgnoreCase(name)
+              || backend.name().equalsIgnoreCase(name)) {
+        return backend;
+      }
+    }
+    throw new IllegalArgumentException("Unknown calendar backend: " + name);
+  }
+}
@@ -1,14 +1,19 @@
 package calendar.model;
 
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.time.ZoneId;
-import java.time.ZonedDateTime;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
 
 /**
  * Represents a library of calendars, each associated with a unique name and timezone.
@@ -18,15 +23,36 @@ import java.util.Set;
 public class CalendarLibrary implements ICalendarLibrary {
   private final Map<String, ICalendarModel> calendars;
   private final Map<String, ZoneId> calendarTimezones;
-  private String currentCalendar;
+  private final Map<ICalendarModel, String> names;
+  private final boolean concurrent;
+  private final CalendarSession defaultSession;
+  private volatile boolean inTransaction;
 
   /**
    * Constructs an empty CalendarLibrary with no calendars.
    */
   public CalendarLibrary() {
-    this.calendars = new HashMap<>();
-    this.calendarTimezones = new HashMap<>();
-    this.currentCalendar = null;
+    this(false);
+  }
+
+  /**
+   * Constructs an empty CalendarLibrary, optionally safe for many threads at once.
+   * A concurrent library keeps its calendars in concurrent maps and guards each calendar it
+   * creates with its own StampedLock: queries read optimistically, writes lock only the
+   * calendar they change, and copies lock their two calendars in a fixed order. Threads
+   * working on different calendars never wait for each other. Each thread should pick its
+   * calendar through its own {@link #openSession() session}. Library-wide transactions are
+   * still meant for one thread.
+   *
+   * @param concurrent true to make the library safe for concurrent use
+   */
+  public CalendarLibrary(boolean concurrent) {
+    this.calendars = concurrent ? new ConcurrentHashMap<>() : new HashMap<>();
+    this.calendarTimezones = concurrent ? new ConcurrentHashMap<>() : new HashMap<>();
+    this.names = concurrent ? new ConcurrentHashMap<>() : new HashMap<>();
+    this.concurrent = concurrent;
+    this.defaultSession = new CalendarSession(this);
+    this.inTransaction = false;
   }
 
   /**
@@ -37,6 +63,20 @@ public class CalendarLibrary implements ICalendarLibrary {
    * @throws IllegalArgumentException if the name already exists or the timezone is invalid
    */
   public void createCalendar(String name, String timezoneString) {
+    createCalendar(name, timezoneString, CalendarBackend.STANDARD);
+  }
+
+  /**
+   * Creates a new calendar with the given name and timezone that stores its events
+   * with the given backend.
+   *
+   * @param name           the unique name for the calendar
+   * @param timezoneString the string ID of the desired timezone
+   * @param backend        how the new calendar stores its events
+   * @throws IllegalArgumentException if the name already exists or the timezone is invalid
+   */
+  public void createCalendar(String name, String timezoneString, CalendarBackend backend) {
+    checkNoTransaction();
     if (calendars.containsKey(name)) {
       throw new IllegalArgumentException("Calendar name already exists.");
     }
@@ -48,8 +88,50 @@ public class CalendarLibrary implements ICalendarLibrary {
       throw new IllegalArgumentException("Invalid timezone: " + timezoneString);
     }
 
-    calendars.put(name, new CalendarModel(zone));
+    ICalendarModel calendar = backend.create(zone);
+    if (concurrent) {
+      calendar = new LockedCalendar(calendar);
+    }
+    if (calendars.putIfAbsent(name, calendar) != null) {
+      throw new IllegalArgumentException("Calendar name already exists.");
+    }
     calendarTimezones.put(name, zone);
+    names.put(calendar, name);
+  }
+
+  /**
+   * Opens a new session on this library with no calendar in use. Each client that shares the
+   * library should work through its own session.
+   *
+   * @return the new session
+   */
+  @Override
+  public CalendarSession openSession() {
+    return new CalendarSession(this);
+  }
+
+  /**
+   * Gets the session behind this library's own useCalendar, getActiveCalendar and copy
+   * methods.
+   *
+   * @return the library's default session
+   */
+  @Override
+  public CalendarSession getDefaultSession() {
+    return defaultSession;
+  }
+
+  ICalendarModel calendarNamed(String name) {
+    return calendars.get(name);
+  }
+
+  /**
+   * Gets the current name of a calendar.
+   *
+   * @return the name, or null if the calendar is not in this library
+   */
+  String nameOf(ICalendarModel calendar) {
+    return names.get(calendar);
   }
 
   /**
@@ -59,10 +141,7 @@ public class CalendarLibrary implements ICalendarLibrary {
    * @throws IllegalArgumentException if the calendar does not exist
    */
   public void useCalendar(String name) {
-    if (!calendars.containsKey(name)) {
-      throw new IllegalArgumentException("No such calendar exists.");
-    }
-    this.currentCalendar = name;
+    defaultSession.useCalendar(name);
   }
 
   /**
@@ -72,10 +151,7 @@ public class CalendarLibrary implements ICalendarLibrary {
    * @throws IllegalStateException if no calendar is currently in use
    */
   public ICalendarModel getActiveCalendar() {
-    if (currentCalendar == null) {
-      throw new IllegalStateException("No calendar in use.");
-    }
-    return calendars.get(currentCalendar);
+    return defaultSession.getActiveCalendar();
   }
 
   /**
@@ -85,10 +161,7 @@ public class CalendarLibrary implements ICalendarLibrary {
    * @throws IllegalStateException if no calendar is currently in use
    */
   public ZoneId getActiveTimezone() {
-    if (currentCalendar == null) {
-      throw new IllegalStateException("No calendar in use.");
-    }
-    return calendarTimezones.get(currentCalendar);
+    return defaultSession.getActiveTimezone();
   }
 
   /**
@@ -101,19 +174,18 @@ public class CalendarLibrary implements ICalendarLibrary {
    *                                  if the new name already exists, or the timezone is invalid
    */
   public void editCalendar(String name, String property, String newValue) {
+    checkNoTransaction();
     if (!calendars.containsKey(name)) {
       throw new IllegalArgumentException("No such calendar: " + name);
     }
     ICalendarModel model = calendars.get(name);
     if (property.equals("name")) {
-      if (calendars.containsKey(newValue)) {
+      if (calendars.putIfAbsent(newValue, model) != null) {
         throw new IllegalArgumentException("Calendar with name already exists: " + newValue);
       }
       calendars.remove(name);
-      calendars.put(newValue, model);
-      if (currentCalendar != null && currentCalendar.equals(name)) {
-        currentCalendar = newValue;
-      }
+      calendarTimezones.put(newValue, calendarTimezones.remove(name));
+      names.put(model, newValue);
     } else if (property.equals("timezone")) {
       ZoneId zone = ZoneId.of(newValue);
       model.setTimezone(zone);
@@ -130,14 +202,12 @@ public class CalendarLibrary implements ICalendarLibrary {
    * @throws IllegalArgumentException if the calendar does not exist
    */
   public void deleteCalendar(String name) {
+    checkNoTransaction();
     if (!calendars.containsKey(name)) {
       throw new IllegalArgumentException("Calendar not found: " + name);
     }
-    calendars.remove(name);
+    names.remove(calendars.remove(name));
     calendarTimezones.remove(name);
-    if (name.equals(currentCalendar)) {
-      currentCalendar = null;
-    }
   }
 
   /**
@@ -151,28 +221,37 @@ public class CalendarLibrary implements ICalendarLibrary {
    */
   public boolean copyEventToCalendar(String subject, LocalDateTime start, String targetCal,
                                      LocalDateTime dest) {
-    if (currentCalendar == null || !calendars.containsKey(targetCal)) {
-      return false;
-    }
+    return defaultSession.copyEventToCalendar(subject, start, targetCal, dest);
+  }
 
-    ICalendarModel source = getActiveCalendar();
+  /**
+   * Copies a single event from a named calendar to another, adjusting for timezones.
+   */
+  boolean copyEvent(String sourceCal, String subject, LocalDateTime start, String targetCal,
+                    LocalDateTime dest) {
+    ICalendarModel source = calendars.get(sourceCal);
     ICalendarModel target = calendars.get(targetCal);
-    ZoneId sourceZone = getActiveTimezone();
-    ZoneId targetZone = calendarTimezones.get(targetCal);
-
-    IEvent original = source.findEvent(subject, start);
-    if (original == null) {
+    if (source == null || target == null) {
       return false;
     }
+    ZoneId sourceZone = calendarTimezones.get(sourceCal);
+    ZoneId targetZone = calendarTimezones.get(targetCal);
 
-    IEvent shifted = original.copyWithNewTime(dest.atZone(targetZone)
-            .withZoneSameInstant(sourceZone).toLocalDateTime());
-    if (target.hasConflict(shifted)) {
-      return false;
-    }
+    return copyBetween(source, target, (from, into) -> {
+      IEvent original = from.findEvent(subject, start);
+      if (original == null) {
+        return false;
+      }
+
+      IEvent shifted = original.copyWithNewTime(
+              new ZoneShift(targetZone, sourceZone).apply(dest));
+      if (into.hasConflict(shifted)) {
+        return false;
+      }
 
-    target.addEvent(shifted);
-    return true;
+      into.addEvent(shifted);
+      return true;
+    });
   }
 
   /**
@@ -184,32 +263,40 @@ public class CalendarLibrary implements ICalendarLibrary {
    * @return the number of events successfully copied
    */
   public int copyEventsOnDateToCalendar(LocalDate srcDate, String targetCal, LocalDate destDate) {
-    if (currentCalendar == null || !calendars.containsKey(targetCal)) {
-      return 0;
-    }
+    return defaultSession.copyEventsOnDateToCalendar(srcDate, targetCal, destDate);
+  }
 
-    ICalendarModel source = getActiveCalendar();
+  /**
+   * Copies all events on a date in a named calendar to another calendar.
+   */
+  int copyEventsOnDate(String sourceCal, LocalDate srcDate, String targetCal,
+                       LocalDate destDate) {
+    ICalendarModel source = calendars.get(sourceCal);
     ICalendarModel target = calendars.get(targetCal);
-    ZoneId sourceZone = getActiveTimezone();
+    if (source == null || target == null) {
+      return 0;
+    }
+    ZoneId sourceZone = calendarTimezones.get(sourceCal);
     ZoneId targetZone = calendarTimezones.get(targetCal);
 
-    List<IEvent> events = source.getEventsOnDate(srcDate);
-    int copied = 0;
+    return copyBetween(source, target, (from, into) -> {
+      List<IEvent> events = from.getEventsOnDate(srcDate);
+      List<IEvent> batch = new ArrayList<>();
+      Set<EventKey> batchKeys = new HashSet<>();
+      ZoneShift shift = new ZoneShift(sourceZone, targetZone);
 
-    for (IEvent e : events) {
-      long hour = e.getStart().getHour();
-      long minute = e.getStart().getMinute();
-      LocalDateTime destStart = destDate.atTime((int) hour, (int) minute);
+      for (IEvent e : events) {
+        long hour = e.getStart().getHour();
+        long minute = e.getStart().getMinute();
+        LocalDateTime destStart = destDate.atTime((int) hour, (int) minute);
 
-      IEvent shifted = e.copyWithNewTime(destStart.atZone(sourceZone)
-              .withZoneSameInstant(targetZone).toLocalDateTime());
-      if (!target.hasConflict(shifted)) {
-        target.addEvent(shifted);
-        copied++;
+        IEvent shifted = e.copyWithNewTime(shift.apply(destStart));
+        addUnlessConflicting(batch, batchKeys, into, shifted);
       }
-    }
 
-    return copied;
+      into.addEvents(batch);
+      return batch.size();
+    });
   }
 
   /**
@@ -247,36 +334,139 @@ public class CalendarLibrary implements ICalendarLibrary {
     ZoneId sourceZone = calendarTimezones.get(sourceCalendarName);
     ZoneId targetZone = calendarTimezones.get(targetCalendarName);
 
-    int copied = 0;
+    return copyBetween(sourceCalendar, targetCalendar, (from, into) -> {
+      List<IEvent> batch = new ArrayList<>();
+      Set<EventKey> batchKeys = new HashSet<>();
+      ZoneShift sourceClock = new ZoneShift(sourceZone, sourceZone);
+      ZoneShift targetClock = new ZoneShift(targetZone, targetZone);
 
-    for (IEvent event : sourceCalendar.getEvents()) {
-      LocalDate eventDate = event.getStart().toLocalDate();
+      // A nanosecond early, so an event of no length at the first midnight is still found.
+      for (IEvent event : from.getEventsWithinDates(startDate.atStartOfDay().minusNanos(1),
+              endDate.plusDays(1).atStartOfDay())) {
+        LocalDate eventDate = event.getStart().toLocalDate();
 
-      if (!eventDate.isBefore(startDate) && !eventDate.isAfter(endDate)) {
-        long dayOffset = startDate.until(eventDate).getDays();
-        LocalDate mappedDate = targetDate.plusDays(dayOffset);
+        if (!eventDate.isBefore(startDate) && !eventDate.isAfter(endDate)) {
+          long dayOffset = startDate.until(eventDate).getDays();
+          LocalDate mappedDate = targetDate.plusDays(dayOffset);
 
-        ZonedDateTime sourceStartZoned = event.getStart().atZone(sourceZone);
-        ZonedDateTime sourceEndZoned = event.getEnd().atZone(sourceZone);
+          LocalTime startTime = sourceClock.apply(event.getStart()).toLocalTime();
+          LocalTime endTime = sourceClock.apply(event.getEnd()).toLocalTime();
 
-        LocalTime startTime = sourceStartZoned.toLocalTime();
-        LocalTime endTime = sourceEndZoned.toLocalTime();
+          Event copiedEvent = new Event(event.getSubject(),
+                  targetClock.apply(mappedDate.atTime(startTime)),
+                  targetClock.apply(mappedDate.atTime(endTime)));
 
-        ZonedDateTime targetStartZoned = ZonedDateTime.of(mappedDate, startTime, targetZone);
-        ZonedDateTime targetEndZoned = ZonedDateTime.of(mappedDate, endTime, targetZone);
+          addUnlessConflicting(batch, batchKeys, into, copiedEvent);
+        }
+      }
 
-        Event copiedEvent = new Event(event.getSubject(),
-                targetStartZoned.toLocalDateTime(),
-                targetEndZoned.toLocalDateTime());
+      into.addEvents(batch);
+      return batch.size();
+    });
+  }
 
-        if (!targetCalendar.hasConflict(copiedEvent)) {
-          targetCalendar.addEvent(copiedEvent);
-          copied++;
-        }
+  /**
+   * Runs a copy from one calendar into another. In a concurrent library the source stays
+   * read-locked and the target write-locked for the whole copy, taken in a fixed order; the
+   * copy is given the calendars behind the locks so it does not take them again.
+   */
+  private static <T> T copyBetween(ICalendarModel source, ICalendarModel target,
+                                   BiFunction<ICalendarModel, ICalendarModel, T> copy) {
+    if (source instanceof LockedCalendar && target instanceof LockedCalendar) {
+      return LockedCalendar.lockPair((LockedCalendar) source, (LockedCalendar) target, copy);
+    }
+    return copy.apply(source, target);
+  }
+
+  /**
+   * Adds a copied event to a batch unless it duplicates an event already in the target
+   * calendar or earlier in the batch, so the batch can be added in one call.
+   */
+  private static void addUnlessConflicting(List<IEvent> batch, Set<EventKey> batchKeys,
+                                           ICalendarModel target, IEvent copy) {
+    if (!target.hasConflict(copy) && batchKeys.add(EventKey.of(copy))) {
+      batch.add(copy);
+    }
+  }
+
+  @Override
+  public List<TimeInterval> getBusyIntervals(List<String> calendarNames, LocalDateTime start,
+                                             LocalDateTime end, ZoneId zone) {
+    List<List<TimeInterval>> perCalendar = new ArrayList<>();
+    List<ZoneId> zones = new ArrayList<>();
+    for (String name : calendarNames) {
+      ICalendarModel model = calendars.get(name);
+      if (model == null) {
+        throw new IllegalArgumentException("No such calendar: " + name);
+      }
+      ZoneId calendarZone = model.getCreationTimezone();
+      ZoneShift shift = new ZoneShift(zone, calendarZone);
+      perCalendar.add(model.getBusyIntervals(shift.apply(start), shift.apply(end)));
+      zones.add(calendarZone);
+    }
+    return IntervalSweep.merge(perCalendar, zones, zone);
+  }
+
+  /**
+   * Finds free slots by merging the calendars' busy blocks with one sweep, then walking the
+   * gaps between them alongside each day's working hours.
+   * The merge takes O(n log k) for n events in the range across k calendars, and the walk
+   * visits each busy block and each day once.
+   */
+  @Override
+  public List<TimeInterval> findFreeSlots(List<String> calendarNames, LocalDateTime start,
+                                          LocalDateTime end, ZoneId zone, LocalTime workStart,
+                                          LocalTime workEnd, Duration minLength, int count) {
+    if (count < 1) {
+      throw new IllegalArgumentException("Slot count must be positive.");
+    }
+    if (minLength.isNegative() || minLength.isZero()) {
+      throw new IllegalArgumentException("Slot length must be positive.");
+    }
+    boolean toMidnight = workEnd.equals(LocalTime.MIDNIGHT);
+    if (!toMidnight && !workEnd.isAfter(workStart)) {
+      throw new IllegalArgumentException("Working hours must end after they start.");
+    }
+
+    List<TimeInterval> busy = getBusyIntervals(calendarNames, start, end, zone);
+    List<TimeInterval> slots = new ArrayList<>();
+    int next = 0;
+    for (LocalDate day = start.toLocalDate(); !day.isAfter(end.toLocalDate())
+            && slots.size() < count; day = day.plusDays(1)) {
+      LocalDateTime dayEnd = toMidnight ? day.plusDays(1).atStartOfDay() : day.atTime(workEnd);
+      LocalDateTime from = later(start, day.atTime(workStart));
+      LocalDateTime to = earlier(end, dayEnd);
+      if (!to.isAfter(from)) {
+        continue;
+      }
+      while (next < busy.size() && !busy.get(next).getEnd().isAfter(from)) {
+        next++;
       }
+      LocalDateTime free = from;
+      for (int i = next; i < busy.size() && busy.get(i).getStart().isBefore(to); i++) {
+        addSlot(slots, free, busy.get(i).getStart(), minLength, count);
+        free = later(free, busy.get(i).getEnd());
+      }
+      if (free.isBefore(to)) {
+        addSlot(slots, free, to, minLength, count);
+      }
+    }
+    return slots;
+  }
+
+  private static void addSlot(List<TimeInterval> slots, LocalDateTime from, LocalDateTime to,
+                              Duration minLength, int count) {
+    if (slots.size() < count && Duration.between(from, to).compareTo(minLength) >= 0) {
+      slots.add(new TimeInterval(from, to));
     }
+  }
+
+  private static LocalDateTime later(LocalDateTime a, LocalDateTime b) {
+    return a.isAfter(b) ? a : b;
+  }
 
-    return copied;
+  private static LocalDateTime earlier(LocalDateTime a, LocalDateTime b) {
+    return a.isBefore(b) ? a : b;
   }
 
   /**
@@ -294,6 +484,81 @@ public class CalendarLibrary implements ICalendarLibrary {
    * @return the name of the active calendar, or null if no calendar is in use
    */
   public String getCurrentCalendarName() {
-    return currentCalendar;
+    return defaultSession.getCurrentCalendarName();
+  }
+
+  /**
+   * Begins a transaction on every calendar. If one of them cannot begin, those already begun
+   * are rolled back, which undoes nothing.
+   */
+  @Override
+  public void beginTransaction() {
+    if (inTransaction) {
+      throw new IllegalArgumentException("A transaction is already open.");
+    }
+    List<ICalendarModel> begun = new ArrayList<>();
+    try {
+      for (ICalendarModel calendar : calendars.values()) {
+        calendar.beginTransaction();
+        begun.add(calendar);
+      }
+    } catch (RuntimeException e) {
+      for (ICalendarModel calendar : begun) {
+        calendar.rollbackTransaction();
+      }
+      throw e;
+    }
+    inTransaction = true;
+  }
+
+  @Override
+  public void commitTransaction() {
+    if (!inTransaction) {
+      throw new IllegalArgumentException("No transaction is open.");
+    }
+    inTransaction = false;
+    endEach(ICalendarModel::commitTransaction);
+  }
+
+  @Override
+  public void rollbackTransaction() {
+    if (!inTransaction) {
+      throw new IllegalArgumentException("No transaction is open.");
+    }
+    inTransaction = false;
+    endEach(ICalendarModel::rollbackTransaction);
+  }
+
+  /**
+   * Ends the transaction of every calendar, going on past a calendar that fails so that no
+   * calendar is left with its transaction open, then throws the first failure.
+   */
+  private void endEach(Consumer<ICalendarModel> end) {
+    RuntimeException failure = null;
+    for (ICalendarModel calendar : calendars.values()) {
+      try {
+        end.accept(calendar);
+      } catch (RuntimeException e) {
+        if (failure == null) {
+          failure = e;
+        } else {
+          failure.addSuppressed(e);
+        }
+      }
+    }
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  @Override
+  public boolean isInTransaction() {
+    return inTransaction;
+  }
+
+  private void checkNoTransaction() {
+    if (inTransaction) {
+      throw new IllegalArgumentException("Cannot change calendars during a transaction.");
+    }
   }
 }
@@ -3,30 +3,183 @@ package calendar.model;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
-import java.util.Comparator;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.TreeSet;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.UUID;
+import java.util.function.Predicate;
 
 /**
  * The storing and managing of all calendar events.
  */
-public class CalendarModel implements ICalendarModel {
-  private final List<IEvent> events;
-  private ZoneId timezone;
-  private final ZoneId creationTimezone;
+public class CalendarModel extends AbstractCalendarModel {
+  private final boolean indexed;
+  private final boolean busyBitmap;
+  private Map<EventKey, IEvent> events;
+  private Map<StartKey, List<IEvent>> bySubjectAndStart;
+  private Map<UUID, NavigableSet<IEvent>> bySeries;
+  private EventIntervalTree index;
+  private BusyBitmap busy;
+  private int unalignedEvents;
+  private List<IEvent> staleBusy;
+  private volatile EventIntervalTree published;
+  private SeriesRules rules;
+  private volatile SeriesRules publishedRules;
+  private SeriesRules rulesAtBegin;
+  private boolean replaying;
+  private int editDepth;
+  private FrozenCalendar frozen;
 
 
   /**
    * Makes a new Calendar with a specific timezone.
+   * Date and time queries are answered by an interval tree index.
    *
    * @param timezone the current timezone we are in
    */
   public CalendarModel(ZoneId timezone) {
-    this.timezone = timezone;
-    this.creationTimezone = timezone;
-    this.events = new ArrayList<>();
+    this(timezone, true);
+  }
+
+  /**
+   * Makes a new Calendar with a specific timezone, choosing how date and time queries run.
+   * Without the index every query scans the whole list of events, which is kept as a
+   * fallback so the two can be compared. An indexed calendar also keeps a busy bitmap.
+   *
+   * @param timezone the current timezone we are in
+   * @param indexed  true to answer queries from an interval tree, false to scan every event
+   */
+  public CalendarModel(ZoneId timezone, boolean indexed) {
+    this(timezone, indexed, indexed);
+  }
+
+  /**
+   * Makes a new Calendar with a specific timezone, choosing which indexes to keep.
+   * The busy bitmap answers isBusy with one bit test and counts busy minutes a word at a
+   * time, at the cost of about 370 bytes for each day that has events.
+   *
+   * @param timezone   the current timezone we are in
+   * @param indexed    true to answer queries from an interval tree, false to scan every event
+   * @param busyBitmap true to keep a per-minute busy bitmap
+   */
+  public CalendarModel(ZoneId timezone, boolean indexed, boolean busyBitmap) {
+    super(timezone);
+    this.indexed = indexed;
+    this.busyBitmap = busyBitmap;
+    this.editDepth = 0;
+    this.frozen = null;
+    this.rules = SeriesRules.NONE;
+    this.publishedRules = rules;
+    this.rulesAtBegin = null;
+    this.replaying = false;
+    clearStorage();
+    if (indexed) {
+      this.published = index.copy();
+    }
+  }
+
+  /**
+   * Sets up empty mutable storage and indexes.
+   */
+  private void clearStorage() {
+    this.events = new LinkedHashMap<>();
+    this.bySubjectAndStart = new HashMap<>();
+    this.bySeries = new HashMap<>();
+    if (indexed) {
+      this.index = new EventIntervalTree();
+    } else {
+      this.index = null;
+    }
+    if (busyBitmap) {
+      this.busy = new BusyBitmap();
+    } else {
+      this.busy = null;
+    }
+    this.unalignedEvents = 0;
+    this.staleBusy = new ArrayList<>();
+  }
+
+  /**
+   * Checks whether date and time queries are answered by the interval tree index.
+   *
+   * @return true if indexed, false if queries scan every event
+   */
+  public boolean isIndexed() {
+    return indexed;
+  }
+
+  /**
+   * Checks whether the calendar keeps a per-minute busy bitmap.
+   *
+   * @return true if isBusy and countBusyMinutes are answered from the bitmap
+   */
+  public boolean hasBusyBitmap() {
+    return busyBitmap;
+  }
+
+  /**
+   * Packs the calendar into sorted arrays for a calendar that will now only be queried.
+   * The maps, tree and bitmap are dropped; range and busy queries become binary searches
+   * over primitive arrays that allocate nothing but their results, and snapshots share the
+   * arrays. Any later add, remove or edit thaws the calendar back first, which costs as much
+   * as adding every event again.
+   *
+   * @throws IllegalArgumentException if a transaction is open
+   */
+  public void freeze() {
+    if (frozen != null) {
+      return;
+    }
+    if (isInTransaction()) {
+      throw new IllegalArgumentException("Cannot freeze a calendar during a transaction.");
+    }
+    frozen = new FrozenCalendar(events.values(), getTimezone(), getCreationTimezone());
+    events = null;
+    bySubjectAndStart = null;
+    bySeries = null;
+    index = null;
+    busy = null;
+    published = null;
+  }
+
+  /**
+   * Checks whether the calendar is currently packed by freeze.
+   *
+   * @return true if frozen
+   */
+  public boolean isFrozen() {
+    return frozen != null;
+  }
+
+  /**
+   * Rebuilds the mutable storage of a frozen calendar so it can be written again.
+   * The rebuilt tree holds what the frozen calendar held, so it is published even inside
+   * a transaction.
+   */
+  private void thaw() {
+    if (frozen == null) {
+      return;
+    }
+    List<IEvent> archived = frozen.getEvents();
+    frozen = null;
+    clearStorage();
+    for (IEvent event : archived) {
+      events.put(EventKey.of(event), event);
+      store(event);
+    }
+    if (index != null) {
+      published = index.copy();
+    }
   }
 
 
@@ -36,14 +189,95 @@ public class CalendarModel implements ICalendarModel {
    * @param event represents another event to add to the list.
    */
   public void addEvent(IEvent event) {
-    for (int i = 0; i < events.size(); i++) {
-      IEvent currEvent = events.get(i);
+    thaw();
+    canonicalize(event);
+    if (!replaying && rules.ruleOf(event) != null) {
+      throw new IllegalArgumentException("Cannot add two events with the same subject");
+    }
+    if (events.putIfAbsent(EventKey.of(event), event) != null) {
+      throw new IllegalArgumentException("Cannot add two events with the same subject");
+    }
+    store(event);
+    recordAdded(event);
+    if (index != null) {
+      publish();
+    }
+  }
 
-      if (currEvent.isSame((Event) event)) {
-        throw new IllegalArgumentException("Cannot add two events with the same subject");
+  /**
+   * Adds a batch after checking it whole against a hash of the stored events.
+   * Snapshots see the batch only once all of it is stored.
+   *
+   * @param batch the events to add
+   */
+  @Override
+  public void addEvents(Collection<? extends IEvent> batch) {
+    thaw();
+    checkBatch(batch);
+    editDepth++;
+    try {
+      for (IEvent event : batch) {
+        canonicalize(event);
+        events.put(EventKey.of(event), event);
+        store(event);
+        recordAdded(event);
+      }
+    } finally {
+      finishEdit();
+    }
+  }
+
+  /**
+   * Keeps a series as its rule instead of storing its occurrences. Queries build the
+   * occurrences they return; an occurrence is stored only once it is edited.
+   *
+   * @param series the series to add
+   * @throws IllegalArgumentException if an occurrence duplicates an event already here
+   */
+  @Override
+  public void addSeries(IEventSeries series) {
+    thaw();
+    SeriesRule rule = new SeriesRule(series);
+    if (rule.size() == 0) {
+      return;
+    }
+    if (rules.overlaps(rule) || storesOccurrenceOf(rule)) {
+      throw new IllegalArgumentException("Cannot add two events with the same subject");
+    }
+    rules = rules.with(rule);
+    publish();
+  }
+
+  private boolean storesOccurrenceOf(SeriesRule rule) {
+    for (IEvent e : storedWithin(rule.getFirstDate().atStartOfDay(),
+            rule.getLastDate().plusDays(1).atStartOfDay())) {
+      if (rule.matches(e)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Adds an event already in the main map to the other indexes.
+   */
+  private void store(IEvent event) {
+    bySubjectAndStart.computeIfAbsent(new StartKey(event.getSubject(), event.getStart()),
+            k -> new ArrayList<>(1)).add(event);
+    if (event.getSeriesId() != null) {
+      bySeries.computeIfAbsent(event.getSeriesId(),
+              k -> new TreeSet<>(EventKey.ORDER)).add(event);
+    }
+    if (index != null) {
+      index.insert(event);
+    }
+    if (busy != null) {
+      long[] minutes = BusyBitmap.minutesOf(event);
+      busy.add(minutes[0], minutes[1]);
+      if (!onWholeMinutes(event)) {
+        unalignedEvents++;
       }
     }
-    events.add(event);
   }
 
   /**
@@ -52,14 +286,212 @@ public class CalendarModel implements ICalendarModel {
    * @param event represents another event to remove from the list.
    */
   public void removeEvent(IEvent event) {
-    for (int i = 0; i < events.size(); i++) {
-      IEvent currEvent = events.get(i);
-      if (currEvent.isSame((Event) event)) {
-        events.remove(i);
-        return;
+    thaw();
+    IEvent removed = events.remove(EventKey.of(event));
+    if (removed == null) {
+      SeriesRules remaining = rules.detach(event);
+      if (remaining == rules) {
+        throw new IllegalArgumentException("Event not found in calendar");
+      }
+      rules = remaining;
+      publish();
+      return;
+    }
+    unstore(removed);
+    recordRemoved(removed);
+    if (index != null) {
+      index.remove(removed);
+      publish();
+    }
+    if (busy != null) {
+      releaseBusy(Collections.singletonList(removed));
+    }
+  }
+
+  /**
+   * Removes a batch after checking it whole, clearing the busy bitmap once for all of it.
+   * Snapshots see the batch gone only once all of it is removed.
+   *
+   * @param batch the events to remove
+   */
+  @Override
+  public void removeEvents(Collection<? extends IEvent> batch) {
+    thaw();
+    checkRemoval(batch);
+    List<IEvent> removed = new ArrayList<>(batch.size());
+    for (IEvent event : batch) {
+      IEvent stored = events.remove(EventKey.of(event));
+      if (stored == null) {
+        rules = rules.detach(event);
+      } else {
+        removed.add(stored);
+      }
+    }
+    dropAll(removed, true);
+  }
+
+  /**
+   * Removes the events overlapping a range: those ending after its start and starting before
+   * its end, as getEventsWithinDates finds them. With the index, the events starting inside
+   * the range are cut out of the tree in one split and join, and only those that started
+   * earlier and run into the range are removed one by one. Zero-length events at the very
+   * start of the range do not overlap it, so the cut puts them back.
+   *
+   * @param start the start of the range
+   * @param end   the end of the range
+   * @return the number of events removed
+   */
+  @Override
+  public int removeRange(LocalDateTime start, LocalDateTime end) {
+    thaw();
+    checkRange(start, end);
+    editDepth++;
+    try {
+      List<IEvent> removed;
+      if (index != null) {
+        removed = index.removeStartingWithin(start, end);
+        removed.removeIf(event -> {
+          boolean outside = !event.getEnd().isAfter(start);
+          if (outside) {
+            index.insert(event);
+          }
+          return outside;
+        });
+        List<IEvent> runningInto = index.overlapping(start, end);
+        for (IEvent event : runningInto) {
+          index.remove(event);
+        }
+        removed.addAll(runningInto);
+      } else {
+        removed = storedWithin(start, end);
+      }
+      for (IEvent event : removed) {
+        events.remove(EventKey.of(event));
+      }
+      dropAll(removed, false);
+      int occurrences = rules.countOverlapping(start, end);
+      rules = rules.withoutOverlapping(start, end);
+      return removed.size() + occurrences;
+    } finally {
+      finishEdit();
+    }
+  }
+
+  /**
+   * Removes the occurrences of a series, found straight from the series index.
+   *
+   * @param seriesId the series to remove
+   * @return the number of events removed
+   */
+  @Override
+  public int removeSeries(UUID seriesId) {
+    thaw();
+    SeriesRule rule = rules.get(seriesId);
+    int virtual = rule == null ? 0 : rule.size();
+    rules = rules.without(seriesId);
+    NavigableSet<IEvent> occurrences = bySeries.get(seriesId);
+    if (occurrences == null) {
+      publish();
+      return virtual;
+    }
+    List<IEvent> removed = new ArrayList<>(occurrences);
+    for (IEvent event : removed) {
+      events.remove(EventKey.of(event));
+    }
+    dropAll(removed, true);
+    return removed.size() + virtual;
+  }
+
+  /**
+   * Takes events already removed from the main map out of every other index, publishing once.
+   * The busy bitmap is cleared once per block of overlapping removed events.
+   *
+   * @param removed the events removed from the main map
+   * @param inTree  true if the events still have to be removed from the tree
+   */
+  private void dropAll(List<IEvent> removed, boolean inTree) {
+    editDepth++;
+    try {
+      for (IEvent event : removed) {
+        unstore(event);
+        recordRemoved(event);
+        if (inTree && index != null) {
+          index.remove(event);
+        }
+      }
+      if (busy != null && !removed.isEmpty()) {
+        releaseBusy(removed);
+      }
+    } finally {
+      finishEdit();
+    }
+  }
+
+  /**
+   * Takes an event already removed from the main map out of the lookup and series indexes.
+   */
+  private void unstore(IEvent removed) {
+    StartKey startKey = new StartKey(removed.getSubject(), removed.getStart());
+    List<IEvent> sameStart = bySubjectAndStart.get(startKey);
+    sameStart.remove(removed);
+    if (sameStart.isEmpty()) {
+      bySubjectAndStart.remove(startKey);
+    }
+    if (removed.getSeriesId() != null) {
+      NavigableSet<IEvent> occurrences = bySeries.get(removed.getSeriesId());
+      occurrences.remove(removed);
+      if (occurrences.isEmpty()) {
+        bySeries.remove(removed.getSeriesId());
+      }
+    }
+  }
+
+  /**
+   * Clears the busy bits of removed events now, or at the end of the open transaction.
+   * Until then the bitmap may still mark their minutes, so it is not used for queries.
+   */
+  private void releaseBusy(List<IEvent> removed) {
+    if (isInTransaction()) {
+      staleBusy.addAll(removed);
+    } else {
+      unmarkBusy(removed);
+    }
+  }
+
+  /**
+   * Clears the busy bits of removed events, then marks again the part of every remaining
+   * event that overlaps the same minutes. The removed events' minutes are first merged into
+   * disjoint blocks, so a remaining event is marked again once per block it overlaps rather
+   * than once per removed event.
+   */
+  private void unmarkBusy(List<IEvent> removed) {
+    long[][] spans = new long[removed.size()][];
+    for (int i = 0; i < spans.length; i++) {
+      spans[i] = BusyBitmap.minutesOf(removed.get(i));
+      if (!onWholeMinutes(removed.get(i))) {
+        unalignedEvents--;
+      }
+    }
+    Arrays.sort(spans, (a, b) -> Long.compare(a[0], b[0]));
+    int i = 0;
+    while (i < spans.length) {
+      long from = spans[i][0];
+      long to = spans[i][1];
+      for (i++; i < spans.length && spans[i][0] <= to; i++) {
+        to = Math.max(to, spans[i][1]);
+      }
+      busy.clear(from, to);
+      for (IEvent e : storedWithin(EpochMinutes.toDateTime(from),
+              EpochMinutes.toDateTime(to))) {
+        long[] other = BusyBitmap.minutesOf(e);
+        busy.add(Math.max(from, other[0]), Math.min(to, other[1]));
       }
     }
-    throw new IllegalArgumentException("Event not found in calendar");
+  }
+
+  private static boolean onWholeMinutes(IEvent event) {
+    return event.getStart().getSecond() == 0 && event.getStart().getNano() == 0
+            && event.getEnd().getSecond() == 0 && event.getEnd().getNano() == 0;
   }
 
   /**
@@ -71,17 +503,29 @@ public class CalendarModel implements ICalendarModel {
    * @return the matching IEvent, or null if not found or ambiguous
    */
   public IEvent findEvent(String subject, LocalDateTime start) {
-    IEvent found = null;
-    for (IEvent e : events) {
-
-      if (e.getSubject().equals(subject) && e.getStart().equals(start)) {
-        if (found != null) {
+    List<IEvent> occurrences = rules.find(subject, start);
+    if (occurrences.size() > 1) {
+      return null;
+    }
+    if (frozen != null) {
+      if (occurrences.isEmpty()) {
+        return frozen.findEvent(subject, start);
+      }
+      for (IEvent e : frozen.getEventsOnDate(start.toLocalDate())) {
+        if (e.getSubject().equals(subject) && e.getStart().equals(start)) {
           return null;
         }
-        found = e;
       }
+      return occurrences.get(0);
     }
-    return found;
+    List<IEvent> matches = bySubjectAndStart.get(new StartKey(subject, start));
+    if (matches == null) {
+      return occurrences.isEmpty() ? null : occurrences.get(0);
+    }
+    if (matches.size() != 1 || !occurrences.isEmpty()) {
+      return null;
+    }
+    return matches.get(0);
   }
 
   /**
@@ -91,8 +535,18 @@ public class CalendarModel implements ICalendarModel {
    * @return all events on that specific date.
    */
   public List<IEvent> getEventsOnDate(LocalDate date) {
+    return rules.mergeOnDate(storedOnDate(date), date);
+  }
+
+  private List<IEvent> storedOnDate(LocalDate date) {
+    if (frozen != null) {
+      return frozen.getEventsOnDate(date);
+    }
+    if (index != null) {
+      return index.startingWithin(date.atStartOfDay(), date.plusDays(1).atStartOfDay());
+    }
     List<IEvent> result = new ArrayList<>();
-    for (IEvent e : events) {
+    for (IEvent e : events.values()) {
       if (e.getStart().toLocalDate().equals(date)) {
         result.add(e);
       }
@@ -108,9 +562,18 @@ public class CalendarModel implements ICalendarModel {
    * @return all events within the date range.
    */
   public List<IEvent> getEventsWithinDates(LocalDateTime beginning, LocalDateTime ending) {
+    return rules.mergeOverlapping(storedWithin(beginning, ending), beginning, ending);
+  }
+
+  private List<IEvent> storedWithin(LocalDateTime beginning, LocalDateTime ending) {
+    if (frozen != null) {
+      return frozen.getEventsWithinDates(beginning, ending);
+    }
+    if (index != null) {
+      return index.overlapping(beginning, ending);
+    }
     List<IEvent> result = new ArrayList<>();
-    for (int i = 0; i < events.size(); i++) {
-      IEvent currEvent = events.get(i);
+    for (IEvent currEvent : events.values()) {
       if (currEvent.getEnd().isAfter(beginning) && currEvent.getStart().isBefore(ending)) {
         result.add(currEvent);
       }
@@ -125,7 +588,20 @@ public class CalendarModel implements ICalendarModel {
    * @return whether the event overlaps.
    */
   public boolean isBusy(LocalDateTime time) {
-    for (IEvent currEvent : events) {
+    if (rules.covers(time)) {
+      return true;
+    }
+    if (frozen != null) {
+      return frozen.isBusy(time);
+    }
+    boolean onMinute = time.getSecond() == 0 && time.getNano() == 0;
+    if (busy != null && staleBusy.isEmpty() && (onMinute || unalignedEvents == 0)) {
+      return busy.isBusy(time);
+    }
+    if (index != null) {
+      return index.covers(time);
+    }
+    for (IEvent currEvent : events.values()) {
       if (currEvent.getEnd().isAfter(time) && currEvent.getStart().isBefore(time)) {
         return true;
       }
@@ -133,6 +609,30 @@ public class CalendarModel implements ICalendarModel {
     return false;
   }
 
+  /**
+   * Counts busy minutes from the bitmap when there is one, a word of 64 minutes at a time.
+   * Series kept as rules add the minutes only their occurrences cover, counted from the
+   * rules rather than by building the occurrences.
+   *
+   * @param from the start of the range, on a whole minute
+   * @param to   the end of the range, on a whole minute
+   * @return the number of busy minutes
+   */
+  @Override
+  public long countBusyMinutes(LocalDateTime from, LocalDateTime to) {
+    if (frozen != null) {
+      return rules.isEmpty() ? frozen.countBusyMinutes(from, to)
+              : super.countBusyMinutes(from, to);
+    }
+    if (busy == null || !staleBusy.isEmpty()) {
+      return super.countBusyMinutes(from, to);
+    }
+    long fromMinute = EpochMinutes.of(from);
+    long toMinute = EpochMinutes.of(to);
+    return busy.countCovered(fromMinute, toMinute)
+            + rules.countBusyMinutesBeyond(busy, fromMinute, toMinute);
+  }
+
   /**
    * Returns true if adding the given Event `e` would conflict with an existing event.
    * We define a “conflict” to be: an existing calendar event that has the same
@@ -142,217 +642,306 @@ public class CalendarModel implements ICalendarModel {
    * @return true if there is already an event equal to `e`; false otherwise
    */
   public boolean hasConflict(IEvent e) {
-    for (IEvent existing : events) {
-      if (existing.equals(e)) {
-        return true;
-      }
+    if (rules.ruleOf(e) != null) {
+      return true;
     }
-    return false;
+    if (frozen != null) {
+      return frozen.hasConflict(e);
+    }
+    return events.containsKey(EventKey.of(e));
+  }
+
+  @Override
+  public List<IEvent> getEventsFromDate(LocalDate date, int pageSize) {
+    LocalDateTime from = date.atStartOfDay();
+    Predicate<IEvent> lowerBound = e -> !e.getStart().isBefore(from);
+    List<IEvent> stored;
+    if (frozen != null) {
+      stored = frozen.getEventsFromDate(date, pageSize);
+    } else {
+      stored = firstPage(lowerBound, pageSize);
+    }
+    return rules.mergePage(stored, lowerBound, date, pageSize);
+  }
+
+  @Override
+  public List<IEvent> getEventsAfter(IEvent cursor, int pageSize) {
+    Predicate<IEvent> lowerBound = e -> EventKey.ORDER.compare(e, cursor) > 0;
+    List<IEvent> stored;
+    if (frozen != null) {
+      stored = frozen.getEventsAfter(cursor, pageSize);
+    } else {
+      stored = firstPage(lowerBound, pageSize);
+    }
+    return rules.mergePage(stored, lowerBound, cursor.getStart().toLocalDate(), pageSize);
   }
 
   /**
-   * Creates a new Event object by copying all fields of `base`, then changing exactly one property.
-   * The returned Event preserves the original seriesId if it was non-null.
+   * Gets the first pageSize events, in start order, among those passing the lower bound.
+   * With the index this walks straight to the first match; without it, one pass keeps only
+   * the best pageSize candidates in a bounded heap instead of sorting every match.
    *
-   * @param base      the existing Event to copy
-   * @param property  which property to change
-   * @param newValue  the new value for that property
-   * @param formatter the DateTimeFormatter used to parse date/time values
-   * @return a brand‐new Event reflecting the single change
-   * @throws IllegalArgumentException if property is unrecognized or newValue is badly formatted
-   */
-  public IEvent createModifiedEvent(Event base, String property, String newValue,
-                                    DateTimeFormatter formatter) {
-    IEvent copy = new Event(
-            base.getSubject(),
-            base.getStart(),
-            base.getEnd(),
-            base.getLocation(),
-            base.getDescription(),
-            base.getStatus());
-
-    if (base.getSeriesId() != null) {
-      copy.setSeriesId(base.getSeriesId());
-    }
-
-    switch (property.toLowerCase()) {
-      case "subject":
-        copy.setSubject(newValue);
-        break;
-      case "start":
-        LocalDateTime newStart = LocalDateTime.parse(newValue, formatter);
-        copy.setStart(newStart);
-        break;
-      case "end":
-        LocalDateTime newEnd = LocalDateTime.parse(newValue, formatter);
-        copy.setEnd(newEnd);
-        break;
-      case "location":
-        copy.setLocation(newValue);
-        break;
-      case "description":
-        copy.setDescription(newValue);
-        break;
-      case "status":
-        copy.setPublic(newValue.equalsIgnoreCase("public") || newValue.equalsIgnoreCase("true"));
-        break;
-      default:
-        throw new IllegalArgumentException("Invalid property: " + property);
-    }
-
-    return copy;
-  }
-
-  /**
-   * Edits a single event by creating a modified copy with one updated property.
-   * If the modified event conflicts with existing events, the change is aborted.
+   * @param lowerBound true for events at or after the first event wanted, monotone in start order
+   * @param pageSize   the largest number of events to return
+   * @return the events in start order
+   */
+  private List<IEvent> firstPage(Predicate<IEvent> lowerBound, int pageSize) {
+    if (pageSize < 1) {
+      throw new IllegalArgumentException("Page size must be positive.");
+    }
+    if (index != null) {
+      return index.firstMatching(lowerBound, pageSize);
+    }
+    PriorityQueue<IEvent> best = new PriorityQueue<>(EventKey.ORDER.reversed());
+    for (IEvent event : events.values()) {
+      if (lowerBound.test(event)) {
+        best.add(event);
+        if (best.size() > pageSize) {
+          best.poll();
+        }
+      }
+    }
+    List<IEvent> page = new ArrayList<>(best);
+    page.sort(EventKey.ORDER);
+    return page;
+  }
+
+  /**
+   * Returns all events in this calendar.
    *
-   * @param event     the original event to edit
-   * @param property  the name of the property to modify
-   * @param newValue  the new value to assign to the property
-   * @param formatter the formatter to parse new date/time values if needed
-   * @return true if the event was successfully edited; false if there was a conflict
+   * @return list of all events
    */
-  public boolean editSingleEvent(IEvent event, String property, String newValue,
-                                 DateTimeFormatter formatter) {
-    IEvent modified = createModifiedEvent((Event) event, property, newValue, formatter);
+  public List<IEvent> getEvents() {
+    if (frozen != null) {
+      return rules.mergeAll(frozen.getEvents());
+    }
+    return rules.mergeAll(new ArrayList<>(events.values()));
+  }
 
-    if (hasConflict(modified)) {
-      return false;
+  @Override
+  protected NavigableSet<IEvent> getSeriesOccurrences(UUID seriesId) {
+    thaw();
+    NavigableSet<IEvent> occurrences = bySeries.get(seriesId);
+    if (rules.get(seriesId) == null) {
+      return occurrences;
+    }
+    NavigableSet<IEvent> all = new TreeSet<>(EventKey.ORDER);
+    if (occurrences != null) {
+      all.addAll(occurrences);
     }
+    all.addAll(rules.occurrencesOf(seriesId));
+    return all;
+  }
 
-    removeEvent(event);
-    addEvent(modified);
-    return true;
+  /**
+   * Edits one event. A change to the location, description or status of an occurrence of a
+   * series kept as a rule is written to the rule as an edit for that date alone.
+   */
+  @Override
+  public boolean editSingleEvent(IEvent event, String property, String newValue,
+                                 DateTimeFormatter formatter) {
+    thaw();
+    editDepth++;
+    try {
+      SeriesRule rule = rules.ruleOf(event);
+      LocalDate date = event.getStart().toLocalDate();
+      SeriesRule edited = rule == null ? null : rule.withEdit(date, date, property, newValue);
+      if (edited == null) {
+        return super.editSingleEvent(event, property, newValue, formatter);
+      }
+      rules = rules.with(edited);
+      return true;
+    } finally {
+      finishEdit();
+    }
   }
 
   /**
-   * Edits all future events in the same recurring series as the given event,
-   * starting from the given event's start time.
-   * If the event is not part of a series, edits only that one event.
-   * Skips conflicting events and does not modify them.
-   *
-   * @param event     the base event to edit from
-   * @param property  the property to change
-   * @param newValue  the new value for the property
-   * @param formatter the formatter to parse date/time values
-   * @return the number of events successfully modified
+   * Edits the occurrences of a series from an event on. For a series kept as a rule, a change
+   * to the location, description or status is written to the rule as one edit covering the
+   * remaining dates, and only the stored occurrences in that range are replaced.
    */
+  @Override
   public int editFutureEvents(IEvent event, String property, String newValue,
                               DateTimeFormatter formatter) {
-    Event base = (Event) event;
-
-    UUID seriesId = base.getSeriesId();
-    if (seriesId == null) {
-      boolean success = editSingleEvent(event, property, newValue, formatter);
-      if (success) {
-        return 1;
-      } else {
-        return 0;
+    thaw();
+    editDepth++;
+    try {
+      SeriesRule rule = event.getSeriesId() == null ? null : rules.get(event.getSeriesId());
+      LocalDate from = event.getStart().toLocalDate();
+      SeriesRule edited = rule == null ? null
+              : rule.withEdit(from, rule.getLastDate(), property, newValue);
+      if (edited == null) {
+        return super.editFutureEvents(event, property, newValue, formatter);
       }
-    }
-
-    LocalDateTime baseStart = base.getStart();
-    List<IEvent> allAfter = getEventsWithinDates(baseStart, LocalDateTime.MAX);
-    int count = 0;
-
-    for (IEvent e : allAfter) {
-      Event ev = (Event) e;
-      if (ev.getSeriesId() != null
-              && ev.getSeriesId().equals(seriesId)
-              && !ev.getStart().isBefore(baseStart)) {
-        Event modified = (Event) createModifiedEvent(ev, property, newValue, formatter);
-        if (!hasConflict(modified)) {
-          removeEvent(ev);
-          addEvent(modified);
-          count++;
+      rules = rules.with(edited);
+      int count = rule.countFrom(from);
+      NavigableSet<IEvent> stored = bySeries.get(rule.getSeriesId());
+      if (stored != null) {
+        List<IEvent> future = new ArrayList<>();
+        for (IEvent e : stored) {
+          if (!e.getStart().toLocalDate().isBefore(from)) {
+            future.add(e);
+          }
         }
+        count += replaceAll(future, property, newValue, formatter);
       }
+      return count;
+    } finally {
+      finishEdit();
     }
-
-    return count;
   }
 
+  /**
+   * Edits every occurrence of a series. For a series kept as a rule, a change to the text or
+   * status rewrites the rule and only the stored, already edited occurrences are replaced;
+   * any other change stores every occurrence.
+   */
   @Override
-  public List<IEvent> getEventsFromDate(LocalDate date) {
-    List<IEvent> matching = new ArrayList<>();
-    for (IEvent event : events) {
-      if (!event.getStart().toLocalDate().isBefore(date)) {
-        matching.add(event);
+  public int editWholeSeries(IEvent event, String property, String newValue,
+                             DateTimeFormatter formatter) {
+    thaw();
+    editDepth++;
+    try {
+      SeriesRule rule = event.getSeriesId() == null ? null : rules.get(event.getSeriesId());
+      SeriesRule edited = rule == null ? null : rule.withProperty(property, newValue);
+      if (edited == null || rules.without(rule.getSeriesId()).overlaps(edited)
+              || storesOccurrenceOf(edited)) {
+        return super.editWholeSeries(event, property, newValue, formatter);
       }
+      rules = rules.with(edited);
+      NavigableSet<IEvent> stored = bySeries.get(rule.getSeriesId());
+      if (stored == null) {
+        return edited.size();
+      }
+      return edited.size() + replaceAll(new ArrayList<>(stored), property, newValue, formatter);
+    } finally {
+      finishEdit();
     }
-    matching.sort(Comparator.comparing(IEvent::getStart));
-    if (matching.size() > 10) {
-      return matching.subList(0, 10);
-    }
-    return matching;
   }
 
   /**
-   * Returns all events in this calendar.
-   *
-   * @return list of all events
+   * Starts a transaction. Until it ends, snapshots keep showing the calendar as it was when
+   * it began, and the busy bits of removed events are cleared only once, at the end, in one
+   * pass over the merged blocks of removed minutes.
    */
-  public List<IEvent> getEvents() {
-    return new ArrayList<>(events);
+  @Override
+  public void beginTransaction() {
+    super.beginTransaction();
+    rulesAtBegin = rules;
+    editDepth++;
   }
 
+  @Override
+  public void commitTransaction() {
+    super.commitTransaction();
+    finishTransaction();
+  }
 
   /**
-   * Edits all events in the recurring series to which the given event belongs.
-   * If the event is not part of a series, edits only that one event.
-   * Skips conflicting events and does not modify them.
-   *
-   * @param event     the base event in the series
-   * @param property  the property to change
-   * @param newValue  the new value for that property
-   * @param formatter the formatter to parse date/time values
-   * @return the number of events successfully modified
+   * Rolls back the stored events first and the rules after. While the journal is replayed,
+   * events are put back without checking them against the rules: each was in the calendar
+   * alongside the rules of its time, and the rules those were are only restored at the end.
    */
-  public int editWholeSeries(IEvent event, String property, String newValue,
-                             DateTimeFormatter formatter) {
-
-    UUID seriesId = event.getSeriesId();
-    if (seriesId == null) {
-      boolean success = editSingleEvent(event, property, newValue, formatter);
-      if (success) {
-        return 1;
-      } else {
-        return 0;
+  @Override
+  public void rollbackTransaction() {
+    boolean open = isInTransaction();
+    replaying = open;
+    try {
+      super.rollbackTransaction();
+    } finally {
+      replaying = false;
+      if (open) {
+        rules = rulesAtBegin;
       }
+      finishTransaction();
     }
+  }
 
-    List<IEvent> allEvents = getEventsWithinDates(LocalDateTime.MIN, LocalDateTime.MAX);
-    int count = 0;
-
-    for (IEvent e : allEvents) {
-      Event ev = (Event) e;
-      if (ev.getSeriesId() != null && ev.getSeriesId().equals(seriesId)) {
-        Event modified = (Event) createModifiedEvent(ev, property, newValue, formatter);
-        if (!hasConflict(modified)) {
-          removeEvent(ev);
-          addEvent(modified);
-          count++;
-        }
+  /**
+   * Catches the busy bitmap up with the removals the transaction put off, then publishes.
+   */
+  private void finishTransaction() {
+    try {
+      if (!staleBusy.isEmpty()) {
+        unmarkBusy(staleBusy);
+        staleBusy = new ArrayList<>();
       }
+    } finally {
+      finishEdit();
     }
-
-    return count;
   }
 
+  /**
+   * Gets a read-only view of the calendar as it is now.
+   * With the index this is O(1): the view shares the index's current, never-changing nodes,
+   * so it can be read from any thread while this calendar keeps being written, and edits that
+   * replace several events show up in snapshots only once they are complete.
+   * A frozen calendar's snapshot shares its arrays, also in O(1).
+   * Without the index every event is copied into a new tree.
+   *
+   * @return the snapshot
+   */
   @Override
-  public ZoneId getTimezone() {
-    return timezone;
+  public ICalendarModel snapshot() {
+    ICalendarModel stored;
+    if (frozen != null) {
+      stored = frozen.withTimezone(getTimezone());
+    } else if (index == null) {
+      return super.snapshot();
+    } else {
+      stored = new CalendarSnapshot(published, getTimezone(), getCreationTimezone());
+    }
+    SeriesRules visible = publishedRules;
+    return visible.isEmpty() ? stored : new RecurringSnapshot(stored, visible);
   }
 
-  @Override
-  public void setTimezone(ZoneId timezone) {
-    this.timezone = timezone;
+  /**
+   * Makes the index's current version the one snapshots see, unless an edit is still running.
+   */
+  private void publish() {
+    if (editDepth == 0) {
+      publishedRules = rules;
+      if (index != null) {
+        published = index.copy();
+      }
+    }
   }
 
-  @Override
-  public ZoneId getCreationTimezone() {
-    return creationTimezone;
+  private void finishEdit() {
+    editDepth--;
+    publish();
+  }
+
+
+  /**
+   * The subject and start time used to look events up for editing and copying.
+   */
+  private static final class StartKey {
+    private final String subject;
+    private final LocalDateTime start;
+
+    private StartKey(String subject, LocalDateTime start) {
+      this.subject = subject;
+      this.start = start;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof StartKey)) {
+        return false;
+      }
+      StartKey that = (StartKey) o;
+      return Objects.equals(subject, that.subject) && Objects.equals(start, that.start);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(subject, start);
+    }
   }
 
 
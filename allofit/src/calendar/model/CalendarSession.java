@@ -0,0 +1,103 @@
+package calendar.model;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * One client's view of a calendar library: which calendar it is using. Each client opens its
+ * own session, so clients sharing a library never change each other's active calendar.
+ * A session follows its calendar through renames and loses it when the calendar is deleted.
+ * A session is meant for one client at a time; the library behind it may be shared.
+ */
+public final class CalendarSession {
+  private final CalendarLibrary library;
+  private volatile ICalendarModel active;
+
+  /**
+   * Opens a session with no calendar in use.
+   *
+   * @param library the library the session reads
+   */
+  CalendarSession(CalendarLibrary library) {
+    this.library = library;
+    this.active = null;
+  }
+
+  /**
+   * Sets the calendar this session works on.
+   *
+   * @param name the name of the calendar to use
+   * @throws IllegalArgumentException if no calendar with the given name exists
+   */
+  public void useCalendar(String name) {
+    ICalendarModel calendar = library.calendarNamed(name);
+    if (calendar == null) {
+      throw new IllegalArgumentException("No such calendar exists.");
+    }
+    active = calendar;
+  }
+
+  /**
+   * Returns the calendar this session works on.
+   *
+   * @return the active calendar
+   * @throws IllegalStateException if no calendar is in use, or it has been deleted
+   */
+  public ICalendarModel getActiveCalendar() {
+    ICalendarModel calendar = active;
+    if (calendar == null || library.nameOf(calendar) == null) {
+      throw new IllegalStateException("No calendar in use.");
+    }
+    return calendar;
+  }
+
+  /**
+   * Returns the timezone of the active calendar, read from the calendar itself so that it
+   * follows renames and timezone edits.
+   *
+   * @return the ZoneId of the active calendar
+   * @throws IllegalStateException if no calendar is in use, or it has been deleted
+   */
+  public ZoneId getActiveTimezone() {
+    return getActiveCalendar().getTimezone();
+  }
+
+  /**
+   * Returns the current name of the active calendar.
+   *
+   * @return the name, or null if no calendar is in use or it has been deleted
+   */
+  public String getCurrentCalendarName() {
+    ICalendarModel calendar = active;
+    return calendar == null ? null : library.nameOf(calendar);
+  }
+
+  /**
+   * Copies a single event from the active calendar to another calendar.
+   *
+   * @param subject   the event subject to identify the source event
+   * @param start     the start time of the source event
+   * @param targetCal the name of the calendar to copy into
+   * @param dest      the new start time in the target calendar's timezone
+   * @return true if successfully copied; false otherwise
+   */
+  public boolean copyEventToCalendar(String subject, LocalDateTime start, String targetCal,
+                                     LocalDateTime dest) {
+    String source = getCurrentCalendarName();
+    return source != null && library.copyEvent(source, subject, start, targetCal, dest);
+  }
+
+  /**
+   * Copies all events on a date in the active calendar to another calendar.
+   *
+   * @param srcDate   the date from which to copy events
+   * @param targetCal the name of the target calendar
+   * @param destDate  the date to which events will be copied
+   * @return the number of events successfully copied
+   */
+  public int copyEventsOnDateToCalendar(LocalDate srcDate, String targetCal, LocalDate destDate) {
+    String source = getCurrentCalendarName();
+    return source == null ? 0 : library.copyEventsOnDate(source, srcDate, targetCal, destDate);
+  }
+}
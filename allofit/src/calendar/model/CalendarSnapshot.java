@@ -0,0 +1,89 @@
+package calendar.model;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * A read-only view of a calendar at one moment, backed by a copy of an interval tree whose
+ * nodes never change. Any number of threads can query it without locking while the calendar
+ * it came from keeps changing.
+ * Every method that would change the calendar throws UnsupportedOperationException.
+ */
+final class CalendarSnapshot extends ReadOnlyCalendarModel {
+  private final EventIntervalTree events;
+
+  /**
+   * Makes a snapshot over a tree that will not be changed again.
+   *
+   * @param events           the tree holding the snapshot's events
+   * @param timezone         the calendar's current timezone
+   * @param creationTimezone the calendar's creation timezone
+   */
+  CalendarSnapshot(EventIntervalTree events, ZoneId timezone, ZoneId creationTimezone) {
+    super(timezone, creationTimezone);
+    this.events = events;
+  }
+
+  @Override
+  public IEvent findEvent(String subject, LocalDateTime start) {
+    IEvent found = null;
+    for (IEvent e : events.startingWithin(start, start.plusNanos(1))) {
+      if (e.getSubject().equals(subject)) {
+        if (found != null) {
+          return null;
+        }
+        found = e;
+      }
+    }
+    return found;
+  }
+
+  @Override
+  public List<IEvent> getEventsOnDate(LocalDate date) {
+    return events.startingWithin(date.atStartOfDay(), date.plusDays(1).atStartOfDay());
+  }
+
+  @Override
+  public List<IEvent> getEventsWithinDates(LocalDateTime beginning, LocalDateTime ending) {
+    return events.overlapping(beginning, ending);
+  }
+
+  @Override
+  public boolean isBusy(LocalDateTime time) {
+    return events.covers(time);
+  }
+
+  @Override
+  public boolean hasConflict(IEvent e) {
+    return events.contains(e);
+  }
+
+  @Override
+  public List<IEvent> getEventsFromDate(LocalDate date, int pageSize) {
+    LocalDateTime from = date.atStartOfDay();
+    return firstPage(e -> !e.getStart().isBefore(from), pageSize);
+  }
+
+  @Override
+  public List<IEvent> getEventsAfter(IEvent cursor, int pageSize) {
+    return firstPage(e -> EventKey.ORDER.compare(e, cursor) > 0, pageSize);
+  }
+
+  /**
+   * Returns all events in the snapshot, in start order.
+   *
+   * @return list of all events
+   */
+  @Override
+  public List<IEvent> getEvents() {
+    return events.firstMatching(e -> true, events.size());
+  }
+
+  private List<IEvent> firstPage(Predicate<IEvent> lowerBound, int pageSize) {
+    checkPageSize(pageSize);
+    return events.firstMatching(lowerBound, pageSize);
+  }
+}
@@ -0,0 +1,550 @@
+package calendar.model;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.UUID;
+
+/**
+ * A calendar that stores its events column by column in primitive arrays.
+ * Start and end are longs counting minutes since the epoch, subjects, locations and
+ * descriptions are int ids into shared string dictionaries, and series are int ids into a
+ * dictionary of UUIDs. Rows are kept sorted by start, end and subject, so range queries are
+ * a binary search followed by a sequential scan of the time columns.
+ * Writes do not move the columns: new rows are appended after the sorted ones and removed rows
+ * are only marked. The next query sorts the appended rows and merges them in, dropping the
+ * marked rows, in one pass, so loading events in any order costs O(n log n) overall.
+ * The rows of each series are linked to each other, so series edits never scan the calendar.
+ * Events are only turned back into Event objects when they are returned; changing a returned
+ * event does not change the calendar.
+ * Times must fall on a whole minute.
+ */
+public class ColumnarCalendarModel extends AbstractCalendarModel implements LazilySorted {
+  private static final int INITIAL_CAPACITY = 16;
+  private static final int NONE = -1;
+
+  private final EncodingDictionary<String> strings;
+  private final EncodingDictionary<UUID> seriesIds;
+  private long[] starts;
+  private long[] ends;
+  private int[] subjects;
+  private int[] locations;
+  private int[] descriptions;
+  private int[] series;
+  private boolean[] publicFlags;
+  private int[] nextInSeries;
+  private int[] previousInSeries;
+  private final Map<Integer, Integer> firstInSeries;
+  private final Map<EventKey, Integer> appended;
+  private final BitSet removed;
+  private int removedCount;
+  private int sorted;
+  private int size;
+  private long longestMinutes;
+
+  /**
+   * Makes a new columnar calendar with a specific timezone.
+   *
+   * @param timezone the current timezone we are in
+   */
+  public ColumnarCalendarModel(ZoneId timezone) {
+    super(timezone);
+    this.strings = new EncodingDictionary<>();
+    this.seriesIds = new EncodingDictionary<>();
+    this.starts = new long[INITIAL_CAPACITY];
+    this.ends = new long[INITIAL_CAPACITY];
+    this.subjects = new int[INITIAL_CAPACITY];
+    this.locations = new int[INITIAL_CAPACITY];
+    this.descriptions = new int[INITIAL_CAPACITY];
+    this.series = new int[INITIAL_CAPACITY];
+    this.publicFlags = new boolean[INITIAL_CAPACITY];
+    this.nextInSeries = new int[INITIAL_CAPACITY];
+    this.previousInSeries = new int[INITIAL_CAPACITY];
+    this.firstInSeries = new HashMap<>();
+    this.appended = new HashMap<>();
+    this.removed = new BitSet();
+    this.removedCount = 0;
+    this.sorted = 0;
+    this.size = 0;
+    this.longestMinutes = 0;
+  }
+
+  @Override
+  public void addEvent(IEvent event) {
+    long start = EpochMinutes.of(event.getStart());
+    long end = EpochMinutes.of(event.getEnd());
+    if (rowOf(event) >= 0) {
+      throw new IllegalArgumentException("Cannot add two events with the same subject");
+    }
+    ensureCapacity(size + 1);
+    int row = size;
+    starts[row] = start;
+    ends[row] = end;
+    subjects[row] = strings.encode(event.getSubject());
+    locations[row] = strings.encode(event.getLocation());
+    descriptions[row] = strings.encode(event.getDescription());
+    publicFlags[row] = event.isPublic();
+    series[row] = NONE;
+    nextInSeries[row] = NONE;
+    previousInSeries[row] = NONE;
+    if (event.getSeriesId() != null) {
+      series[row] = seriesIds.encode(event.getSeriesId());
+      Integer first = firstInSeries.put(series[row], row);
+      if (first != null) {
+        nextInSeries[row] = first;
+        previousInSeries[first] = row;
+      }
+    }
+    appended.put(EventKey.of(event), row);
+    size++;
+    longestMinutes = Math.max(longestMinutes, end - start);
+    recordAdded(event);
+  }
+
+  @Override
+  public void removeEvent(IEvent event) {
+    int row = rowOf(event);
+    if (row < 0) {
+      throw new IllegalArgumentException("Event not found in calendar");
+    }
+    drop(row);
+    settleIfMostlyRemoved();
+  }
+
+  /**
+   * Removes a batch by checking every event is stored, then marking each row removed.
+   *
+   * @param batch the events to remove
+   */
+  @Override
+  public void removeEvents(Collection<? extends IEvent> batch) {
+    BitSet doomed = new BitSet();
+    for (IEvent event : batch) {
+      int row = rowOf(event);
+      if (row < 0 || doomed.get(row)) {
+        throw new IllegalArgumentException("Event not found in calendar");
+      }
+      doomed.set(row);
+    }
+    dropAll(doomed);
+  }
+
+  @Override
+  public int removeRange(LocalDateTime start, LocalDateTime end) {
+    checkRange(start, end);
+    settle();
+    long after = EpochMinutes.floor(start);
+    long before = EpochMinutes.ceil(end);
+    BitSet doomed = new BitSet(size);
+    for (int row = firstStartingAt(after - longestMinutes); row < size && starts[row] < before;
+         row++) {
+      if (ends[row] > after) {
+        doomed.set(row);
+      }
+    }
+    return dropAll(doomed);
+  }
+
+  @Override
+  public int removeSeries(UUID seriesId) {
+    int id = seriesIds.find(seriesId);
+    if (id < 0) {
+      return 0;
+    }
+    BitSet doomed = new BitSet(size);
+    for (int row = firstInSeries.get(id); row != NONE; row = nextInSeries[row]) {
+      doomed.set(row);
+    }
+    return dropAll(doomed);
+  }
+
+  @Override
+  public IEvent findEvent(String subject, LocalDateTime start) {
+    int subjectId = strings.find(subject);
+    if (subjectId < 0 || start.getSecond() != 0 || start.getNano() != 0) {
+      return null;
+    }
+    settle();
+    long minute = EpochMinutes.of(start);
+    int found = -1;
+    for (int row = firstStartingAt(minute); row < size && starts[row] == minute; row++) {
+      if (subjects[row] == subjectId) {
+        if (found >= 0) {
+          return null;
+        }
+        found = row;
+      }
+    }
+    return found < 0 ? null : materialize(found);
+  }
+
+  @Override
+  public List<IEvent> getEventsOnDate(LocalDate date) {
+    settle();
+    long from = EpochMinutes.of(date.atStartOfDay());
+    long to = EpochMinutes.of(date.plusDays(1).atStartOfDay());
+    List<IEvent> result = new ArrayList<>();
+    for (int row = firstStartingAt(from); row < size && starts[row] < to; row++) {
+      result.add(materialize(row));
+    }
+    return result;
+  }
+
+  @Override
+  public List<IEvent> getEventsWithinDates(LocalDateTime beginning, LocalDateTime ending) {
+    settle();
+    long after = EpochMinutes.floor(beginning);
+    long before = EpochMinutes.ceil(ending);
+    List<IEvent> result = new ArrayList<>();
+    for (int row = firstStartingAt(after - longestMinutes); row < size && starts[row] < before;
+         row++) {
+      if (ends[row] > after) {
+        result.add(materialize(row));
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public boolean isBusy(LocalDateTime time) {
+    settle();
+    long after = EpochMinutes.floor(time);
+    long before = EpochMinutes.ceil(time);
+    for (int row = firstStartingAt(after - longestMinutes); row < size && starts[row] < before;
+         row++) {
+      if (ends[row] > after) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public boolean hasConflict(IEvent e) {
+    return rowOf(e) >= 0;
+  }
+
+  @Override
+  public List<IEvent> getEventsFromDate(LocalDate date, int pageSize) {
+    settle();
+    return page(firstStartingAt(EpochMinutes.of(date.atStartOfDay())), pageSize);
+  }
+
+  @Override
+  public List<IEvent> getEventsAfter(IEvent cursor, int pageSize) {
+    settle();
+    long start = EpochMinutes.floor(cursor.getStart());
+    int row = firstStartingAt(start);
+    while (row < size && compareRow(row, cursor) <= 0) {
+      row++;
+    }
+    return page(row, pageSize);
+  }
+
+  /**
+   * Returns all events in this calendar, in start order.
+   *
+   * @return list of all events
+   */
+  @Override
+  public List<IEvent> getEvents() {
+    settle();
+    return page(0, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Gets the stored occurrences of a series by following the links between its rows.
+   *
+   * @param seriesId the series to look up
+   * @return the occurrences, or null if the series has no events in this calendar
+   */
+  @Override
+  protected NavigableSet<IEvent> getSeriesOccurrences(UUID seriesId) {
+    int id = seriesIds.find(seriesId);
+    if (id < 0) {
+      return null;
+    }
+    NavigableSet<IEvent> occurrences = new TreeSet<>(EventKey.ORDER);
+    for (int row = firstInSeries.get(id); row != NONE; row = nextInSeries[row]) {
+      occurrences.add(materialize(row));
+    }
+    return occurrences;
+  }
+
+  /**
+   * Gets the number of distinct strings the calendar has stored.
+   * Subjects, locations and descriptions shared by many events are only counted once, and
+   * strings no stored event uses any more are not counted.
+   *
+   * @return the number of dictionary entries
+   */
+  public int getDictionarySize() {
+    return strings.size();
+  }
+
+  /**
+   * Builds an Event from one row of the columns.
+   */
+  private IEvent materialize(int row) {
+    Event event = new Event(strings.decode(subjects[row]),
+            EpochMinutes.toDateTime(starts[row]),
+            EpochMinutes.toDateTime(ends[row]),
+            strings.decode(locations[row]),
+            strings.decode(descriptions[row]),
+            publicFlags[row] ? "public" : "private");
+    if (series[row] != NONE) {
+      event.setSeriesId(seriesIds.decode(series[row]));
+    }
+    return event;
+  }
+
+  private List<IEvent> page(int fromRow, int pageSize) {
+    if (pageSize < 1) {
+      throw new IllegalArgumentException("Page size must be positive.");
+    }
+    int toRow = (int) Math.min(size, (long) fromRow + pageSize);
+    List<IEvent> result = new ArrayList<>(Math.max(toRow - fromRow, 0));
+    for (int row = fromRow; row < toRow; row++) {
+      result.add(materialize(row));
+    }
+    return result;
+  }
+
+  /**
+   * Gets the first sorted row whose start is at or after the given minute.
+   */
+  private int firstStartingAt(long minute) {
+    int lo = 0;
+    int hi = sorted;
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      if (starts[mid] < minute) {
+        lo = mid + 1;
+      } else {
+        hi = mid;
+      }
+    }
+    return lo;
+  }
+
+  /**
+   * Compares a stored row with an event in start, end, subject order.
+   */
+  private int compareRow(int row, IEvent event) {
+    long start = EpochMinutes.floor(event.getStart());
+    long end = EpochMinutes.floor(event.getEnd());
+    if (starts[row] != start) {
+      return Long.compare(starts[row], start);
+    }
+    if (ends[row] != end) {
+      return Long.compare(ends[row], end);
+    }
+    return strings.decode(subjects[row]).compareTo(event.getSubject());
+  }
+
+  /**
+   * Compares two stored rows in start, end, subject order.
+   */
+  private int compareRows(int a, int b) {
+    if (starts[a] != starts[b]) {
+      return Long.compare(starts[a], starts[b]);
+    }
+    if (ends[a] != ends[b]) {
+      return Long.compare(ends[a], ends[b]);
+    }
+    return strings.decode(subjects[a]).compareTo(strings.decode(subjects[b]));
+  }
+
+  /**
+   * Gets the row holding an event with the same subject, start and end, or -1 if none.
+   * Sorted rows are found by binary search and appended rows by their key.
+   */
+  private int rowOf(IEvent event) {
+    LocalDateTime start = event.getStart();
+    LocalDateTime end = event.getEnd();
+    int subjectId = strings.find(event.getSubject());
+    if (subjectId < 0 || start.getSecond() != 0 || start.getNano() != 0
+            || end.getSecond() != 0 || end.getNano() != 0) {
+      return -1;
+    }
+    long startMinute = EpochMinutes.of(start);
+    long endMinute = EpochMinutes.of(end);
+    for (int row = firstStartingAt(startMinute); row < sorted && starts[row] == startMinute;
+         row++) {
+      if (ends[row] == endMinute && subjects[row] == subjectId && !removed.get(row)) {
+        return row;
+      }
+    }
+    Integer row = appended.get(EventKey.of(event));
+    return row == null ? -1 : row;
+  }
+
+  /**
+   * Drops the marked rows and settles once if they leave the columns mostly empty.
+   *
+   * @return the number of rows dropped
+   */
+  private int dropAll(BitSet doomed) {
+    int count = 0;
+    for (int row = doomed.nextSetBit(0); row >= 0; row = doomed.nextSetBit(row + 1)) {
+      drop(row);
+      count++;
+    }
+    settleIfMostlyRemoved();
+    return count;
+  }
+
+  /**
+   * Marks a live row removed: unlinks it from its series and releases its dictionary entries.
+   */
+  private void drop(int row) {
+    if (isInTransaction()) {
+      recordRemoved(materialize(row));
+    }
+    if (row >= sorted) {
+      appended.remove(EventKey.of(strings.decode(subjects[row]),
+              EpochMinutes.toDateTime(starts[row]), EpochMinutes.toDateTime(ends[row])));
+    }
+    if (series[row] != NONE) {
+      int next = nextInSeries[row];
+      int previous = previousInSeries[row];
+      if (next != NONE) {
+        previousInSeries[next] = previous;
+      }
+      if (previous != NONE) {
+        nextInSeries[previous] = next;
+      } else if (next != NONE) {
+        firstInSeries.put(series[row], next);
+      } else {
+        firstInSeries.remove(series[row]);
+      }
+      seriesIds.release(series[row]);
+    }
+    strings.release(subjects[row]);
+    strings.release(locations[row]);
+    strings.release(descriptions[row]);
+    removed.set(row);
+    removedCount++;
+  }
+
+  @Override
+  public boolean hasUnsortedWrites() {
+    return sorted != size || removedCount != 0;
+  }
+
+  @Override
+  public void sortWrites() {
+    settle();
+  }
+
+  /**
+   * Settles early once at least half of the rows are removed ones, so a run of writes with no
+   * queries between them cannot hold on to removed rows indefinitely.
+   */
+  private void settleIfMostlyRemoved() {
+    if (removedCount > INITIAL_CAPACITY && removedCount * 2 >= size) {
+      settle();
+    }
+  }
+
+  /**
+   * Brings the columns back to sorted rows with nothing removed: sorts the appended rows and
+   * merges them with the sorted ones into new columns, skipping removed rows, then moves the
+   * series links to the new rows.
+   */
+  private void settle() {
+    if (sorted == size && removedCount == 0) {
+      return;
+    }
+    Integer[] tail = new Integer[size - sorted];
+    int tailLength = 0;
+    for (int row = sorted; row < size; row++) {
+      if (!removed.get(row)) {
+        tail[tailLength++] = row;
+      }
+    }
+    Arrays.sort(tail, 0, tailLength, this::compareRows);
+
+    int live = size - removedCount;
+    int capacity = Math.max(INITIAL_CAPACITY, live + (live >> 1));
+    long[] newStarts = new long[capacity];
+    long[] newEnds = new long[capacity];
+    int[] newSubjects = new int[capacity];
+    int[] newLocations = new int[capacity];
+    int[] newDescriptions = new int[capacity];
+    int[] newSeries = new int[capacity];
+    boolean[] newPublicFlags = new boolean[capacity];
+    int[] moved = new int[size];
+    long longest = 0;
+    int head = removed.nextClearBit(0);
+    int next = 0;
+    for (int to = 0; to < live; to++) {
+      int from;
+      if (head < sorted && (next == tailLength || compareRows(head, tail[next]) < 0)) {
+        from = head;
+        head = removed.nextClearBit(head + 1);
+      } else {
+        from = tail[next++];
+      }
+      newStarts[to] = starts[from];
+      newEnds[to] = ends[from];
+      newSubjects[to] = subjects[from];
+      newLocations[to] = locations[from];
+      newDescriptions[to] = descriptions[from];
+      newSeries[to] = series[from];
+      newPublicFlags[to] = publicFlags[from];
+      moved[from] = to;
+      longest = Math.max(longest, ends[from] - starts[from]);
+    }
+
+    int[] newNext = new int[capacity];
+    int[] newPrevious = new int[capacity];
+    for (int from = removed.nextClearBit(0); from < size; from = removed.nextClearBit(from + 1)) {
+      int to = moved[from];
+      newNext[to] = nextInSeries[from] == NONE ? NONE : moved[nextInSeries[from]];
+      newPrevious[to] = previousInSeries[from] == NONE ? NONE : moved[previousInSeries[from]];
+    }
+    firstInSeries.replaceAll((id, row) -> moved[row]);
+
+    starts = newStarts;
+    ends = newEnds;
+    subjects = newSubjects;
+    locations = newLocations;
+    descriptions = newDescriptions;
+    series = newSeries;
+    publicFlags = newPublicFlags;
+    nextInSeries = newNext;
+    previousInSeries = newPrevious;
+    appended.clear();
+    removed.clear();
+    removedCount = 0;
+    sorted = live;
+    size = live;
+    longestMinutes = longest;
+  }
+
+  private void ensureCapacity(int needed) {
+    if (needed <= starts.length) {
+      return;
+    }
+    int capacity = Math.max(needed, starts.length * 2);
+    starts = Arrays.copyOf(starts, capacity);
+    ends = Arrays.copyOf(ends, capacity);
+    subjects = Arrays.copyOf(subjects, capacity);
+    locations = Arrays.copyOf(locations, capacity);
+    descriptions = Arrays.copyOf(descriptions, capacity);
+    series = Arrays.copyOf(series, capacity);
+    publicFlags = Arrays.copyOf(publicFlags, capacity);
+    nextInSeries = Arrays.copyOf(nextInSeries, capacity);
+    previousInSeries = Arrays.copyOf(previousInSeries, capacity);
+  }
+}
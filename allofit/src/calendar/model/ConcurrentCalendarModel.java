@@ -0,0 +1,355 @@
+package calendar.model;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A calendar that many threads can read and write at once.
+ * Events live in a ConcurrentSkipListMap ordered by start, then end, then subject.
+ * Reads never lock: range queries walk the skip list and are weakly consistent, so they see
+ * every event that was stored for the whole query and may or may not see events added or
+ * removed while it runs. Writers take a lock so the series index and edits that remove and
+ * re-add events stay in step with the main map.
+ * Range queries look back from their beginning by the longest stored event; writers count the
+ * stored lengths so that bound shrinks again when long events are removed.
+ * Writers also keep a persistent interval tree, published when they release the lock, so
+ * {@link #snapshot()} gives a consistent view in O(1).
+ */
+public class ConcurrentCalendarModel extends AbstractCalendarModel {
+  private final ConcurrentSkipListMap<EventKey, IEvent> events;
+  private final Map<UUID, NavigableSet<IEvent>> bySeries;
+  private final ReentrantLock writeLock;
+  private final TreeMap<Duration, Integer> lengths;
+  private volatile Duration longestEvent;
+  private final EventIntervalTree versions;
+  private volatile EventIntervalTree published;
+
+  /**
+   * Makes a new concurrent calendar with a specific timezone.
+   *
+   * @param timezone the current timezone we are in
+   */
+  public ConcurrentCalendarModel(ZoneId timezone) {
+    super(timezone);
+    this.events = new ConcurrentSkipListMap<>();
+    this.bySeries = new ConcurrentHashMap<>();
+    this.writeLock = new ReentrantLock();
+    this.lengths = new TreeMap<>();
+    this.longestEvent = Duration.ZERO;
+    this.versions = new EventIntervalTree();
+    this.published = versions.copy();
+  }
+
+  @Override
+  public void addEvent(IEvent event) {
+    writeLock.lock();
+    try {
+      canonicalize(event);
+      if (events.putIfAbsent(EventKey.of(event), event) != null) {
+        throw new IllegalArgumentException("Cannot add two events with the same subject");
+      }
+      versions.insert(event);
+      lengths.merge(lengthOf(event), 1, Integer::sum);
+      longestEvent = lengths.lastKey();
+      if (event.getSeriesId() != null) {
+        bySeries.computeIfAbsent(event.getSeriesId(),
+                k -> new ConcurrentSkipListSet<>(EventKey.ORDER)).add(event);
+      }
+      recordAdded(event);
+    } finally {
+      unlock();
+    }
+  }
+
+  @Override
+  public void addEvents(Collection<? extends IEvent> batch) {
+    writeLock.lock();
+    try {
+      super.addEvents(batch);
+    } finally {
+      unlock();
+    }
+  }
+
+  @Override
+  public void removeEvent(IEvent event) {
+    writeLock.lock();
+    try {
+      IEvent removed = events.remove(EventKey.of(event));
+      if (removed == null) {
+        throw new IllegalArgumentException("Event not found in calendar");
+      }
+      versions.remove(removed);
+      Duration length = lengthOf(removed);
+      if (lengths.merge(length, -1, Integer::sum) == 0) {
+        lengths.remove(length);
+      }
+      longestEvent = lengths.isEmpty() ? Duration.ZERO : lengths.lastKey();
+      if (removed.getSeriesId() != null) {
+        NavigableSet<IEvent> occurrences = bySeries.get(removed.getSeriesId());
+        occurrences.remove(removed);
+        if (occurrences.isEmpty()) {
+          bySeries.remove(removed.getSeriesId());
+        }
+      }
+      recordRemoved(removed);
+    } finally {
+      unlock();
+    }
+  }
+
+  @Override
+  public void removeEvents(Collection<? extends IEvent> batch) {
+    writeLock.lock();
+    try {
+      super.removeEvents(batch);
+    } finally {
+      unlock();
+    }
+  }
+
+  @Override
+  public int removeRange(LocalDateTime start, LocalDateTime end) {
+    writeLock.lock();
+    try {
+      return super.removeRange(start, end);
+    } finally {
+      unlock();
+    }
+  }
+
+  @Override
+  public int removeSeries(UUID seriesId) {
+    writeLock.lock();
+    try {
+      return super.removeSeries(seriesId);
+    } finally {
+      unlock();
+    }
+  }
+
+  /**
+   * Starts a transaction. Until it ends, snapshots keep showing the calendar as it was when
+   * it began; every write in the meantime, from any thread, is part of the transaction.
+   */
+  @Override
+  public void beginTransaction() {
+    writeLock.lock();
+    try {
+      super.beginTransaction();
+    } finally {
+      unlock();
+    }
+  }
+
+  @Override
+  public void commitTransaction() {
+    writeLock.lock();
+    try {
+      super.commitTransaction();
+    } finally {
+      unlock();
+    }
+  }
+
+  @Override
+  public void rollbackTransaction() {
+    writeLock.lock();
+    try {
+      super.rollbackTransaction();
+    } finally {
+      unlock();
+    }
+  }
+
+  /**
+   * Finds and returns an event with the given subject and start time.
+   * Only the events that start at exactly that time are looked at.
+   *
+   * @param subject the subject to match
+   * @param start   the start date/time to match
+   * @return the matching IEvent, or null if not found or ambiguous
+   */
+  @Override
+  public IEvent findEvent(String subject, LocalDateTime start) {
+    IEvent found = null;
+    for (IEvent e : startingWithin(start, start.plusNanos(1)).values()) {
+      if (e.getSubject().equals(subject)) {
+        if (found != null) {
+          return null;
+        }
+        found = e;
+      }
+    }
+    return found;
+  }
+
+  @Override
+  public List<IEvent> getEventsOnDate(LocalDate date) {
+    return new ArrayList<>(startingWithin(date.atStartOfDay(),
+            date.plusDays(1).atStartOfDay()).values());
+  }
+
+  @Override
+  public List<IEvent> getEventsWithinDates(LocalDateTime beginning, LocalDateTime ending) {
+    List<IEvent> result = new ArrayList<>();
+    for (IEvent e : candidatesOverlapping(beginning, ending).values()) {
+      if (e.getEnd().isAfter(beginning)) {
+        result.add(e);
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public boolean isBusy(LocalDateTime time) {
+    for (IEvent e : candidatesOverlapping(time, time).values()) {
+      if (e.getEnd().isAfter(time) && e.getStart().isBefore(time)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public boolean hasConflict(IEvent e) {
+    return events.containsKey(EventKey.of(e));
+  }
+
+  @Override
+  public List<IEvent> getEventsFromDate(LocalDate date, int pageSize) {
+    return firstPage(events.tailMap(EventKey.lowest(date.atStartOfDay())), pageSize);
+  }
+
+  @Override
+  public List<IEvent> getEventsAfter(IEvent cursor, int pageSize) {
+    return firstPage(events.tailMap(EventKey.of(cursor), false), pageSize);
+  }
+
+  /**
+   * Returns all events in this calendar, in start order.
+   *
+   * @return list of all events
+   */
+  @Override
+  public List<IEvent> getEvents() {
+    return new ArrayList<>(events.values());
+  }
+
+  @Override
+  public boolean editSingleEvent(IEvent event, String property, String newValue,
+                                 DateTimeFormatter formatter) {
+    writeLock.lock();
+    try {
+      return super.editSingleEvent(event, property, newValue, formatter);
+    } finally {
+      unlock();
+    }
+  }
+
+  @Override
+  public int editFutureEvents(IEvent event, String property, String newValue,
+                              DateTimeFormatter formatter) {
+    writeLock.lock();
+    try {
+      return super.editFutureEvents(event, property, newValue, formatter);
+    } finally {
+      unlock();
+    }
+  }
+
+  @Override
+  public int editWholeSeries(IEvent event, String property, String newValue,
+                             DateTimeFormatter formatter) {
+    writeLock.lock();
+    try {
+      return super.editWholeSeries(event, property, newValue, formatter);
+    } finally {
+      unlock();
+    }
+  }
+
+  @Override
+  protected NavigableSet<IEvent> getSeriesOccurrences(UUID seriesId) {
+    return bySeries.get(seriesId);
+  }
+
+  /**
+   * Gets a read-only view of the calendar as of the last completed write, in O(1).
+   * Edits that replace several events are in the view entirely or not at all.
+   *
+   * @return the snapshot
+   */
+  @Override
+  public ICalendarModel snapshot() {
+    return new CalendarSnapshot(published, getTimezone(), getCreationTimezone());
+  }
+
+  /**
+   * Releases the write lock, first publishing the tree for snapshots if this is the outermost
+   * hold and no transaction is open, so a running edit's partial changes are never published.
+   */
+  private void unlock() {
+    if (writeLock.getHoldCount() == 1 && !isInTransaction()) {
+      published = versions.copy();
+    }
+    writeLock.unlock();
+  }
+
+  private static Duration lengthOf(IEvent event) {
+    return Duration.between(event.getStart(), event.getEnd());
+  }
+
+  /**
+   * Gets a live view of the events starting at or after from and before to.
+   */
+  private NavigableMap<EventKey, IEvent> startingWithin(LocalDateTime from, LocalDateTime to) {
+    if (to.isBefore(from)) {
+      return Collections.emptyNavigableMap();
+    }
+    return events.subMap(EventKey.lowest(from), true, EventKey.lowest(to), false);
+  }
+
+  /**
+   * Gets a live view of every event that could overlap the range: those starting before its end
+   * and no earlier than the longest stored event before its beginning.
+   */
+  private NavigableMap<EventKey, IEvent> candidatesOverlapping(LocalDateTime beginning,
+                                                              LocalDateTime ending) {
+    Duration longest = longestEvent;
+    if (beginning.isBefore(LocalDateTime.MIN.plus(longest))) {
+      return events.headMap(EventKey.lowest(ending), false);
+    }
+    return startingWithin(beginning.minus(longest), ending);
+  }
+
+  private List<IEvent> firstPage(NavigableMap<EventKey, IEvent> from, int pageSize) {
+    if (pageSize < 1) {
+      throw new IllegalArgumentException("Page size must be positive.");
+    }
+    List<IEvent> page = new ArrayList<>(pageSize);
+    for (IEvent e : from.values()) {
+      if (page.size() == pageSize) {
+        break;
+      }
+      page.add(e);
+    }
+    return page;
+  }
+}
@@ -0,0 +1,107 @@
+package calendar.model;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Gives each distinct value a small int id, so repeated values are stored once and
+ * referred to by id. The dictionary counts the references to each value: once every
+ * reference is released the value is dropped and its id is handed to the next new value.
+ *
+ * @param <T> the type of value being encoded
+ */
+final class EncodingDictionary<T> {
+  private final Map<T, Integer> ids;
+  private final List<T> values;
+  private int[] counts;
+  private final Deque<Integer> freeIds;
+
+  /**
+   * Makes an empty dictionary.
+   */
+  EncodingDictionary() {
+    this.ids = new HashMap<>();
+    this.values = new ArrayList<>();
+    this.counts = new int[16];
+    this.freeIds = new ArrayDeque<>();
+  }
+
+  /**
+   * Gets the id of a value and counts one more reference to it, giving it an id if it is not
+   * held yet.
+   *
+   * @param value the value
+   * @return its id
+   */
+  int encode(T value) {
+    Integer id = ids.get(value);
+    if (id != null) {
+      counts[id]++;
+      return id;
+    }
+    if (freeIds.isEmpty()) {
+      id = values.size();
+      values.add(value);
+      if (id == counts.length) {
+        counts = Arrays.copyOf(counts, id * 2);
+      }
+    } else {
+      id = freeIds.pop();
+      values.set(id, value);
+    }
+    counts[id] = 1;
+    ids.put(value, id);
+    return id;
+  }
+
+  /**
+   * Drops one reference to a value, dropping the value itself with its last reference.
+   *
+   * @param id an id returned by encode and not yet released as often as it was encoded
+   */
+  void release(int id) {
+    if (--counts[id] == 0) {
+      ids.remove(values.get(id));
+      values.set(id, null);
+      freeIds.push(id);
+    }
+  }
+
+  /**
+   * Gets the id of a value without adding it.
+   *
+   * @param value the value
+   * @return its id, or -1 if the value is not held
+   */
+  int find(T value) {
+    Integer id = ids.get(value);
+    if (id == null) {
+      return -1;
+    }
+    return id;
+  }
+
+  /**
+   * Gets the value with the given id.
+   *
+   * @param id an id returned by encode and still referenced
+   * @return the value
+   */
+  T decode(int id) {
+    return values.get(id);
+  }
+
+  /**
+   * Gets the number of distinct values held.
+   *
+   * @return the number of values
+   */
+  int size() {
+    return ids.size();
+  }
+}
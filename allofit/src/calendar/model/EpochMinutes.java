@@ -0,0 +1,64 @@
+package calendar.model;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Converts calendar date/times to and from whole minutes since 1970-01-01T00:00.
+ * The count is taken on the calendar's own wall clock, so it is not tied to any timezone,
+ * and it lets compact stores keep times in a single long.
+ */
+final class EpochMinutes {
+
+  private EpochMinutes() {
+  }
+
+  /**
+   * Gets the minute count of a date/time that falls exactly on a minute.
+   *
+   * @param time the date/time
+   * @return the minutes since the epoch
+   * @throws IllegalArgumentException if the time has seconds or fractions of a second
+   */
+  static long of(LocalDateTime time) {
+    if (time.getSecond() != 0 || time.getNano() != 0) {
+      throw new IllegalArgumentException("Times must fall on a whole minute: " + time);
+    }
+    return floor(time);
+  }
+
+  /**
+   * Gets the last whole minute at or before the given time.
+   *
+   * @param time the date/time
+   * @return the minutes since the epoch, rounded down
+   */
+  static long floor(LocalDateTime time) {
+    return Math.floorDiv(time.toEpochSecond(ZoneOffset.UTC), 60);
+  }
+
+  /**
+   * Gets the first whole minute at or after the given time.
+   * A stored minute m is before the time exactly when m is less than this value.
+   *
+   * @param time the date/time
+   * @return the minutes since the epoch, rounded up
+   */
+  static long ceil(LocalDateTime time) {
+    long floor = floor(time);
+    if (time.getSecond() != 0 || time.getNano() != 0) {
+      return floor + 1;
+    }
+    return floor;
+  }
+
+  /**
+   * Gets the date/time of a minute count.
+   *
+   * @param minutes the minutes since the epoch
+   * @return the matching date/time
+   */
+  static LocalDateTime toDateTime(long minutes) {
+    return LocalDateTime.ofEpochSecond(minutes * 60, 0, ZoneOffset.UTC);
+  }
+}
@@ -0,0 +1,332 @@
+package calendar.model;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Predicate;
+
+/**
+ * An augmented interval tree over calendar events.
+ * Events are kept in a randomized balanced search tree (a treap) ordered by start, then end,
+ * then subject. Every node also remembers the latest end time found in its subtree, which lets
+ * overlap and "is anything happening at this time" queries skip whole subtrees, so a query
+ * costs O(log n + k) instead of a scan over every event.
+ * Nodes are never changed once built: an insert or remove copies only the O(log n) nodes on
+ * the path it touches and shares the rest, so a copy of the tree taken with {@link #copy()}
+ * costs O(1) and keeps seeing the events it had, whatever happens to the original later.
+ */
+class EventIntervalTree {
+  private final Random random;
+  private Node root;
+  private int size;
+
+  /**
+   * Makes an empty tree.
+   */
+  EventIntervalTree() {
+    this(new Random(), null, 0);
+  }
+
+  private EventIntervalTree(Random random, Node root, int size) {
+    this.random = random;
+    this.root = root;
+    this.size = size;
+  }
+
+  /**
+   * Makes a tree holding the given events.
+   *
+   * @param events the events, with no two sharing a subject, start and end
+   * @return the new tree
+   */
+  static EventIntervalTree of(Iterable<IEvent> events) {
+    EventIntervalTree tree = new EventIntervalTree();
+    for (IEvent event : events) {
+      tree.insert(event);
+    }
+    return tree;
+  }
+
+  /**
+   * One event in the tree, along with the latest end time in its subtree.
+   */
+  private static final class Node {
+    private final IEvent event;
+    private final int priority;
+    private final LocalDateTime maxEnd;
+    private final Node left;
+    private final Node right;
+
+    private Node(IEvent event, int priority, Node left, Node right) {
+      this.event = event;
+      this.priority = priority;
+      this.left = left;
+      this.right = right;
+      LocalDateTime max = event.getEnd();
+      if (left != null && left.maxEnd.isAfter(max)) {
+        max = left.maxEnd;
+      }
+      if (right != null && right.maxEnd.isAfter(max)) {
+        max = right.maxEnd;
+      }
+      this.maxEnd = max;
+    }
+
+    private Node withChildren(Node left, Node right) {
+      if (left == this.left && right == this.right) {
+        return this;
+      }
+      return new Node(event, priority, left, right);
+    }
+  }
+
+  /**
+   * Gets the number of events in the tree.
+   *
+   * @return the number of events
+   */
+  int size() {
+    return size;
+  }
+
+  /**
+   * Gets a tree holding the events this one holds now.
+   * The two share every node, and later changes to this tree do not show in the copy.
+   *
+   * @return the copy
+   */
+  EventIntervalTree copy() {
+    return new EventIntervalTree(random, root, size);
+  }
+
+  /**
+   * Adds an event to the tree.
+   *
+   * @param event the event to add
+   */
+  void insert(IEvent event) {
+    root = insert(root, new Node(event, random.nextInt(), null, null));
+    size++;
+  }
+
+  private Node insert(Node node, Node fresh) {
+    if (node == null) {
+      return fresh;
+    }
+    if (EventKey.ORDER.compare(fresh.event, node.event) < 0) {
+      Node left = insert(node.left, fresh);
+      if (left.priority > node.priority) {
+        return left.withChildren(left.left, node.withChildren(left.right, node.right));
+      }
+      return node.withChildren(left, node.right);
+    }
+    Node right = insert(node.right, fresh);
+    if (right.priority > node.priority) {
+      return right.withChildren(node.withChildren(node.left, right.left), right.right);
+    }
+    return node.withChildren(node.left, right);
+  }
+
+  /**
+   * Removes the event with the same subject, start and end as the given one.
+   *
+   * @param event the event to remove
+   * @return true if an event was removed, false if none matched
+   */
+  boolean remove(IEvent event) {
+    int before = size;
+    root = remove(root, event);
+    return size < before;
+  }
+
+  private Node remove(Node node, IEvent event) {
+    if (node == null) {
+      return null;
+    }
+    int cmp = EventKey.ORDER.compare(event, node.event);
+    if (cmp < 0) {
+      return node.withChildren(remove(node.left, event), node.right);
+    } else if (cmp > 0) {
+      return node.withChildren(node.left, remove(node.right, event));
+    }
+    size--;
+    return merge(node.left, node.right);
+  }
+
+  /**
+   * Removes every event whose start is at or after from and before to.
+   * Those events sit next to each other in the tree order, so the tree is split on both sides
+   * of them and the outer parts joined again, touching O(log n) nodes plus the ones removed.
+   *
+   * @param from the earliest start to remove
+   * @param to   the first start to keep
+   * @return the removed events, in start order
+   */
+  List<IEvent> removeStartingWithin(LocalDateTime from, LocalDateTime to) {
+    Node[] before = split(root, from);
+    Node[] within = split(before[1], to);
+    List<IEvent> removed = new ArrayList<>();
+    collectStarting(within[0], from, to, removed);
+    root = merge(before[0], within[1]);
+    size -= removed.size();
+    return removed;
+  }
+
+  /**
+   * Splits a subtree into the events that start before the time and the rest.
+   */
+  private Node[] split(Node node, LocalDateTime time) {
+    if (node == null) {
+      return new Node[2];
+    }
+    if (node.event.getStart().isBefore(time)) {
+      Node[] parts = split(node.right, time);
+      return new Node[] {node.withChildren(node.left, parts[0]), parts[1]};
+    }
+    Node[] parts = split(node.left, time);
+    return new Node[] {parts[0], node.withChildren(parts[1], node.right)};
+  }
+
+  private Node merge(Node left, Node right) {
+    if (left == null) {
+      return right;
+    }
+    if (right == null) {
+      return left;
+    }
+    if (left.priority > right.priority) {
+      return left.withChildren(left.left, merge(left.right, right));
+    }
+    return right.withChildren(merge(left, right.left), right.right);
+  }
+
+  /**
+   * Checks whether the tree holds an event with the same subject, start and end.
+   *
+   * @param event the event to look for
+   * @return true if such an event is stored
+   */
+  boolean contains(IEvent event) {
+    Node node = root;
+    while (node != null) {
+      int cmp = EventKey.ORDER.compare(event, node.event);
+      if (cmp == 0) {
+        return true;
+      }
+      node = cmp < 0 ? node.left : node.right;
+    }
+    return false;
+  }
+
+  /**
+   * Gets every event that ends after from and starts before to, in start order.
+   *
+   * @param from the start of the range
+   * @param to   the end of the range
+   * @return the overlapping events
+   */
+  List<IEvent> overlapping(LocalDateTime from, LocalDateTime to) {
+    List<IEvent> result = new ArrayList<>();
+    collectOverlapping(root, from, to, result);
+    return result;
+  }
+
+  private void collectOverlapping(Node node, LocalDateTime from, LocalDateTime to,
+                                  List<IEvent> result) {
+    if (node == null || !node.maxEnd.isAfter(from)) {
+      return;
+    }
+    collectOverlapping(node.left, from, to, result);
+    if (node.event.getStart().isBefore(to)) {
+      if (node.event.getEnd().isAfter(from)) {
+        result.add(node.event);
+      }
+      collectOverlapping(node.right, from, to, result);
+    }
+  }
+
+  /**
+   * Checks whether some event starts strictly before and ends strictly after the given time.
+   *
+   * @param time the time to check
+   * @return true if an event covers that time
+   */
+  boolean covers(LocalDateTime time) {
+    return covers(root, time);
+  }
+
+  private boolean covers(Node node, LocalDateTime time) {
+    if (node == null || !node.maxEnd.isAfter(time)) {
+      return false;
+    }
+    if (covers(node.left, time)) {
+      return true;
+    }
+    if (!node.event.getStart().isBefore(time)) {
+      return false;
+    }
+    return node.event.getEnd().isAfter(time) || covers(node.right, time);
+  }
+
+  /**
+   * Gets every event whose start is at or after from and before to, in start order.
+   *
+   * @param from the earliest start to include
+   * @param to   the first start to exclude
+   * @return the matching events
+   */
+  List<IEvent> startingWithin(LocalDateTime from, LocalDateTime to) {
+    List<IEvent> result = new ArrayList<>();
+    collectStarting(root, from, to, result);
+    return result;
+  }
+
+  private void collectStarting(Node node, LocalDateTime from, LocalDateTime to,
+                               List<IEvent> result) {
+    if (node == null) {
+      return;
+    }
+    LocalDateTime start = node.event.getStart();
+    boolean atOrAfterFrom = !start.isBefore(from);
+    if (atOrAfterFrom) {
+      collectStarting(node.left, from, to, result);
+    }
+    if (atOrAfterFrom && start.isBefore(to)) {
+      result.add(node.event);
+    }
+    if (start.isBefore(to)) {
+      collectStarting(node.right, from, to, result);
+    }
+  }
+
+  /**
+   * Gets up to limit events, in order, starting with the first one that passes the lower bound.
+   * The bound must be monotone in the tree order: once an event passes, every later one does.
+   * Only the O(log n) path to the first match and the returned events are visited.
+   *
+   * @param lowerBound true for events at or after the first event wanted
+   * @param limit      the largest number of events to return
+   * @return the events in start order
+   */
+  List<IEvent> firstMatching(Predicate<IEvent> lowerBound, int limit) {
+    List<IEvent> result = new ArrayList<>(Math.min(limit, size));
+    collectFirst(root, lowerBound, limit, result);
+    return result;
+  }
+
+  private void collectFirst(Node node, Predicate<IEvent> lowerBound, int limit,
+                            List<IEvent> result) {
+    if (node == null || result.size() >= limit) {
+      return;
+    }
+    if (lowerBound.test(node.event)) {
+      collectFirst(node.left, lowerBound, limit, result);
+      if (result.size() >= limit) {
+        return;
+      }
+      result.add(node.event);
+    }
+    collectFirst(node.right, lowerBound, limit, result);
+  }
+}
@@ -0,0 +1,95 @@
+package calendar.model;
+
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.Objects;
+
+/**
+ * The identity of an event inside a calendar: its subject, start and end.
+ * Two events with the same key are duplicates, matching Event.equals and Event.hashCode.
+ * Keys are captured when an event is stored, so hashing them stays valid for lookups.
+ * Keys, like events in ORDER, sort by start, then end, then subject.
+ */
+final class EventKey implements Comparable<EventKey> {
+  static final Comparator<IEvent> ORDER = Comparator.comparing(IEvent::getStart)
+          .thenComparing(IEvent::getEnd)
+          .thenComparing(IEvent::getSubject);
+
+  private final String subject;
+  private final LocalDateTime start;
+  private final LocalDateTime end;
+  private final int hash;
+
+  private EventKey(String subject, LocalDateTime start, LocalDateTime end) {
+    this.subject = subject;
+    this.start = start;
+    this.end = end;
+    this.hash = Objects.hash(subject, start, end);
+  }
+
+  /**
+   * Gets the key of an event.
+   *
+   * @param event the event
+   * @return the key made from the event's subject, start and end
+   */
+  static EventKey of(IEvent event) {
+    return new EventKey(event.getSubject(), event.getStart(), event.getEnd());
+  }
+
+  /**
+   * Gets the key of an event a store holds as separate fields.
+   *
+   * @param subject the event's subject
+   * @param start   the event's start
+   * @param end     the event's end
+   * @return the key made from those fields
+   */
+  static EventKey of(String subject, LocalDateTime start, LocalDateTime end) {
+    return new EventKey(subject, start, end);
+  }
+
+  /**
+   * Gets a key that sorts before every event starting at or after the given time,
+   * and after every event starting before it. Used as a bound for range lookups.
+   *
+   * @param start the start time
+   * @return a probe key, never the key of a real event
+   */
+  static EventKey lowest(LocalDateTime start) {
+    return new EventKey("", start, LocalDateTime.MIN);
+  }
+
+  @Override
+  public int compareTo(EventKey that) {
+    int cmp = start.compareTo(that.start);
+    if (cmp != 0) {
+      return cmp;
+    }
+    cmp = end.compareTo(that.end);
+    if (cmp != 0) {
+      return cmp;
+    }
+    return subject.compareTo(that.subject);
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof EventKey)) {
+      return false;
+    }
+    EventKey that = (EventKey) o;
+    return hash == that.hash
+            && subject.equals(that.subject)
+            && start.equals(that.start)
+            && end.equals(that.end);
+  }
+
+  @Override
+  public int hashCode() {
+    return hash;
+  }
+}
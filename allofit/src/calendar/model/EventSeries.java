@@ -3,23 +3,30 @@ package calendar.model;
 import java.time.DayOfWeek;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.LocalTime;
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.UUID;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Represents a recurring series of events in the calendar.
  * The series is either a repetition count or an end date.
+ * Only the rule is kept; occurrences are built when they are asked for.
  */
 public class EventSeries implements IEventSeries {
+  private final UUID seriesId;
   private final String subject;
   private final LocalDateTime start;
   private final LocalDateTime end;
   private final Set<DayOfWeek> repeatingDays;
+  private final int weekdayMask;
   private final Integer count;
   private final LocalDate lastDate;
-  private final List<Event> series;
 
   /**
    * Constructs a series of events that continues for a specific count of times.
@@ -35,24 +42,19 @@ public class EventSeries implements IEventSeries {
     if (subject == null || subject.isEmpty() || start == null || end == null || weekdays == null) {
       throw new IllegalArgumentException("Arguments cant be null/empty.");
     }
-    if (weekdays.isEmpty()) {
-      throw new IllegalArgumentException("Weekdays cant be empty.");
-    }
-    if (!end.isAfter(start)) {
-      throw new IllegalArgumentException("End needs to be after start.");
-    }
+    checkTimes(start, end, weekdays);
     if (count < 0) {
       throw new IllegalArgumentException("Count cant be negative.");
     }
 
+    this.seriesId = UUID.randomUUID();
     this.subject = subject;
     this.start = start;
     this.end = end;
-    this.repeatingDays = new HashSet<>(weekdays);
+    this.repeatingDays = EnumSet.copyOf(weekdays);
+    this.weekdayMask = WeekdayMask.of(weekdays);
     this.count = count;
-    this.lastDate = null;
-    this.series = new ArrayList<>();
-    generateByCount();
+    this.lastDate = dateOfOccurrence(count);
   }
 
   /**
@@ -70,72 +72,117 @@ public class EventSeries implements IEventSeries {
             || weekdays == null || lastDate == null) {
       throw new IllegalArgumentException("Arguments cant be null/empty.");
     }
-    if (weekdays.isEmpty()) {
-      throw new IllegalArgumentException("Weekdays cant be empty.");
-    }
-    if (!end.isAfter(start)) {
-      throw new IllegalArgumentException("End needs to be after start.");
-    }
+    checkTimes(start, end, weekdays);
     if (lastDate.isBefore(start.toLocalDate())) {
       throw new IllegalArgumentException("Until date cant be before start date.");
     }
 
+    this.seriesId = UUID.randomUUID();
     this.subject = subject;
     this.start = start;
     this.end = end;
-    this.repeatingDays = new HashSet<>(weekdays);
+    this.repeatingDays = EnumSet.copyOf(weekdays);
+    this.weekdayMask = WeekdayMask.of(weekdays);
     this.count = null;
     this.lastDate = lastDate;
-    this.series = new ArrayList<>();
-    generateByDate();
   }
 
   /**
-   * Helper for constructor, which generates a series of events,
-   * that repeat on specific days of the week up to the specified count.
+   * Checks the parts of the rule both constructors share. Every occurrence runs from the start
+   * time to the end time of its own day, so the end time cannot come before the start time.
    */
-  private void generateByCount() {
-    if (repeatingDays == null || repeatingDays.isEmpty()) {
-      return;
+  private static void checkTimes(LocalDateTime start, LocalDateTime end,
+                                 Set<DayOfWeek> weekdays) {
+    if (weekdays.isEmpty()) {
+      throw new IllegalArgumentException("Weekdays cant be empty.");
     }
-
-    LocalDate currDate = start.toLocalDate();
-    int counter = 0;
-
-    while (counter < count) {
-      if (repeatingDays.contains(currDate.getDayOfWeek())) {
-        LocalDateTime starting = LocalDateTime.of(currDate, start.toLocalTime());
-        LocalDateTime ending = LocalDateTime.of(currDate, end.toLocalTime());
-        series.add(new Event(subject, starting, ending));
-        counter++;
-      }
-      currDate = currDate.plusDays(1);
+    if (!end.isAfter(start) || end.toLocalTime().isBefore(start.toLocalTime())) {
+      throw new IllegalArgumentException("End needs to be after start.");
     }
   }
 
   /**
-   * Helper for constructor, which generates a series of events,
-   * that repeat on specific days of the week up to the specified date.
+   * Finds the date of the n-th occurrence, counting from the start date, in constant time.
+   *
+   * @return that date, or the day before the start date if n is 0
    */
-  private void generateByDate() {
-    LocalDate currDate = start.toLocalDate();
-
-    while (!currDate.isAfter(lastDate)) {
-      if (repeatingDays.contains(currDate.getDayOfWeek())) {
-        LocalDateTime starting = LocalDateTime.of(currDate, start.toLocalTime());
-        LocalDateTime ending = LocalDateTime.of(currDate, end.toLocalTime());
-        series.add(new Event(subject, starting, ending));
-      }
-      currDate = currDate.plusDays(1);
+  private LocalDate dateOfOccurrence(int n) {
+    if (n == 0) {
+      return start.toLocalDate().minusDays(1);
     }
+    return WeekdayMask.nth(weekdayMask, start.toLocalDate(), n);
   }
 
   /**
-   * Gets the events.
+   * Builds every occurrence of the series, jumping straight from one occurrence to the next.
    *
-   * @return the events in a list
+   * @return the events in a list, in date order
    */
   public List<Event> getEvents() {
-    return new ArrayList<>(series);
+    Spliterator<IEvent> occurrences = spliterator();
+    List<Event> series = new ArrayList<>((int) occurrences.estimateSize());
+    occurrences.forEachRemaining(e -> series.add((Event) e));
+    return series;
+  }
+
+  @Override
+  public Spliterator<IEvent> spliterator() {
+    return new OccurrenceSpliterator(this);
+  }
+
+  @Override
+  public Stream<IEvent> occurrences() {
+    return StreamSupport.stream(spliterator(), false);
+  }
+
+  @Override
+  public LocalDate getOccurrenceDate(int n) {
+    LocalDate date = n < 1 ? null : dateOfOccurrence(n);
+    if (date == null || date.isAfter(lastDate)) {
+      throw new IllegalArgumentException("No occurrence number " + n + " in the series.");
+    }
+    return date;
+  }
+
+  @Override
+  public long countOccurrences(LocalDate from, LocalDate to) {
+    LocalDate first = from.isBefore(start.toLocalDate()) ? start.toLocalDate() : from;
+    LocalDate last = to.isAfter(lastDate) ? lastDate : to;
+    return WeekdayMask.count(weekdayMask, first, last);
+  }
+
+  @Override
+  public UUID getSeriesId() {
+    return seriesId;
+  }
+
+  @Override
+  public String getSubject() {
+    return subject;
+  }
+
+  @Override
+  public LocalTime getStartTime() {
+    return start.toLocalTime();
+  }
+
+  @Override
+  public LocalTime getEndTime() {
+    return end.toLocalTime();
+  }
+
+  @Override
+  public Set<DayOfWeek> getWeekdays() {
+    return EnumSet.copyOf(repeatingDays);
+  }
+
+  @Override
+  public LocalDate getFirstDate() {
+    return start.toLocalDate();
+  }
+
+  @Override
+  public LocalDate getLastDate() {
+    return lastDate;
   }
 }
@@ -0,0 +1,224 @@
+package calendar.model;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A read-only calendar packed into parallel arrays sorted by start, end and subject, for
+ * calendars that are loaded once and then only queried.
+ * Next to the events are their start and end in whole seconds, and a running maximum of the
+ * end seconds. Since that maximum never decreases, a binary search on it finds the first event
+ * that could still be in progress at a time, and a binary search on the starts finds the
+ * first event that starts after it; range and busy queries scan only between the two and
+ * allocate nothing but their results. Seconds are compared first and the events' own times
+ * only break ties, so fractions of a second are still handled exactly.
+ */
+final class FrozenCalendar extends ReadOnlyCalendarModel {
+  private final IEvent[] sorted;
+  private final IEvent[] insertionOrder;
+  private final long[] startSeconds;
+  private final long[] endSeconds;
+  private final long[] maxEndSeconds;
+
+  /**
+   * Packs the given events.
+   *
+   * @param events           the events in the order getEvents should return them
+   * @param timezone         the calendar's current timezone
+   * @param creationTimezone the calendar's creation timezone
+   */
+  FrozenCalendar(Collection<IEvent> events, ZoneId timezone, ZoneId creationTimezone) {
+    super(timezone, creationTimezone);
+    this.insertionOrder = events.toArray(new IEvent[0]);
+    this.sorted = insertionOrder.clone();
+    Arrays.sort(sorted, EventKey.ORDER);
+    this.startSeconds = new long[sorted.length];
+    this.endSeconds = new long[sorted.length];
+    this.maxEndSeconds = new long[sorted.length];
+    long maxEnd = Long.MIN_VALUE;
+    for (int i = 0; i < sorted.length; i++) {
+      startSeconds[i] = seconds(sorted[i].getStart());
+      endSeconds[i] = seconds(sorted[i].getEnd());
+      maxEnd = Math.max(maxEnd, endSeconds[i]);
+      maxEndSeconds[i] = maxEnd;
+    }
+  }
+
+  private FrozenCalendar(FrozenCalendar source, ZoneId timezone) {
+    super(timezone, source.getCreationTimezone());
+    this.sorted = source.sorted;
+    this.insertionOrder = source.insertionOrder;
+    this.startSeconds = source.startSeconds;
+    this.endSeconds = source.endSeconds;
+    this.maxEndSeconds = source.maxEndSeconds;
+  }
+
+  /**
+   * Gets a view of the same arrays with a different current timezone, in O(1).
+   *
+   * @param timezone the current timezone
+   * @return this calendar if the timezone is unchanged, otherwise a view sharing its arrays
+   */
+  FrozenCalendar withTimezone(ZoneId timezone) {
+    if (timezone.equals(getTimezone())) {
+      return this;
+    }
+    return new FrozenCalendar(this, timezone);
+  }
+
+  @Override
+  public IEvent findEvent(String subject, LocalDateTime start) {
+    IEvent found = null;
+    long second = seconds(start);
+    for (int i = firstStartingAt(start); i < sorted.length && startSeconds[i] == second
+            && sorted[i].getStart().equals(start); i++) {
+      if (sorted[i].getSubject().equals(subject)) {
+        if (found != null) {
+          return null;
+        }
+        found = sorted[i];
+      }
+    }
+    return found;
+  }
+
+  @Override
+  public List<IEvent> getEventsOnDate(LocalDate date) {
+    return slice(firstStartingAt(date.atStartOfDay()),
+            firstStartingAt(date.plusDays(1).atStartOfDay()));
+  }
+
+  @Override
+  public List<IEvent> getEventsWithinDates(LocalDateTime beginning, LocalDateTime ending) {
+    List<IEvent> result = new ArrayList<>();
+    int to = firstStartingAt(ending);
+    for (int i = firstPossiblyEndingAfter(beginning); i < to; i++) {
+      if (endsAfter(i, beginning)) {
+        result.add(sorted[i]);
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public boolean isBusy(LocalDateTime time) {
+    int to = firstStartingAt(time);
+    for (int i = firstPossiblyEndingAfter(time); i < to; i++) {
+      if (endsAfter(i, time)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public boolean hasConflict(IEvent e) {
+    return Arrays.binarySearch(sorted, e, EventKey.ORDER) >= 0;
+  }
+
+  @Override
+  public List<IEvent> getEventsFromDate(LocalDate date, int pageSize) {
+    return page(firstStartingAt(date.atStartOfDay()), pageSize);
+  }
+
+  @Override
+  public List<IEvent> getEventsAfter(IEvent cursor, int pageSize) {
+    int lo = 0;
+    int hi = sorted.length;
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      if (EventKey.ORDER.compare(sorted[mid], cursor) <= 0) {
+        lo = mid + 1;
+      } else {
+        hi = mid;
+      }
+    }
+    return page(lo, pageSize);
+  }
+
+  /**
+   * Returns all events in the order they were added to the calendar.
+   *
+   * @return list of all events
+   */
+  @Override
+  public List<IEvent> getEvents() {
+    List<IEvent> result = new ArrayList<>(insertionOrder.length);
+    for (IEvent event : insertionOrder) {
+      result.add(event);
+    }
+    return result;
+  }
+
+  private static long seconds(LocalDateTime time) {
+    return time.toEpochSecond(ZoneOffset.UTC);
+  }
+
+  private List<IEvent> page(int from, int pageSize) {
+    checkPageSize(pageSize);
+    return slice(from, (int) Math.min(sorted.length, (long) from + pageSize));
+  }
+
+  private List<IEvent> slice(int from, int to) {
+    List<IEvent> result = new ArrayList<>(Math.max(to - from, 0));
+    for (int i = from; i < to; i++) {
+      result.add(sorted[i]);
+    }
+    return result;
+  }
+
+  /**
+   * Checks whether event i ends strictly after the given time.
+   */
+  private boolean endsAfter(int i, LocalDateTime time) {
+    long second = seconds(time);
+    if (endSeconds[i] != second) {
+      return endSeconds[i] > second;
+    }
+    return sorted[i].getEnd().isAfter(time);
+  }
+
+  /**
+   * Gets the first position whose event starts at or after the given time.
+   */
+  private int firstStartingAt(LocalDateTime time) {
+    long second = seconds(time);
+    int lo = 0;
+    int hi = sorted.length;
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      if (startSeconds[mid] < second
+              || startSeconds[mid] == second && sorted[mid].getStart().isBefore(time)) {
+        lo = mid + 1;
+      } else {
+        hi = mid;
+      }
+    }
+    return lo;
+  }
+
+  /**
+   * Gets the first position at or after which some event may end after the given time.
+   * Every event before it ends no later than the time.
+   */
+  private int firstPossiblyEndingAfter(LocalDateTime time) {
+    long second = seconds(time);
+    int lo = 0;
+    int hi = sorted.length;
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      if (maxEndSeconds[mid] < second) {
+        lo = mid + 1;
+      } else {
+        hi = mid;
+      }
+    }
+    return lo;
+  }
+}
@@ -1,8 +1,11 @@
 package calendar.model;
 
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.LocalTime;
 import java.time.ZoneId;
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -20,6 +23,32 @@ public interface ICalendarLibrary {
    */
   void createCalendar(String name, String timezoneString);
 
+  /**
+   * Creates a new calendar with the given unique name and timezone ID, choosing how it stores
+   * its events. For example, CONCURRENT calendars can be queried from many threads at once.
+   *
+   * @param name           the unique name for the calendar
+   * @param timezoneString the IANA timezone ID (e.g. "America/New_York")
+   * @param backend        how the new calendar stores its events
+   * @throws IllegalArgumentException if the name already exists or the timezone is invalid
+   */
+  void createCalendar(String name, String timezoneString, CalendarBackend backend);
+
+  /**
+   * Opens a new session with no calendar in use. Each session keeps its own active calendar,
+   * so several clients can share the library without changing each other's.
+   *
+   * @return the new session
+   */
+  CalendarSession openSession();
+
+  /**
+   * Gets the session this library's own active-calendar methods work through.
+   *
+   * @return the default session
+   */
+  CalendarSession getDefaultSession();
+
   /**
    * Sets the active calendar by name.
    *
@@ -119,4 +148,69 @@ public interface ICalendarLibrary {
    * @return the current calendar name
    */
   String getCurrentCalendarName();
+
+  /**
+   * Gets the times in a range when at least one of the given calendars is busy, as sorted,
+   * coalesced blocks. Each calendar's events are read in its own timezone and the blocks are
+   * merged as instants, so calendars in different timezones line up.
+   *
+   * @param calendarNames the calendars to combine
+   * @param start         the start of the range, in the given zone
+   * @param end           the end of the range, in the given zone
+   * @param zone          the timezone of the range and of the returned blocks
+   * @return the busy blocks, earliest first
+   * @throws IllegalArgumentException if a calendar does not exist
+   */
+  List<TimeInterval> getBusyIntervals(List<String> calendarNames, LocalDateTime start,
+                                      LocalDateTime end, ZoneId zone);
+
+  /**
+   * Finds the first free slots of at least a given length that fall within working hours and
+   * when none of the given calendars is busy. Each slot is a whole free stretch of one working
+   * day, so a slot can be longer than asked for.
+   *
+   * @param calendarNames the calendars that must all be free
+   * @param start         the earliest time to consider, in the given zone
+   * @param end           the latest time to consider, in the given zone
+   * @param zone          the timezone of the range, the working hours and the returned slots
+   * @param workStart     the start of working hours on each day
+   * @param workEnd       the end of working hours on each day, or midnight for the end of day
+   * @param minLength     the shortest slot to return
+   * @param count         the largest number of slots to return
+   * @return up to count free slots, earliest first
+   * @throws IllegalArgumentException if a calendar does not exist, working hours are empty,
+   *                                  or minLength or count is not positive
+   */
+  List<TimeInterval> findFreeSlots(List<String> calendarNames, LocalDateTime start,
+                                   LocalDateTime end, ZoneId zone, LocalTime workStart,
+                                   LocalTime workEnd, Duration minLength, int count);
+
+  /**
+   * Starts a transaction over the events of every calendar in the library.
+   * Until it is committed or rolled back, calendars cannot be created, edited or deleted.
+   *
+   * @throws IllegalArgumentException if a transaction is already open
+   */
+  void beginTransaction();
+
+  /**
+   * Keeps every event change made since the transaction began.
+   *
+   * @throws IllegalArgumentException if no transaction is open
+   */
+  void commitTransaction();
+
+  /**
+   * Undoes every event change made in any calendar since the transaction began.
+   *
+   * @throws IllegalArgumentException if no transaction is open
+   */
+  void rollbackTransaction();
+
+  /**
+   * Checks whether a transaction is open.
+   *
+   * @return true between beginTransaction and its commit or rollback
+   */
+  boolean isInTransaction();
 }
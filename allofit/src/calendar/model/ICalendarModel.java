@@ -4,7 +4,10 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.UUID;
 
 /**
  * Interface for the calendar.
@@ -20,6 +23,26 @@ public interface ICalendarModel {
    */
   void addEvent(IEvent event);
 
+  /**
+   * Adds several events at once.
+   * The whole batch is checked before anything is stored: if any event duplicates another in
+   * the batch or one already in the calendar, or cannot be stored, no event is added.
+   *
+   * @param batch the events to add
+   * @throws IllegalArgumentException if the batch has a duplicate or an event is rejected
+   */
+  void addEvents(Collection<? extends IEvent> batch);
+
+  /**
+   * Adds every occurrence of a recurring series.
+   * A store may keep only the series' rule and build occurrences when queries reach them;
+   * either way, each occurrence behaves like an event carrying the series id.
+   *
+   * @param series the series
+   * @throws IllegalArgumentException if an occurrence duplicates an event in the calendar
+   */
+  void addSeries(IEventSeries series);
+
   /**
    * Removes an event from the calendar.
    *
@@ -28,6 +51,65 @@ public interface ICalendarModel {
    */
   void removeEvent(IEvent event);
 
+  /**
+   * Removes several events at once.
+   * If any event is not in the calendar, or is listed twice, no event is removed.
+   *
+   * @param batch the events to remove
+   * @throws IllegalArgumentException if an event is not found
+   */
+  void removeEvents(Collection<? extends IEvent> batch);
+
+  /**
+   * Removes every event that ends after start and starts before end, the same events
+   * getEventsWithinDates returns for the range.
+   *
+   * @param start the start of the range
+   * @param end   the end of the range
+   * @return the number of events removed
+   * @throws IllegalArgumentException if end is before start
+   */
+  int removeRange(LocalDateTime start, LocalDateTime end);
+
+  /**
+   * Removes every occurrence of a recurring series.
+   *
+   * @param seriesId the series to remove
+   * @return the number of events removed, 0 if the series has no events here
+   */
+  int removeSeries(UUID seriesId);
+
+  /**
+   * Starts recording changes so they can be undone together.
+   * Until the transaction is committed or rolled back, every add, remove and edit is journaled
+   * as the operation that undoes it, and stores may put off maintaining their indexes until
+   * the transaction ends.
+   *
+   * @throws IllegalArgumentException if a transaction is already open
+   */
+  void beginTransaction();
+
+  /**
+   * Keeps every change made since the transaction began and stops recording.
+   *
+   * @throws IllegalArgumentException if no transaction is open
+   */
+  void commitTransaction();
+
+  /**
+   * Undoes every change made since the transaction began, latest first, and stops recording.
+   *
+   * @throws IllegalArgumentException if no transaction is open
+   */
+  void rollbackTransaction();
+
+  /**
+   * Checks whether a transaction is open.
+   *
+   * @return true between beginTransaction and its commit or rollback
+   */
+  boolean isInTransaction();
+
   /**
    * Finds event through subject and start time.
    *
@@ -62,6 +144,37 @@ public interface ICalendarModel {
    */
   boolean isBusy(LocalDateTime time);
 
+  /**
+   * Counts the minutes in a range during which at least one event is in progress.
+   * A minute counts if any part of it is taken by an event; overlapping events count once.
+   * By default the events in the range are marked on a temporary bitmap.
+   *
+   * @param from the start of the range, on a whole minute
+   * @param to   the end of the range, on a whole minute
+   * @return the number of busy minutes
+   * @throws IllegalArgumentException if either end of the range is not on a whole minute
+   */
+  default long countBusyMinutes(LocalDateTime from, LocalDateTime to) {
+    return BusyBitmap.countBusyMinutes(getEventsWithinDates(from, to), EpochMinutes.of(from),
+            EpochMinutes.of(to));
+  }
+
+  /**
+   * Gets the times in a range when at least one event is in progress, as sorted blocks.
+   * Overlapping and back-to-back events are coalesced into one block, and blocks are cut
+   * to the range. By default this is one sweep over the overlapping events; indexed stores
+   * already return them in start order, so the sort is a single check pass.
+   *
+   * @param start the start of the range
+   * @param end   the end of the range
+   * @return the busy blocks, earliest first
+   */
+  default List<TimeInterval> getBusyIntervals(LocalDateTime start, LocalDateTime end) {
+    List<IEvent> overlapping = new ArrayList<>(getEventsWithinDates(start, end));
+    overlapping.sort(EventKey.ORDER);
+    return IntervalSweep.busyBlocks(overlapping, start, end);
+  }
+
   /**
    * Checks whether an event would have the same subject,
    * start, and end time, with existing events.
@@ -83,6 +196,28 @@ public interface ICalendarModel {
    */
   List<IEvent> getEventsFromDate(LocalDate date);
 
+  /**
+   * Returns the first page of events that occur on or after the specified date.
+   * The returned list is sorted by start time, then end time, then subject.
+   *
+   * @param date     the starting date from which to retrieve events (inclusive)
+   * @param pageSize the largest number of events to return
+   * @return up to pageSize events starting from the specified date, in start order
+   * @throws IllegalArgumentException if pageSize is not positive
+   */
+  List<IEvent> getEventsFromDate(LocalDate date, int pageSize);
+
+  /**
+   * Returns the page of events that comes right after the given event, in the same order as
+   * getEventsFromDate. Passing the last event of one page returns the next page.
+   *
+   * @param cursor   the last event already seen
+   * @param pageSize the largest number of events to return
+   * @return up to pageSize events that sort after the cursor
+   * @throws IllegalArgumentException if pageSize is not positive
+   */
+  List<IEvent> getEventsAfter(IEvent cursor, int pageSize);
+
   /**
    * Returns all events in this calendar.
    *
@@ -154,7 +289,9 @@ public interface ICalendarModel {
   ZoneId getTimezone();
 
   /**
-   * Set the timezone of this calendar.
+   * Set the timezone of this calendar. Events stay stored on the clock of the creation
+   * timezone, so this takes constant time; times are moved to the new timezone only as they
+   * are shown, through a {@link ZoneShift}.
    *
    * @param timezone the new timezone to set
    */
@@ -166,4 +303,14 @@ public interface ICalendarModel {
    * @return ZoneId representing the timezone in the creation of this calendar.
    */
   ZoneId getCreationTimezone();
+
+  /**
+   * Gets a read-only view of the calendar as it is now.
+   * Later changes to the calendar do not show in the view, and a series edit is either
+   * entirely in it or not at all. Any method of the view that would change it throws
+   * UnsupportedOperationException.
+   *
+   * @return the snapshot
+   */
+  ICalendarModel snapshot();
 }
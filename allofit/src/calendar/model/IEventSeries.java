@@ -1,17 +1,109 @@
 package calendar.model;
 
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
 import java.util.List;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.UUID;
+import java.util.stream.Stream;
 
 /**
  * Interface representing a series of recurring calendar events.
- * Provides access to the list of generated events.
+ * Provides the rule the series follows and access to the list of generated events.
  */
 public interface IEventSeries {
 
   /**
    * Returns a list of all events in this recurring series.
+   * Every event is built anew, carrying the series id.
    *
    * @return a list of Event objects that are part of the series
    */
   List<Event> getEvents();
+
+  /**
+   * Gets a spliterator that builds the occurrences one at a time, in date order. It knows its
+   * exact size and splits into halves of equal size without walking them.
+   *
+   * @return a new spliterator over every occurrence
+   */
+  Spliterator<IEvent> spliterator();
+
+  /**
+   * Gets a stream that builds the occurrences as they are consumed, so a long series never has
+   * to be held whole. Make it parallel to split it across threads.
+   *
+   * @return a new sequential stream over every occurrence, in date order
+   */
+  Stream<IEvent> occurrences();
+
+  /**
+   * Gets the id every occurrence of the series carries.
+   *
+   * @return the series id
+   */
+  UUID getSeriesId();
+
+  /**
+   * Gets the subject of every occurrence.
+   *
+   * @return the subject
+   */
+  String getSubject();
+
+  /**
+   * Gets the time of day each occurrence starts.
+   *
+   * @return the start time
+   */
+  LocalTime getStartTime();
+
+  /**
+   * Gets the time of day each occurrence ends, on the same day it starts.
+   *
+   * @return the end time
+   */
+  LocalTime getEndTime();
+
+  /**
+   * Gets the days of the week the series happens on.
+   *
+   * @return a copy of the weekdays
+   */
+  Set<DayOfWeek> getWeekdays();
+
+  /**
+   * Gets the first day the series may happen on.
+   *
+   * @return the start date
+   */
+  LocalDate getFirstDate();
+
+  /**
+   * Gets the last day the series may happen on. For a series with a count this is the day of
+   * its last occurrence.
+   *
+   * @return the last date, before the first date if the series is empty
+   */
+  LocalDate getLastDate();
+
+  /**
+   * Gets the date of the n-th occurrence without building the ones before it.
+   *
+   * @param n which occurrence, 1 for the first
+   * @return the date of that occurrence
+   * @throws IllegalArgumentException if the series has no n-th occurrence
+   */
+  LocalDate getOccurrenceDate(int n);
+
+  /**
+   * Counts the occurrences between two dates, both included, without building them.
+   *
+   * @param from the first date
+   * @param to   the last date
+   * @return the number of occurrences on those dates
+   */
+  long countOccurrences(LocalDate from, LocalDate to);
 }
@@ -0,0 +1,151 @@
+package calendar.model;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Sweep-line merging of busy time into sorted, non-overlapping blocks.
+ */
+final class IntervalSweep {
+
+  private IntervalSweep() {
+  }
+
+  /**
+   * Coalesces events into busy blocks within a range, in one pass over events in start order.
+   * Events that overlap or touch end to start become one block, and blocks are cut to the range.
+   *
+   * @param inStartOrder the events overlapping the range, sorted by start
+   * @param from         the start of the range
+   * @param to           the end of the range
+   * @return the busy blocks in order
+   */
+  static List<TimeInterval> busyBlocks(List<IEvent> inStartOrder, LocalDateTime from,
+                                       LocalDateTime to) {
+    List<TimeInterval> blocks = new ArrayList<>();
+    LocalDateTime blockStart = null;
+    LocalDateTime blockEnd = null;
+    for (IEvent event : inStartOrder) {
+      LocalDateTime start = event.getStart().isBefore(from) ? from : event.getStart();
+      LocalDateTime end = event.getEnd().isAfter(to) ? to : event.getEnd();
+      if (!end.isAfter(start)) {
+        continue;
+      }
+      if (blockStart != null && !start.isAfter(blockEnd)) {
+        if (end.isAfter(blockEnd)) {
+          blockEnd = end;
+        }
+        continue;
+      }
+      if (blockStart != null) {
+        blocks.add(new TimeInterval(blockStart, blockEnd));
+      }
+      blockStart = start;
+      blockEnd = end;
+    }
+    if (blockStart != null) {
+      blocks.add(new TimeInterval(blockStart, blockEnd));
+    }
+    return blocks;
+  }
+
+  /**
+   * Merges several sorted lists of busy blocks, each given in its own timezone, into one list of
+   * coalesced blocks in the given zone. A heap holds the next block of each list, so the merge
+   * takes O(n log k) for n blocks from k lists, and blocks are compared as instants so lists
+   * from different zones interleave correctly.
+   *
+   * @param lists the sorted, coalesced blocks of each source
+   * @param zones the timezone of each list's local times
+   * @param zone  the timezone of the result
+   * @return the merged blocks in order
+   */
+  static List<TimeInterval> merge(List<List<TimeInterval>> lists, List<ZoneId> zones,
+                                  ZoneId zone) {
+    PriorityQueue<Cursor> heads = new PriorityQueue<>((a, b) -> a.start.compareTo(b.start));
+    for (int i = 0; i < lists.size(); i++) {
+      Cursor cursor = new Cursor(lists.get(i), zones.get(i));
+      if (cursor.advance()) {
+        heads.add(cursor);
+      }
+    }
+    List<TimeInterval> merged = new ArrayList<>();
+    ZoneShift toZone = new ZoneShift(ZoneOffset.UTC, zone);
+    Instant blockStart = null;
+    Instant blockEnd = null;
+    while (!heads.isEmpty()) {
+      Cursor next = heads.poll();
+      if (blockStart != null && !next.start.isAfter(blockEnd)) {
+        if (next.end.isAfter(blockEnd)) {
+          blockEnd = next.end;
+        }
+      } else {
+        if (blockStart != null) {
+          merged.add(toLocal(blockStart, blockEnd, toZone));
+        }
+        blockStart = next.start;
+        blockEnd = next.end;
+      }
+      if (next.advance()) {
+        heads.add(next);
+      }
+    }
+    if (blockStart != null) {
+      merged.add(toLocal(blockStart, blockEnd, toZone));
+    }
+    return merged;
+  }
+
+  /**
+   * Converts a block back to local times. A block that ends within an hour the clocks repeat
+   * can end at an earlier local time than it starts; it is then kept as starting at its end.
+   */
+  private static TimeInterval toLocal(Instant start, Instant end, ZoneShift toZone) {
+    LocalDateTime localStart = LocalDateTime.ofEpochSecond(
+            toZone.applyToSeconds(start.getEpochSecond()), start.getNano(), ZoneOffset.UTC);
+    LocalDateTime localEnd = LocalDateTime.ofEpochSecond(
+            toZone.applyToSeconds(end.getEpochSecond()), end.getNano(), ZoneOffset.UTC);
+    if (localEnd.isBefore(localStart)) {
+      localStart = localEnd;
+    }
+    return new TimeInterval(localStart, localEnd);
+  }
+
+  /**
+   * The position in one list being merged, with its current block as instants. Local times
+   * are turned into instants through the zone's cached transition tables.
+   */
+  private static final class Cursor {
+    private final List<TimeInterval> blocks;
+    private final ZoneShift toUtc;
+    private int next;
+    private Instant start;
+    private Instant end;
+
+    private Cursor(List<TimeInterval> blocks, ZoneId zone) {
+      this.blocks = blocks;
+      this.toUtc = new ZoneShift(zone, ZoneOffset.UTC);
+      this.next = 0;
+    }
+
+    private boolean advance() {
+      if (next == blocks.size()) {
+        return false;
+      }
+      TimeInterval block = blocks.get(next++);
+      start = toInstant(block.getStart());
+      end = toInstant(block.getEnd());
+      return true;
+    }
+
+    private Instant toInstant(LocalDateTime time) {
+      return Instant.ofEpochSecond(toUtc.applyToSeconds(time.toEpochSecond(ZoneOffset.UTC)),
+              time.getNano());
+    }
+  }
+}
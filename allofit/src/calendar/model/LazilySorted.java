@@ -0,0 +1,21 @@
+package calendar.model;
+
+/**
+ * A calendar that puts the events written to it in order only when it is next queried.
+ * Its queries can therefore write to it, so whoever shares it between readers must have it
+ * sort its writes while holding exclusive access first.
+ */
+interface LazilySorted {
+
+  /**
+   * Checks whether some write has not been put in order yet.
+   *
+   * @return true if the next query would sort
+   */
+  boolean hasUnsortedWrites();
+
+  /**
+   * Puts every write so far in order, so queries change nothing until the next write.
+   */
+  void sortWrites();
+}
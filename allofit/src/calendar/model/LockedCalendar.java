@@ -0,0 +1,291 @@
+package calendar.model;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
+
+/**
+ * A calendar guarded by its own StampedLock, as a concurrent library hands out, so threads
+ * working on different calendars never wait for each other.
+ * Writes take the write lock and queries the read lock, so a query never sees a write half
+ * done. Reading a single field, such as the timezone, first tries an optimistic stamp and
+ * takes the read lock only if a write started meanwhile.
+ * A calendar that sorts its writes lazily is made to sort them under the write lock before
+ * queries share it, so that queries running together change nothing.
+ * The lock is not reentrant: code already holding it works on the wrapped calendar directly.
+ */
+final class LockedCalendar implements ICalendarModel {
+  private static final AtomicLong NEXT_ORDER = new AtomicLong();
+
+  private final ICalendarModel calendar;
+  private final StampedLock lock;
+  private final long order;
+
+  /**
+   * Wraps a calendar.
+   *
+   * @param calendar the calendar to guard; it must not be used except through this wrapper
+   */
+  LockedCalendar(ICalendarModel calendar) {
+    this.calendar = calendar;
+    this.lock = new StampedLock();
+    this.order = NEXT_ORDER.getAndIncrement();
+  }
+
+  /**
+   * Runs a copy between two calendars with the source read-locked and the target
+   * write-locked. Locks are always taken in the order the calendars were made, so two copies
+   * running in opposite directions cannot deadlock. A copy within one calendar takes its
+   * write lock once.
+   *
+   * @param source the calendar copied from
+   * @param target the calendar copied into
+   * @param copy   the copy, given the two wrapped calendars
+   * @param <T>    the result of the copy
+   * @return the result of the copy
+   */
+  static <T> T lockPair(LockedCalendar source, LockedCalendar target,
+                        BiFunction<ICalendarModel, ICalendarModel, T> copy) {
+    if (source == target) {
+      return target.write(() -> copy.apply(target.calendar, target.calendar));
+    }
+    boolean sourceFirst = source.order < target.order;
+    long firstStamp = sourceFirst ? source.readLockSorted() : target.lock.writeLock();
+    try {
+      long secondStamp = sourceFirst ? target.lock.writeLock() : source.readLockSorted();
+      try {
+        return copy.apply(source.calendar, target.calendar);
+      } finally {
+        (sourceFirst ? target : source).lock.unlock(secondStamp);
+      }
+    } finally {
+      (sourceFirst ? source : target).lock.unlock(firstStamp);
+    }
+  }
+
+  private <T> T read(Supplier<T> query) {
+    long stamp = readLockSorted();
+    try {
+      return query.get();
+    } finally {
+      lock.unlockRead(stamp);
+    }
+  }
+
+  /**
+   * Reads one field of the wrapped calendar, which cannot fail or loop however a write
+   * races it, under an optimistic stamp, falling back to the read lock if a write started.
+   */
+  private <T> T readField(Supplier<T> field) {
+    long stamp = lock.tryOptimisticRead();
+    T value = field.get();
+    if (stamp != 0 && lock.validate(stamp)) {
+      return value;
+    }
+    stamp = lock.readLock();
+    try {
+      return field.get();
+    } finally {
+      lock.unlockRead(stamp);
+    }
+  }
+
+  /**
+   * Takes the read lock once the wrapped calendar has no writes left to sort, sorting them
+   * under the write lock first if it has.
+   */
+  private long readLockSorted() {
+    if (!(calendar instanceof LazilySorted)) {
+      return lock.readLock();
+    }
+    LazilySorted lazy = (LazilySorted) calendar;
+    while (true) {
+      long stamp = lock.readLock();
+      if (!lazy.hasUnsortedWrites()) {
+        return stamp;
+      }
+      lock.unlockRead(stamp);
+      write(lazy::sortWrites);
+    }
+  }
+
+  private <T> T write(Supplier<T> change) {
+    long stamp = lock.writeLock();
+    try {
+      return change.get();
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  private void write(Runnable change) {
+    long stamp = lock.writeLock();
+    try {
+      change.run();
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  @Override
+  public void addEvent(IEvent event) {
+    write(() -> calendar.addEvent(event));
+  }
+
+  @Override
+  public void addEvents(Collection<? extends IEvent> batch) {
+    write(() -> calendar.addEvents(batch));
+  }
+
+  @Override
+  public void addSeries(IEventSeries series) {
+    write(() -> calendar.addSeries(series));
+  }
+
+  @Override
+  public void removeEvent(IEvent event) {
+    write(() -> calendar.removeEvent(event));
+  }
+
+  @Override
+  public void removeEvents(Collection<? extends IEvent> batch) {
+    write(() -> calendar.removeEvents(batch));
+  }
+
+  @Override
+  public int removeRange(LocalDateTime start, LocalDateTime end) {
+    return write(() -> calendar.removeRange(start, end));
+  }
+
+  @Override
+  public int removeSeries(UUID seriesId) {
+    return write(() -> calendar.removeSeries(seriesId));
+  }
+
+  @Override
+  public void beginTransaction() {
+    write(calendar::beginTransaction);
+  }
+
+  @Override
+  public void commitTransaction() {
+    write(calendar::commitTransaction);
+  }
+
+  @Override
+  public void rollbackTransaction() {
+    write(calendar::rollbackTransaction);
+  }
+
+  @Override
+  public boolean isInTransaction() {
+    return readField(calendar::isInTransaction);
+  }
+
+  @Override
+  public IEvent findEvent(String subject, LocalDateTime start) {
+    return read(() -> calendar.findEvent(subject, start));
+  }
+
+  @Override
+  public List<IEvent> getEventsOnDate(LocalDate date) {
+    return read(() -> calendar.getEventsOnDate(date));
+  }
+
+  @Override
+  public List<IEvent> getEventsWithinDates(LocalDateTime beginning, LocalDateTime ending) {
+    return read(() -> calendar.getEventsWithinDates(beginning, ending));
+  }
+
+  @Override
+  public boolean isBusy(LocalDateTime time) {
+    return read(() -> calendar.isBusy(time));
+  }
+
+  @Override
+  public long countBusyMinutes(LocalDateTime from, LocalDateTime to) {
+    return read(() -> calendar.countBusyMinutes(from, to));
+  }
+
+  @Override
+  public List<TimeInterval> getBusyIntervals(LocalDateTime start, LocalDateTime end) {
+    return read(() -> calendar.getBusyIntervals(start, end));
+  }
+
+  @Override
+  public boolean hasConflict(IEvent e) {
+    return read(() -> calendar.hasConflict(e));
+  }
+
+  @Override
+  public List<IEvent> getEventsFromDate(LocalDate date) {
+    return read(() -> calendar.getEventsFromDate(date));
+  }
+
+  @Override
+  public List<IEvent> getEventsFromDate(LocalDate date, int pageSize) {
+    return read(() -> calendar.getEventsFromDate(date, pageSize));
+  }
+
+  @Override
+  public List<IEvent> getEventsAfter(IEvent cursor, int pageSize) {
+    return read(() -> calendar.getEventsAfter(cursor, pageSize));
+  }
+
+  @Override
+  public List<IEvent> getEvents() {
+    return read(calendar::getEvents);
+  }
+
+  @Override
+  public boolean editSingleEvent(IEvent event, String property, String newValue,
+                                 DateTimeFormatter formatter) {
+    return write(() -> calendar.editSingleEvent(event, property, newValue, formatter));
+  }
+
+  @Override
+  public int editFutureEvents(IEvent event, String property, String newValue,
+                              DateTimeFormatter formatter) {
+    return write(() -> calendar.editFutureEvents(event, property, newValue, formatter));
+  }
+
+  @Override
+  public int editWholeSeries(IEvent event, String property, String newValue,
+                             DateTimeFormatter formatter) {
+    return write(() -> calendar.editWholeSeries(event, property, newValue, formatter));
+  }
+
+  @Override
+  public IEvent createModifiedEvent(Event base, String property, String newValue,
+                                    DateTimeFormatter formatter) {
+    return calendar.createModifiedEvent(base, property, newValue, formatter);
+  }
+
+  @Override
+  public ZoneId getTimezone() {
+    return readField(calendar::getTimezone);
+  }
+
+  @Override
+  public void setTimezone(ZoneId timezone) {
+    write(() -> calendar.setTimezone(timezone));
+  }
+
+  @Override
+  public ZoneId getCreationTimezone() {
+    return calendar.getCreationTimezone();
+  }
+
+  @Override
+  public ICalendarModel snapshot() {
+    return read(calendar::snapshot);
+  }
+}
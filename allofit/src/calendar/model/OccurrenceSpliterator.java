@@ -0,0 +1,112 @@
+package calendar.model;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.Spliterator;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Builds the occurrences of a series one at a time, in date order, without holding them.
+ * Occurrences are numbered from 1; the spliterator covers a range of those numbers, and since
+ * the date of any numbered occurrence takes constant time to find, splitting hands half of
+ * the range to a new spliterator without walking it.
+ */
+final class OccurrenceSpliterator implements Spliterator<IEvent> {
+  private final UUID seriesId;
+  private final String subject;
+  private final LocalTime startTime;
+  private final LocalTime endTime;
+  private final int weekdays;
+  private final LocalDate firstDate;
+  private final long end;
+  private long next;
+  private LocalDate nextDate;
+
+  /**
+   * Makes a spliterator over every occurrence of a series.
+   *
+   * @param series the series
+   */
+  OccurrenceSpliterator(IEventSeries series) {
+    this.seriesId = series.getSeriesId();
+    this.subject = series.getSubject();
+    this.startTime = series.getStartTime();
+    this.endTime = series.getEndTime();
+    this.weekdays = WeekdayMask.of(series.getWeekdays());
+    this.firstDate = series.getFirstDate();
+    this.end = WeekdayMask.count(weekdays, firstDate, series.getLastDate()) + 1;
+    this.next = 1;
+    this.nextDate = null;
+  }
+
+  private OccurrenceSpliterator(OccurrenceSpliterator whole, long end) {
+    this.seriesId = whole.seriesId;
+    this.subject = whole.subject;
+    this.startTime = whole.startTime;
+    this.endTime = whole.endTime;
+    this.weekdays = whole.weekdays;
+    this.firstDate = whole.firstDate;
+    this.end = end;
+    this.next = whole.next;
+    this.nextDate = whole.nextDate;
+  }
+
+  @Override
+  public boolean tryAdvance(Consumer<? super IEvent> action) {
+    if (next >= end) {
+      return false;
+    }
+    action.accept(advance());
+    return true;
+  }
+
+  @Override
+  public void forEachRemaining(Consumer<? super IEvent> action) {
+    while (next < end) {
+      action.accept(advance());
+    }
+  }
+
+  /**
+   * Builds the next occurrence and moves past it.
+   */
+  private IEvent advance() {
+    if (nextDate == null) {
+      nextDate = WeekdayMask.nth(weekdays, firstDate, next);
+    }
+    Event event = new Event(subject, nextDate.atTime(startTime), nextDate.atTime(endTime));
+    event.setSeriesId(seriesId);
+    next++;
+    nextDate = WeekdayMask.next(weekdays, nextDate.plusDays(1));
+    return event;
+  }
+
+  /**
+   * Hands the first half of the remaining occurrences to a new spliterator and keeps the rest.
+   *
+   * @return the spliterator for the first half, or null if fewer than two occurrences are left
+   */
+  @Override
+  public Spliterator<IEvent> trySplit() {
+    long remaining = end - next;
+    if (remaining < 2) {
+      return null;
+    }
+    long middle = next + remaining / 2;
+    OccurrenceSpliterator prefix = new OccurrenceSpliterator(this, middle);
+    next = middle;
+    nextDate = null;
+    return prefix;
+  }
+
+  @Override
+  public long estimateSize() {
+    return end - next;
+  }
+
+  @Override
+  public int characteristics() {
+    return ORDERED | SIZED | SUBSIZED | NONNULL | IMMUTABLE;
+  }
+}
@@ -0,0 +1,729 @@
+package calendar.model;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.UUID;
+
+/**
+ * A calendar that keeps its events outside the Java heap, for very large calendars where
+ * garbage collection of millions of Event objects would dominate.
+ * Each event is a fixed-width record in a direct buffer holding its start and end as minutes
+ * since the epoch, its status, a series handle, and the offset and length of its subject,
+ * location and description. The text itself is UTF-8 in a second direct buffer.
+ * The only on-heap state that grows with the calendar is a pair of primitive arrays that list
+ * records in start order, so range and busy queries are a binary search and a scan that never
+ * allocates an Event; Events are built only for the results that are returned.
+ * Writes do not shift those arrays: new records are appended after the ordered ones, found
+ * again through a small open-addressing table of their positions, and removed positions are
+ * only marked. The next query sorts the appended records and merges them in one pass.
+ * Each buffer holds at most {@link Integer#MAX_VALUE} bytes; adding an event that does not fit
+ * fails with an IllegalStateException.
+ * Times must fall on a whole minute.
+ */
+public class OffHeapCalendarModel extends AbstractCalendarModel implements LazilySorted {
+  private static final int START = 0;
+  private static final int END = 8;
+  private static final int SUBJECT_OFFSET = 16;
+  private static final int SUBJECT_LENGTH = 20;
+  private static final int LOCATION_OFFSET = 24;
+  private static final int LOCATION_LENGTH = 28;
+  private static final int DESCRIPTION_OFFSET = 32;
+  private static final int DESCRIPTION_LENGTH = 36;
+  private static final int SERIES = 40;
+  private static final int STATUS = 44;
+  private static final int RECORD_BYTES = 48;
+
+  private static final int INITIAL_RECORDS = 64;
+  private static final int INITIAL_TEXT_BYTES = 4096;
+  private static final long MAX_BUFFER_BYTES = Integer.MAX_VALUE - 8;
+  private static final int REMOVED = -1;
+  private static final int EMPTY = 0;
+  private static final int VACATED = -1;
+  private static final int NO_SERIES = -1;
+  private static final byte PUBLIC = 1;
+  private static final byte PRIVATE = 0;
+
+  private final EncodingDictionary<UUID> seriesIds;
+  private ByteBuffer records;
+  private ByteBuffer text;
+  private int slotsUsed;
+  private int[] freeSlots;
+  private int freeCount;
+  private int textUsed;
+  private int textGarbage;
+  private long[] orderStarts;
+  private int[] orderSlots;
+  private int sorted;
+  private int size;
+  private int removedCount;
+  private int[] appended;
+  private int appendedUsed;
+  private long longestMinutes;
+
+  /**
+   * Makes a new off-heap calendar with a specific timezone.
+   *
+   * @param timezone the current timezone we are in
+   */
+  public OffHeapCalendarModel(ZoneId timezone) {
+    super(timezone);
+    this.seriesIds = new EncodingDictionary<>();
+    this.records = allocate(INITIAL_RECORDS * RECORD_BYTES);
+    this.text = allocate(INITIAL_TEXT_BYTES);
+    this.slotsUsed = 0;
+    this.freeSlots = new int[INITIAL_RECORDS];
+    this.freeCount = 0;
+    this.textUsed = 0;
+    this.textGarbage = 0;
+    this.orderStarts = new long[INITIAL_RECORDS];
+    this.orderSlots = new int[INITIAL_RECORDS];
+    this.sorted = 0;
+    this.size = 0;
+    this.removedCount = 0;
+    this.appended = new int[INITIAL_RECORDS];
+    this.appendedUsed = 0;
+    this.longestMinutes = 0;
+  }
+
+  @Override
+  public void addEvent(IEvent event) {
+    long start = EpochMinutes.of(event.getStart());
+    long end = EpochMinutes.of(event.getEnd());
+    byte[] subject = utf8(event.getSubject());
+    if (positionOf(start, end, subject) >= 0) {
+      throw new IllegalArgumentException("Cannot add two events with the same subject");
+    }
+    byte[] location = utf8(event.getLocation());
+    byte[] description = utf8(event.getDescription());
+    ensureText(subject.length + location.length + description.length);
+
+    int slot = allocateSlot();
+    int base = slot * RECORD_BYTES;
+    records.putLong(base + START, start);
+    records.putLong(base + END, end);
+    writeText(base + SUBJECT_OFFSET, base + SUBJECT_LENGTH, subject);
+    writeText(base + LOCATION_OFFSET, base + LOCATION_LENGTH, location);
+    writeText(base + DESCRIPTION_OFFSET, base + DESCRIPTION_LENGTH, description);
+    records.putInt(base + SERIES,
+            event.getSeriesId() == null ? NO_SERIES : seriesIds.encode(event.getSeriesId()));
+    records.put(base + STATUS, event.isPublic() ? PUBLIC : PRIVATE);
+
+    ensureOrderCapacity(size + 1);
+    orderStarts[size] = start;
+    orderSlots[size] = slot;
+    putAppended(size, start, end, subject);
+    size++;
+    longestMinutes = Math.max(longestMinutes, end - start);
+    recordAdded(event);
+  }
+
+  @Override
+  public void removeEvent(IEvent event) {
+    int position = positionOf(event);
+    if (position < 0) {
+      throw new IllegalArgumentException("Event not found in calendar");
+    }
+    drop(position);
+    settleIfMostlyRemoved();
+  }
+
+  /**
+   * Removes a batch by checking every event is stored, then marking each position removed.
+   *
+   * @param batch the events to remove
+   */
+  @Override
+  public void removeEvents(Collection<? extends IEvent> batch) {
+    BitSet doomed = new BitSet(size);
+    for (IEvent event : batch) {
+      int position = positionOf(event);
+      if (position < 0 || doomed.get(position)) {
+        throw new IllegalArgumentException("Event not found in calendar");
+      }
+      doomed.set(position);
+    }
+    dropAll(doomed);
+  }
+
+  @Override
+  public int removeRange(LocalDateTime start, LocalDateTime end) {
+    checkRange(start, end);
+    settle();
+    long after = EpochMinutes.floor(start);
+    long before = EpochMinutes.ceil(end);
+    BitSet doomed = new BitSet(size);
+    for (int p = firstStartingAt(after - longestMinutes); p < size && orderStarts[p] < before;
+         p++) {
+      if (endOf(orderSlots[p]) > after) {
+        doomed.set(p);
+      }
+    }
+    return dropAll(doomed);
+  }
+
+  @Override
+  public int removeSeries(UUID seriesId) {
+    int id = seriesIds.find(seriesId);
+    if (id < 0) {
+      return 0;
+    }
+    settle();
+    BitSet doomed = new BitSet(size);
+    for (int p = 0; p < size; p++) {
+      if (records.getInt(orderSlots[p] * RECORD_BYTES + SERIES) == id) {
+        doomed.set(p);
+      }
+    }
+    return dropAll(doomed);
+  }
+
+  @Override
+  public IEvent findEvent(String subject, LocalDateTime start) {
+    if (start.getSecond() != 0 || start.getNano() != 0) {
+      return null;
+    }
+    settle();
+    long minute = EpochMinutes.of(start);
+    byte[] probe = utf8(subject);
+    int found = -1;
+    for (int p = firstStartingAt(minute); p < size && orderStarts[p] == minute; p++) {
+      int base = orderSlots[p] * RECORD_BYTES;
+      if (textEquals(base + SUBJECT_OFFSET, base + SUBJECT_LENGTH, probe)) {
+        if (found >= 0) {
+          return null;
+        }
+        found = p;
+      }
+    }
+    return found < 0 ? null : materialize(orderSlots[found]);
+  }
+
+  @Override
+  public List<IEvent> getEventsOnDate(LocalDate date) {
+    settle();
+    long from = EpochMinutes.of(date.atStartOfDay());
+    long to = EpochMinutes.of(date.plusDays(1).atStartOfDay());
+    List<IEvent> result = new ArrayList<>();
+    for (int p = firstStartingAt(from); p < size && orderStarts[p] < to; p++) {
+      result.add(materialize(orderSlots[p]));
+    }
+    return result;
+  }
+
+  @Override
+  public List<IEvent> getEventsWithinDates(LocalDateTime beginning, LocalDateTime ending) {
+    settle();
+    long after = EpochMinutes.floor(beginning);
+    long before = EpochMinutes.ceil(ending);
+    List<IEvent> result = new ArrayList<>();
+    for (int p = firstStartingAt(after - longestMinutes); p < size && orderStarts[p] < before;
+         p++) {
+      if (endOf(orderSlots[p]) > after) {
+        result.add(materialize(orderSlots[p]));
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public boolean isBusy(LocalDateTime time) {
+    settle();
+    long after = EpochMinutes.floor(time);
+    long before = EpochMinutes.ceil(time);
+    for (int p = firstStartingAt(after - longestMinutes); p < size && orderStarts[p] < before;
+         p++) {
+      if (endOf(orderSlots[p]) > after) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public boolean hasConflict(IEvent e) {
+    return positionOf(e) >= 0;
+  }
+
+  @Override
+  public List<IEvent> getEventsFromDate(LocalDate date, int pageSize) {
+    settle();
+    return page(firstStartingAt(EpochMinutes.of(date.atStartOfDay())), pageSize);
+  }
+
+  /**
+   * Gets the page after a cursor, skipping the records at or before it by comparing their
+   * start and end in place; a subject is only decoded when both tie with the cursor's.
+   *
+   * @param cursor   the last event of the previous page
+   * @param pageSize the number of events to return at most
+   * @return the events after the cursor, in start order
+   */
+  @Override
+  public List<IEvent> getEventsAfter(IEvent cursor, int pageSize) {
+    settle();
+    long start = EpochMinutes.floor(cursor.getStart());
+    long end = EpochMinutes.floor(cursor.getEnd());
+    int p = firstStartingAt(start);
+    while (p < size && orderStarts[p] == start) {
+      int base = orderSlots[p] * RECORD_BYTES;
+      long recordEnd = records.getLong(base + END);
+      if (recordEnd > end || recordEnd == end
+              && readText(base + SUBJECT_OFFSET, base + SUBJECT_LENGTH)
+              .compareTo(cursor.getSubject()) > 0) {
+        break;
+      }
+      p++;
+    }
+    return page(p, pageSize);
+  }
+
+  /**
+   * Returns all events in this calendar, in start order.
+   *
+   * @return list of all events
+   */
+  @Override
+  public List<IEvent> getEvents() {
+    settle();
+    return page(0, Integer.MAX_VALUE);
+  }
+
+  @Override
+  protected NavigableSet<IEvent> getSeriesOccurrences(UUID seriesId) {
+    int id = seriesIds.find(seriesId);
+    if (id < 0) {
+      return null;
+    }
+    settle();
+    NavigableSet<IEvent> occurrences = new TreeSet<>(EventKey.ORDER);
+    for (int p = 0; p < size; p++) {
+      if (records.getInt(orderSlots[p] * RECORD_BYTES + SERIES) == id) {
+        occurrences.add(materialize(orderSlots[p]));
+      }
+    }
+    return occurrences.isEmpty() ? null : occurrences;
+  }
+
+  /**
+   * Gets the number of bytes of direct memory this calendar currently holds.
+   *
+   * @return the capacity of the record and text buffers combined
+   */
+  public long getOffHeapBytes() {
+    return (long) records.capacity() + text.capacity();
+  }
+
+  private static ByteBuffer allocate(int bytes) {
+    return ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+  }
+
+  private static byte[] utf8(String s) {
+    return s.getBytes(StandardCharsets.UTF_8);
+  }
+
+  private long endOf(int slot) {
+    return records.getLong(slot * RECORD_BYTES + END);
+  }
+
+  private String readText(int offsetField, int lengthField) {
+    return new String(readBytes(offsetField, lengthField), StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Copies text out with absolute gets, leaving the shared buffer's position alone so that
+   * reads never change the buffer.
+   */
+  private byte[] readBytes(int offsetField, int lengthField) {
+    int offset = records.getInt(offsetField);
+    byte[] bytes = new byte[records.getInt(lengthField)];
+    for (int i = 0; i < bytes.length; i++) {
+      bytes[i] = text.get(offset + i);
+    }
+    return bytes;
+  }
+
+  private boolean textEquals(int offsetField, int lengthField, byte[] probe) {
+    if (records.getInt(lengthField) != probe.length) {
+      return false;
+    }
+    int offset = records.getInt(offsetField);
+    for (int i = 0; i < probe.length; i++) {
+      if (text.get(offset + i) != probe[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void writeText(int offsetField, int lengthField, byte[] bytes) {
+    records.putInt(offsetField, textUsed);
+    records.putInt(lengthField, bytes.length);
+    ByteBuffer target = text.duplicate();
+    target.position(textUsed);
+    target.put(bytes);
+    textUsed += bytes.length;
+  }
+
+  /**
+   * Builds an Event from one record.
+   */
+  private IEvent materialize(int slot) {
+    int base = slot * RECORD_BYTES;
+    Event event = new Event(readText(base + SUBJECT_OFFSET, base + SUBJECT_LENGTH),
+            EpochMinutes.toDateTime(records.getLong(base + START)),
+            EpochMinutes.toDateTime(records.getLong(base + END)),
+            readText(base + LOCATION_OFFSET, base + LOCATION_LENGTH),
+            readText(base + DESCRIPTION_OFFSET, base + DESCRIPTION_LENGTH),
+            records.get(base + STATUS) == PUBLIC ? "public" : "private");
+    int series = records.getInt(base + SERIES);
+    if (series != NO_SERIES) {
+      event.setSeriesId(seriesIds.decode(series));
+    }
+    return event;
+  }
+
+  private List<IEvent> page(int from, int pageSize) {
+    if (pageSize < 1) {
+      throw new IllegalArgumentException("Page size must be positive.");
+    }
+    int to = (int) Math.min(size, (long) from + pageSize);
+    List<IEvent> result = new ArrayList<>(Math.max(to - from, 0));
+    for (int p = from; p < to; p++) {
+      result.add(materialize(orderSlots[p]));
+    }
+    return result;
+  }
+
+  /**
+   * Gets the first ordered position whose start is at or after the given minute.
+   */
+  private int firstStartingAt(long minute) {
+    int lo = 0;
+    int hi = sorted;
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      if (orderStarts[mid] < minute) {
+        lo = mid + 1;
+      } else {
+        hi = mid;
+      }
+    }
+    return lo;
+  }
+
+  /**
+   * Gets the position of the record with the same subject, start and end, or -1 if none.
+   */
+  private int positionOf(IEvent event) {
+    LocalDateTime start = event.getStart();
+    LocalDateTime end = event.getEnd();
+    if (start.getSecond() != 0 || start.getNano() != 0
+            || end.getSecond() != 0 || end.getNano() != 0) {
+      return -1;
+    }
+    return positionOf(EpochMinutes.of(start), EpochMinutes.of(end), utf8(event.getSubject()));
+  }
+
+  /**
+   * Gets the position of a record by binary search over the ordered positions, then through
+   * the table of appended ones.
+   */
+  private int positionOf(long start, long end, byte[] subject) {
+    for (int p = firstStartingAt(start); p < sorted && orderStarts[p] == start; p++) {
+      if (orderSlots[p] != REMOVED && matches(orderSlots[p], end, subject)) {
+        return p;
+      }
+    }
+    int mask = appended.length - 1;
+    for (int i = hash(start, end, subject) & mask; appended[i] != EMPTY; i = (i + 1) & mask) {
+      int p = appended[i] - 1;
+      if (p >= 0 && orderStarts[p] == start && matches(orderSlots[p], end, subject)) {
+        return p;
+      }
+    }
+    return -1;
+  }
+
+  private boolean matches(int slot, long end, byte[] subject) {
+    int base = slot * RECORD_BYTES;
+    return records.getLong(base + END) == end
+            && textEquals(base + SUBJECT_OFFSET, base + SUBJECT_LENGTH, subject);
+  }
+
+  private static int hash(long start, long end, byte[] subject) {
+    int h = Long.hashCode(start * 31 + end) * 31 + Arrays.hashCode(subject);
+    return h ^ (h >>> 16);
+  }
+
+  /**
+   * Enters an appended position in the table, growing the table to keep it at most half used.
+   */
+  private void putAppended(int position, long start, long end, byte[] subject) {
+    if ((appendedUsed + 1) * 2 > appended.length) {
+      int[] old = appended;
+      appended = new int[old.length * 2];
+      appendedUsed = 0;
+      for (int entry : old) {
+        if (entry > 0) {
+          int base = orderSlots[entry - 1] * RECORD_BYTES;
+          putAppended(entry - 1, records.getLong(base + START), records.getLong(base + END),
+                  readBytes(base + SUBJECT_OFFSET, base + SUBJECT_LENGTH));
+        }
+      }
+    }
+    int mask = appended.length - 1;
+    int i = hash(start, end, subject) & mask;
+    while (appended[i] != EMPTY) {
+      i = (i + 1) & mask;
+    }
+    appended[i] = position + 1;
+    appendedUsed++;
+  }
+
+  /**
+   * Takes an appended position out of the table, leaving a marker so later probes go on.
+   */
+  private void vacateAppended(int position) {
+    int base = orderSlots[position] * RECORD_BYTES;
+    int mask = appended.length - 1;
+    int i = hash(records.getLong(base + START), records.getLong(base + END),
+            readBytes(base + SUBJECT_OFFSET, base + SUBJECT_LENGTH)) & mask;
+    while (appended[i] != position + 1) {
+      i = (i + 1) & mask;
+    }
+    appended[i] = VACATED;
+  }
+
+  /**
+   * Drops the records at the marked positions and settles once if they leave the order arrays
+   * mostly empty.
+   *
+   * @return the number of records dropped
+   */
+  private int dropAll(BitSet doomed) {
+    int count = 0;
+    for (int p = doomed.nextSetBit(0); p >= 0; p = doomed.nextSetBit(p + 1)) {
+      drop(p);
+      count++;
+    }
+    settleIfMostlyRemoved();
+    return count;
+  }
+
+  /**
+   * Frees the record at a position and marks the position removed.
+   */
+  private void drop(int position) {
+    int slot = orderSlots[position];
+    if (isInTransaction()) {
+      recordRemoved(materialize(slot));
+    }
+    if (position >= sorted) {
+      vacateAppended(position);
+    }
+    release(slot);
+    orderSlots[position] = REMOVED;
+    removedCount++;
+  }
+
+  @Override
+  public boolean hasUnsortedWrites() {
+    return sorted != size || removedCount != 0;
+  }
+
+  @Override
+  public void sortWrites() {
+    settle();
+  }
+
+  /**
+   * Settles early once at least half of the positions are removed ones, so a run of writes
+   * with no queries between them cannot hold on to removed positions indefinitely.
+   */
+  private void settleIfMostlyRemoved() {
+    if (removedCount > INITIAL_RECORDS && removedCount * 2 >= size) {
+      settle();
+    }
+  }
+
+  /**
+   * Brings the order arrays back to start, end, subject order with nothing removed: sorts the
+   * appended positions and merges them with the ordered ones into new arrays.
+   */
+  private void settle() {
+    if (sorted == size && removedCount == 0) {
+      return;
+    }
+    Integer[] tail = new Integer[size - sorted];
+    int tailLength = 0;
+    for (int p = sorted; p < size; p++) {
+      if (orderSlots[p] != REMOVED) {
+        tail[tailLength++] = orderSlots[p];
+      }
+    }
+    Arrays.sort(tail, 0, tailLength, this::compareSlots);
+
+    int live = size - removedCount;
+    int capacity = Math.max(INITIAL_RECORDS, live + (live >> 1));
+    long[] newStarts = new long[capacity];
+    int[] newSlots = new int[capacity];
+    long longest = 0;
+    int head = nextLive(0);
+    int next = 0;
+    for (int to = 0; to < live; to++) {
+      int slot;
+      if (head < sorted && (next == tailLength || compareSlots(orderSlots[head], tail[next]) < 0)) {
+        slot = orderSlots[head];
+        head = nextLive(head + 1);
+      } else {
+        slot = tail[next++];
+      }
+      int base = slot * RECORD_BYTES;
+      newStarts[to] = records.getLong(base + START);
+      newSlots[to] = slot;
+      longest = Math.max(longest, records.getLong(base + END) - newStarts[to]);
+    }
+    orderStarts = newStarts;
+    orderSlots = newSlots;
+    sorted = live;
+    size = live;
+    removedCount = 0;
+    appended = new int[INITIAL_RECORDS];
+    appendedUsed = 0;
+    longestMinutes = longest;
+  }
+
+  private int nextLive(int position) {
+    while (position < sorted && orderSlots[position] == REMOVED) {
+      position++;
+    }
+    return position;
+  }
+
+  /**
+   * Compares two records in start, end, subject order.
+   */
+  private int compareSlots(int a, int b) {
+    int baseA = a * RECORD_BYTES;
+    int baseB = b * RECORD_BYTES;
+    int cmp = Long.compare(records.getLong(baseA + START), records.getLong(baseB + START));
+    if (cmp != 0) {
+      return cmp;
+    }
+    cmp = Long.compare(records.getLong(baseA + END), records.getLong(baseB + END));
+    if (cmp != 0) {
+      return cmp;
+    }
+    return readText(baseA + SUBJECT_OFFSET, baseA + SUBJECT_LENGTH)
+            .compareTo(readText(baseB + SUBJECT_OFFSET, baseB + SUBJECT_LENGTH));
+  }
+
+  /**
+   * Counts a record's text as garbage, drops its series reference and puts its slot on the
+   * free list.
+   */
+  private void release(int slot) {
+    int base = slot * RECORD_BYTES;
+    textGarbage += records.getInt(base + SUBJECT_LENGTH) + records.getInt(base + LOCATION_LENGTH)
+            + records.getInt(base + DESCRIPTION_LENGTH);
+    int series = records.getInt(base + SERIES);
+    if (series != NO_SERIES) {
+      seriesIds.release(series);
+    }
+    freeSlot(slot);
+  }
+
+  private int allocateSlot() {
+    if (freeCount > 0) {
+      freeCount--;
+      return freeSlots[freeCount];
+    }
+    if ((long) (slotsUsed + 1) * RECORD_BYTES > records.capacity()) {
+      long capacity = Math.min((long) records.capacity() * 2,
+              MAX_BUFFER_BYTES / RECORD_BYTES * RECORD_BYTES);
+      if ((long) (slotsUsed + 1) * RECORD_BYTES > capacity) {
+        throw new IllegalStateException("The calendar cannot hold more than "
+                + capacity / RECORD_BYTES + " events.");
+      }
+      ByteBuffer grown = allocate((int) capacity);
+      records.clear();
+      grown.put(records);
+      records = grown;
+    }
+    return slotsUsed++;
+  }
+
+  private void freeSlot(int slot) {
+    if (freeCount == freeSlots.length) {
+      freeSlots = Arrays.copyOf(freeSlots, freeSlots.length * 2);
+    }
+    freeSlots[freeCount++] = slot;
+  }
+
+  /**
+   * Makes room for more text by copying the text of stored events into a new buffer,
+   * dropping the text of removed events, and doubling it until it starts at most half full
+   * or reaches the largest buffer allowed.
+   *
+   * @throws IllegalStateException if the text would not fit even in the largest buffer
+   */
+  private void ensureText(int bytes) {
+    if ((long) textUsed + bytes <= text.capacity()) {
+      return;
+    }
+    long needed = (long) textUsed - textGarbage + bytes;
+    if (needed > MAX_BUFFER_BYTES) {
+      throw new IllegalStateException("The calendar cannot hold more than "
+              + MAX_BUFFER_BYTES + " bytes of event text.");
+    }
+    long capacity = text.capacity();
+    while (needed > capacity / 2 && capacity < MAX_BUFFER_BYTES) {
+      capacity = Math.min(capacity * 2, MAX_BUFFER_BYTES);
+    }
+    ByteBuffer compacted = allocate((int) capacity);
+    int used = 0;
+    for (int p = 0; p < size; p++) {
+      if (orderSlots[p] == REMOVED) {
+        continue;
+      }
+      int base = orderSlots[p] * RECORD_BYTES;
+      used = moveText(compacted, used, base + SUBJECT_OFFSET, base + SUBJECT_LENGTH);
+      used = moveText(compacted, used, base + LOCATION_OFFSET, base + LOCATION_LENGTH);
+      used = moveText(compacted, used, base + DESCRIPTION_OFFSET, base + DESCRIPTION_LENGTH);
+    }
+    text = compacted;
+    textUsed = used;
+    textGarbage = 0;
+  }
+
+  private int moveText(ByteBuffer target, int used, int offsetField, int lengthField) {
+    int offset = records.getInt(offsetField);
+    int length = records.getInt(lengthField);
+    ByteBuffer source = text.duplicate();
+    source.limit(offset + length).position(offset);
+    target.position(used);
+    target.put(source);
+    records.putInt(offsetField, used);
+    return used + length;
+  }
+
+  private void ensureOrderCapacity(int needed) {
+    if (needed <= orderStarts.length) {
+      return;
+    }
+    int capacity = Math.max(needed, orderStarts.length * 2);
+    orderStarts = Arrays.copyOf(orderStarts, capacity);
+    orderSlots = Arrays.copyOf(orderSlots, capacity);
+  }
+}
@@ -0,0 +1,156 @@
+package calendar.model;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * The parts of a calendar view that cannot be changed: every method that would add, remove
+ * or edit events, or change the timezone, throws UnsupportedOperationException.
+ * Subclasses supply the queries over events that never change, so the view can be shared
+ * between threads without locking.
+ */
+abstract class ReadOnlyCalendarModel implements ICalendarModel {
+  private final ZoneId timezone;
+  private final ZoneId creationTimezone;
+
+  /**
+   * Makes the shared part of a read-only view.
+   *
+   * @param timezone         the calendar's current timezone
+   * @param creationTimezone the calendar's creation timezone
+   */
+  protected ReadOnlyCalendarModel(ZoneId timezone, ZoneId creationTimezone) {
+    this.timezone = timezone;
+    this.creationTimezone = creationTimezone;
+  }
+
+  @Override
+  public void addEvent(IEvent event) {
+    throw readOnly();
+  }
+
+  @Override
+  public void addEvents(Collection<? extends IEvent> batch) {
+    throw readOnly();
+  }
+
+  @Override
+  public void addSeries(IEventSeries series) {
+    throw readOnly();
+  }
+
+  @Override
+  public void removeEvent(IEvent event) {
+    throw readOnly();
+  }
+
+  @Override
+  public void removeEvents(Collection<? extends IEvent> batch) {
+    throw readOnly();
+  }
+
+  @Override
+  public int removeRange(LocalDateTime start, LocalDateTime end) {
+    throw readOnly();
+  }
+
+  @Override
+  public int removeSeries(UUID seriesId) {
+    throw readOnly();
+  }
+
+  @Override
+  public void beginTransaction() {
+    throw readOnly();
+  }
+
+  @Override
+  public void commitTransaction() {
+    throw readOnly();
+  }
+
+  @Override
+  public void rollbackTransaction() {
+    throw readOnly();
+  }
+
+  @Override
+  public boolean isInTransaction() {
+    return false;
+  }
+
+  @Override
+  public List<IEvent> getEventsFromDate(LocalDate date) {
+    return getEventsFromDate(date, AbstractCalendarModel.DEFAULT_PAGE_SIZE);
+  }
+
+  @Override
+  public boolean editSingleEvent(IEvent event, String property, String newValue,
+                                 DateTimeFormatter formatter) {
+    throw readOnly();
+  }
+
+  @Override
+  public int editFutureEvents(IEvent event, String property, String newValue,
+                              DateTimeFormatter formatter) {
+    throw readOnly();
+  }
+
+  @Override
+  public int editWholeSeries(IEvent event, String property, String newValue,
+                             DateTimeFormatter formatter) {
+    throw readOnly();
+  }
+
+  @Override
+  public IEvent createModifiedEvent(Event base, String property, String newValue,
+                                    DateTimeFormatter formatter) {
+    throw readOnly();
+  }
+
+  @Override
+  public ZoneId getTimezone() {
+    return timezone;
+  }
+
+  @Override
+  public void setTimezone(ZoneId timezone) {
+    throw readOnly();
+  }
+
+  @Override
+  public ZoneId getCreationTimezone() {
+    return creationTimezone;
+  }
+
+  /**
+   * Read-only views never change, so a snapshot of one is itself.
+   *
+   * @return this view
+   */
+  @Override
+  public ICalendarModel snapshot() {
+    return this;
+  }
+
+  /**
+   * Checks a requested page size.
+   *
+   * @param pageSize the largest number of events to return
+   * @throws IllegalArgumentException if pageSize is not positive
+   */
+  protected static void checkPageSize(int pageSize) {
+    if (pageSize < 1) {
+      throw new IllegalArgumentException("Page size must be positive.");
+    }
+  }
+
+  private static UnsupportedOperationException readOnly() {
+    return new UnsupportedOperationException("Calendar snapshots are read-only.");
+  }
+}
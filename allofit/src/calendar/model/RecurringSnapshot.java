@@ -0,0 +1,85 @@
+package calendar.model;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A read-only view of a calendar that keeps some series as rules: a snapshot of its stored
+ * events together with the rules it had when the snapshot was taken. Occurrences are merged
+ * into every query the same way the calendar itself merges them.
+ */
+final class RecurringSnapshot extends ReadOnlyCalendarModel {
+  private final ICalendarModel stored;
+  private final SeriesRules rules;
+
+  /**
+   * Makes the view.
+   *
+   * @param stored a read-only view of the stored events
+   * @param rules  the rules at the same moment
+   */
+  RecurringSnapshot(ICalendarModel stored, SeriesRules rules) {
+    super(stored.getTimezone(), stored.getCreationTimezone());
+    this.stored = stored;
+    this.rules = rules;
+  }
+
+  @Override
+  public IEvent findEvent(String subject, LocalDateTime start) {
+    List<IEvent> occurrences = rules.find(subject, start);
+    if (occurrences.isEmpty()) {
+      return stored.findEvent(subject, start);
+    }
+    if (occurrences.size() > 1) {
+      return null;
+    }
+    for (IEvent e : stored.getEventsOnDate(start.toLocalDate())) {
+      if (e.getSubject().equals(subject) && e.getStart().equals(start)) {
+        return null;
+      }
+    }
+    return occurrences.get(0);
+  }
+
+  @Override
+  public List<IEvent> getEventsOnDate(LocalDate date) {
+    return rules.mergeOnDate(stored.getEventsOnDate(date), date);
+  }
+
+  @Override
+  public List<IEvent> getEventsWithinDates(LocalDateTime beginning, LocalDateTime ending) {
+    return rules.mergeOverlapping(stored.getEventsWithinDates(beginning, ending), beginning,
+            ending);
+  }
+
+  @Override
+  public boolean isBusy(LocalDateTime time) {
+    return rules.covers(time) || stored.isBusy(time);
+  }
+
+  @Override
+  public boolean hasConflict(IEvent e) {
+    return rules.ruleOf(e) != null || stored.hasConflict(e);
+  }
+
+  @Override
+  public List<IEvent> getEventsFromDate(LocalDate date, int pageSize) {
+    LocalDateTime from = date.atStartOfDay();
+    return rules.mergePage(stored.getEventsFromDate(date, pageSize),
+            e -> !e.getStart().isBefore(from), date, pageSize);
+  }
+
+  @Override
+  public List<IEvent> getEventsAfter(IEvent cursor, int pageSize) {
+    return rules.mergePage(stored.getEventsAfter(cursor, pageSize),
+            e -> EventKey.ORDER.compare(e, cursor) > 0, cursor.getStart().toLocalDate(),
+            pageSize);
+  }
+
+  @Override
+  public List<IEvent> getEvents() {
+    return rules.mergeAll(new ArrayList<>(stored.getEvents()));
+  }
+}
@@ -0,0 +1,570 @@
+package calendar.model;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.function.Predicate;
+
+/**
+ * A recurring series kept as its rule instead of as events: the text every occurrence shares,
+ * the time of day it runs, the weekdays it happens on, the first and last date, and the dates
+ * taken out of it because that occurrence was edited or removed.
+ * Changes to the location, description or status of one occurrence or of a run of them are
+ * kept as edits over a range of dates and applied as each occurrence is built, so editing
+ * a long run of occurrences writes one record instead of storing every occurrence.
+ * Each property's edits are kept as ranges that do not overlap, sorted by first date: a later
+ * edit cuts back the earlier ones it overlaps and drops those it covers, so building an
+ * occurrence looks up one range per property however many edits were made.
+ * Occurrences are built only for the dates a query asks about.
+ * A rule never changes; taking a date out of it or changing its text returns a new rule.
+ */
+final class SeriesRule {
+  private static final long MINUTE_NANOS = 60_000_000_000L;
+
+  private final UUID seriesId;
+  private final String subject;
+  private final String location;
+  private final String description;
+  private final String status;
+  private final LocalTime startTime;
+  private final LocalTime endTime;
+  private final int weekdays;
+  private final LocalDate firstDate;
+  private final LocalDate lastDate;
+  private final LocalDate[] excluded;
+  private final Map<String, NavigableMap<LocalDate, PropertyEdit>> edits;
+  private final int size;
+
+  /**
+   * Makes the rule of a series, with no dates taken out.
+   *
+   * @param series the series
+   */
+  SeriesRule(IEventSeries series) {
+    this.seriesId = series.getSeriesId();
+    this.subject = series.getSubject();
+    this.location = "";
+    this.description = "";
+    this.status = "public";
+    this.startTime = series.getStartTime();
+    this.endTime = series.getEndTime();
+    this.weekdays = WeekdayMask.of(series.getWeekdays());
+    this.firstDate = series.getFirstDate();
+    this.lastDate = series.getLastDate();
+    this.excluded = new LocalDate[0];
+    this.edits = Collections.emptyMap();
+    this.size = (int) WeekdayMask.count(weekdays, firstDate, lastDate);
+  }
+
+  private SeriesRule(SeriesRule rule, String subject, String location, String description,
+                     String status, LocalDate[] excluded,
+                     Map<String, NavigableMap<LocalDate, PropertyEdit>> edits, int size) {
+    this.seriesId = rule.seriesId;
+    this.subject = subject;
+    this.location = location;
+    this.description = description;
+    this.status = status;
+    this.startTime = rule.startTime;
+    this.endTime = rule.endTime;
+    this.weekdays = rule.weekdays;
+    this.firstDate = rule.firstDate;
+    this.lastDate = rule.lastDate;
+    this.excluded = excluded;
+    this.edits = edits;
+    this.size = size;
+  }
+
+  UUID getSeriesId() {
+    return seriesId;
+  }
+
+  String getSubject() {
+    return subject;
+  }
+
+  LocalTime getStartTime() {
+    return startTime;
+  }
+
+  LocalTime getEndTime() {
+    return endTime;
+  }
+
+  int getWeekdays() {
+    return weekdays;
+  }
+
+  LocalDate getFirstDate() {
+    return firstDate;
+  }
+
+  LocalDate getLastDate() {
+    return lastDate;
+  }
+
+  /**
+   * Gets the number of occurrences still in the rule.
+   *
+   * @return the number of occurrences
+   */
+  int size() {
+    return size;
+  }
+
+  /**
+   * Checks whether the rule has an occurrence on a date.
+   *
+   * @param date the date
+   * @return true if the series happens that day and the date was not taken out
+   */
+  boolean occursOn(LocalDate date) {
+    return !date.isBefore(firstDate) && !date.isAfter(lastDate)
+            && WeekdayMask.contains(weekdays, date) && Arrays.binarySearch(excluded, date) < 0;
+  }
+
+  /**
+   * Gets the first date on or after a date that falls on one of the rule's weekdays, whether
+   * or not it was taken out.
+   */
+  private LocalDate nextOnWeekday(LocalDate date) {
+    return WeekdayMask.next(weekdays, date);
+  }
+
+  private boolean isExcluded(LocalDate date) {
+    return Arrays.binarySearch(excluded, date) >= 0;
+  }
+
+  /**
+   * Gets the first date whose occurrence would end after a time, no earlier than the first date.
+   */
+  private LocalDate firstEndingAfter(LocalDateTime from) {
+    LocalDate date = from.toLocalDate();
+    if (!date.atTime(endTime).isAfter(from)) {
+      date = date.plusDays(1);
+    }
+    return date.isBefore(firstDate) ? firstDate : date;
+  }
+
+  /**
+   * Gets the last date whose occurrence would start before a time, no later than the last date.
+   */
+  private LocalDate lastStartingBefore(LocalDateTime to) {
+    LocalDate date = to.toLocalDate();
+    if (!date.atTime(startTime).isBefore(to)) {
+      date = date.minusDays(1);
+    }
+    return date.isAfter(lastDate) ? lastDate : date;
+  }
+
+  /**
+   * Builds the occurrence on a date the rule occurs on.
+   *
+   * @param date the date
+   * @return a new event carrying the series id
+   */
+  IEvent occurrenceOn(LocalDate date) {
+    Event event = new Event(subject, date.atTime(startTime), date.atTime(endTime), location,
+            description, status);
+    event.setSeriesId(seriesId);
+    for (NavigableMap<LocalDate, PropertyEdit> ranges : edits.values()) {
+      Map.Entry<LocalDate, PropertyEdit> edit = ranges.floorEntry(date);
+      if (edit != null && !date.isAfter(edit.getValue().to)) {
+        edit.getValue().applyTo(event);
+      }
+    }
+    return event;
+  }
+
+  /**
+   * Checks whether an event has the subject, start and end of one of the rule's occurrences.
+   *
+   * @param event the event
+   * @return true if the event duplicates an occurrence
+   */
+  boolean matches(IEvent event) {
+    LocalDate date = event.getStart().toLocalDate();
+    return event.getSubject().equals(subject)
+            && event.getStart().toLocalTime().equals(startTime)
+            && event.getEnd().equals(date.atTime(endTime))
+            && occursOn(date);
+  }
+
+  /**
+   * Checks whether some occurrence starts before and ends after a time.
+   *
+   * @param time the time
+   * @return true if an occurrence covers the time
+   */
+  boolean covers(LocalDateTime time) {
+    LocalTime clock = time.toLocalTime();
+    return clock.isAfter(startTime) && clock.isBefore(endTime) && occursOn(time.toLocalDate());
+  }
+
+  /**
+   * Adds the occurrences that end after from and start before to.
+   *
+   * @param from   the start of the range
+   * @param to     the end of the range
+   * @param result the list to add them to, in date order
+   */
+  void addOverlapping(LocalDateTime from, LocalDateTime to, List<IEvent> result) {
+    LocalDate last = lastStartingBefore(to);
+    for (LocalDate date = nextOnWeekday(firstEndingAfter(from)); !date.isAfter(last);
+         date = nextOnWeekday(date.plusDays(1))) {
+      if (!isExcluded(date)) {
+        result.add(occurrenceOn(date));
+      }
+    }
+  }
+
+  /**
+   * Gets the first minute of its day an occurrence touches.
+   *
+   * @return the minute of the day, rounded down
+   */
+  int firstMinuteOfDay() {
+    return startTime.toSecondOfDay() / 60;
+  }
+
+  /**
+   * Gets the first minute of its day after an occurrence.
+   *
+   * @return the minute of the day, rounded up
+   */
+  int endMinuteOfDay() {
+    return (int) ((endTime.toNanoOfDay() + MINUTE_NANOS - 1) / MINUTE_NANOS);
+  }
+
+  /**
+   * Counts the minutes occurrences are in progress between two times on whole minutes.
+   * Every occurrence runs the same minutes of its day, so this is the number of occurrences
+   * in the range times that length, less the minutes cut off the ones on the range's ends.
+   *
+   * @param from the start of the range
+   * @param to   the end of the range
+   * @return the number of busy minutes
+   */
+  long countBusyMinutes(LocalDateTime from, LocalDateTime to) {
+    long count = (long) countOverlapping(from, to) * (endMinuteOfDay() - firstMinuteOfDay());
+    if (count == 0) {
+      return 0;
+    }
+    long fromMinute = EpochMinutes.of(from);
+    long toMinute = EpochMinutes.of(to);
+    LocalDate fromDate = from.toLocalDate();
+    if (occursOn(fromDate)) {
+      long start = EpochMinutes.of(fromDate.atStartOfDay()) + firstMinuteOfDay();
+      long end = EpochMinutes.of(fromDate.atStartOfDay()) + endMinuteOfDay();
+      if (start < fromMinute && end > fromMinute) {
+        count -= fromMinute - start;
+      }
+    }
+    LocalDate toDate = to.toLocalDate();
+    if (occursOn(toDate)) {
+      long start = EpochMinutes.of(toDate.atStartOfDay()) + firstMinuteOfDay();
+      long end = EpochMinutes.of(toDate.atStartOfDay()) + endMinuteOfDay();
+      if (start < toMinute && end > toMinute) {
+        count -= end - toMinute;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Adds the minutes of the occurrences that end after from and start before to, cut to
+   * the range.
+   *
+   * @param from   the start of the range, on a whole minute
+   * @param to     the end of the range, on a whole minute
+   * @param blocks the list to add each occurrence's first minute and first minute after to
+   */
+  void addBusyMinutes(LocalDateTime from, LocalDateTime to, List<long[]> blocks) {
+    long fromMinute = EpochMinutes.of(from);
+    long toMinute = EpochMinutes.of(to);
+    LocalDate last = lastStartingBefore(to);
+    for (LocalDate date = nextOnWeekday(firstEndingAfter(from)); !date.isAfter(last);
+         date = nextOnWeekday(date.plusDays(1))) {
+      if (!isExcluded(date)) {
+        long midnight = EpochMinutes.of(date.atStartOfDay());
+        long start = Math.max(fromMinute, midnight + firstMinuteOfDay());
+        long end = Math.min(toMinute, midnight + endMinuteOfDay());
+        if (start < end) {
+          blocks.add(new long[] {start, end});
+        }
+      }
+    }
+  }
+
+  /**
+   * Adds every occurrence.
+   *
+   * @param result the list to add them to, in date order
+   */
+  void addAll(List<IEvent> result) {
+    for (LocalDate date = nextOnWeekday(firstDate); !date.isAfter(lastDate);
+         date = nextOnWeekday(date.plusDays(1))) {
+      if (!isExcluded(date)) {
+        result.add(occurrenceOn(date));
+      }
+    }
+  }
+
+  /**
+   * Adds up to limit occurrences on or after a date that pass a lower bound, in date order.
+   *
+   * @param lowerBound true for occurrences at or after the first one wanted, monotone in time
+   * @param fromDate   the first date to look at
+   * @param limit      the largest number of occurrences to add
+   * @param result     the list to add them to
+   */
+  void addFirstMatching(Predicate<IEvent> lowerBound, LocalDate fromDate, int limit,
+                        List<IEvent> result) {
+    int added = 0;
+    for (LocalDate date = nextOnWeekday(later(fromDate, firstDate));
+         added < limit && !date.isAfter(lastDate); date = nextOnWeekday(date.plusDays(1))) {
+      if (!isExcluded(date)) {
+        IEvent occurrence = occurrenceOn(date);
+        if (lowerBound.test(occurrence)) {
+          result.add(occurrence);
+          added++;
+        }
+      }
+    }
+  }
+
+  /**
+   * Checks whether this rule and another would produce the same event on some date.
+   *
+   * @param other the other rule
+   * @return true if some occurrence of one duplicates an occurrence of the other
+   */
+  boolean overlaps(SeriesRule other) {
+    if (!subject.equals(other.subject) || !startTime.equals(other.startTime)
+            || !endTime.equals(other.endTime)) {
+      return false;
+    }
+    int common = weekdays & other.weekdays;
+    if (common == 0) {
+      return false;
+    }
+    LocalDate last = lastDate.isBefore(other.lastDate) ? lastDate : other.lastDate;
+    for (LocalDate date = WeekdayMask.next(common, later(firstDate, other.firstDate));
+         !date.isAfter(last); date = WeekdayMask.next(common, date.plusDays(1))) {
+      if (!isExcluded(date) && !other.isExcluded(date)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Gets this rule with the occurrence on one date taken out.
+   *
+   * @param date a date the rule occurs on
+   * @return the new rule
+   */
+  SeriesRule without(LocalDate date) {
+    int at = -Arrays.binarySearch(excluded, date) - 1;
+    LocalDate[] dates = new LocalDate[excluded.length + 1];
+    System.arraycopy(excluded, 0, dates, 0, at);
+    dates[at] = date;
+    System.arraycopy(excluded, at, dates, at + 1, excluded.length - at);
+    return new SeriesRule(this, subject, location, description, status, dates, edits, size - 1);
+  }
+
+  /**
+   * Gets this rule with the occurrences that end after from and start before to taken out.
+   *
+   * @param from the start of the range
+   * @param to   the end of the range
+   * @return the new rule, or this rule if no occurrence is in the range
+   */
+  SeriesRule withoutOverlapping(LocalDateTime from, LocalDateTime to) {
+    int count = countOverlapping(from, to);
+    if (count == 0) {
+      return this;
+    }
+    LocalDate[] dates = Arrays.copyOf(excluded, excluded.length + count);
+    int added = excluded.length;
+    LocalDate last = lastStartingBefore(to);
+    for (LocalDate date = nextOnWeekday(firstEndingAfter(from)); !date.isAfter(last);
+         date = nextOnWeekday(date.plusDays(1))) {
+      if (!isExcluded(date)) {
+        dates[added++] = date;
+      }
+    }
+    Arrays.sort(dates);
+    return new SeriesRule(this, subject, location, description, status, dates, edits, size - count);
+  }
+
+  /**
+   * Gets the number of occurrences that end after from and start before to. The weekdays in
+   * the range are counted in constant time and the dates taken out of it found by binary
+   * search.
+   *
+   * @param from the start of the range
+   * @param to   the end of the range
+   * @return the number of occurrences in the range
+   */
+  int countOverlapping(LocalDateTime from, LocalDateTime to) {
+    LocalDate first = firstEndingAfter(from);
+    LocalDate last = lastStartingBefore(to);
+    if (last.isBefore(first)) {
+      return 0;
+    }
+    int takenOut = insertionPoint(last.plusDays(1)) - insertionPoint(first);
+    return (int) WeekdayMask.count(weekdays, first, last) - takenOut;
+  }
+
+  private int insertionPoint(LocalDate date) {
+    int at = Arrays.binarySearch(excluded, date);
+    return at < 0 ? -at - 1 : at;
+  }
+
+  /**
+   * Gets this rule with one more property changed for every occurrence.
+   * Only the subject, location, description and status can be changed this way.
+   *
+   * @param property the property to change
+   * @param newValue the new value
+   * @return the new rule, or null if the property is part of the schedule or the value is
+   *      not one every occurrence can take
+   */
+  SeriesRule withProperty(String property, String newValue) {
+    String name = property.toLowerCase();
+    if (name.equals("subject")) {
+      if (newValue.isEmpty()) {
+        return null;
+      }
+      return new SeriesRule(this, newValue, location, description, status, excluded, edits,
+              size);
+    }
+    if (!PropertyEdit.canEdit(name)) {
+      return null;
+    }
+    Map<String, NavigableMap<LocalDate, PropertyEdit>> kept = new HashMap<>(edits);
+    kept.remove(name);
+    String value = PropertyEdit.normalize(name, newValue);
+    switch (name) {
+      case "location":
+        return new SeriesRule(this, subject, value, description, status, excluded, kept, size);
+      case "description":
+        return new SeriesRule(this, subject, location, value, status, excluded, kept, size);
+      default:
+        return new SeriesRule(this, subject, location, description, value, excluded, kept, size);
+    }
+  }
+
+  /**
+   * Gets this rule with one property changed for the occurrences between two dates. Later
+   * edits win over earlier ones where their dates overlap: the earlier edits of the property
+   * are cut back to the dates outside the new one, and dropped if none are left.
+   *
+   * @param from     the first date the edit applies to
+   * @param to       the last date the edit applies to
+   * @param property the property to change
+   * @param newValue the new value
+   * @return the new rule, or null if only the location, description or status can be edited
+   *      this way and the property is none of them
+   */
+  SeriesRule withEdit(LocalDate from, LocalDate to, String property, String newValue) {
+    String name = property.toLowerCase();
+    if (!PropertyEdit.canEdit(name)) {
+      return null;
+    }
+    NavigableMap<LocalDate, PropertyEdit> ranges =
+            new TreeMap<>(edits.getOrDefault(name, Collections.emptyNavigableMap()));
+    Map.Entry<LocalDate, PropertyEdit> before = ranges.lowerEntry(from);
+    if (before != null && !before.getValue().to.isBefore(from)) {
+      PropertyEdit cut = before.getValue();
+      ranges.put(cut.from, cut.between(cut.from, from.minusDays(1)));
+      if (cut.to.isAfter(to)) {
+        ranges.put(to.plusDays(1), cut.between(to.plusDays(1), cut.to));
+      }
+    }
+    NavigableMap<LocalDate, PropertyEdit> covered = ranges.subMap(from, true, to, true);
+    PropertyEdit last = covered.isEmpty() ? null : covered.lastEntry().getValue();
+    covered.clear();
+    if (last != null && last.to.isAfter(to)) {
+      ranges.put(to.plusDays(1), last.between(to.plusDays(1), last.to));
+    }
+    ranges.put(from, new PropertyEdit(from, to, name, PropertyEdit.normalize(name, newValue)));
+    Map<String, NavigableMap<LocalDate, PropertyEdit>> next = new HashMap<>(edits);
+    next.put(name, ranges);
+    return new SeriesRule(this, subject, location, description, status, excluded, next, size);
+  }
+
+  /**
+   * Gets the number of occurrences on or after a date.
+   *
+   * @param date the first date to count
+   * @return the number of occurrences from that date on
+   */
+  int countFrom(LocalDate date) {
+    return countOverlapping(date.atStartOfDay(), lastDate.plusDays(1).atStartOfDay());
+  }
+
+  private static LocalDate later(LocalDate a, LocalDate b) {
+    return a.isAfter(b) ? a : b;
+  }
+
+  /**
+   * A change to one property of the occurrences between two dates, both included.
+   * Only properties that are not part of an event's identity can be edited this way.
+   */
+  private static final class PropertyEdit {
+    private final LocalDate from;
+    private final LocalDate to;
+    private final String property;
+    private final String value;
+
+    private PropertyEdit(LocalDate from, LocalDate to, String property, String value) {
+      this.from = from;
+      this.to = to;
+      this.property = property;
+      this.value = value;
+    }
+
+    /**
+     * Gets the same change for a part of its dates.
+     */
+    private PropertyEdit between(LocalDate first, LocalDate last) {
+      return new PropertyEdit(first, last, property, value);
+    }
+
+    private static boolean canEdit(String property) {
+      return property.equals("location") || property.equals("description")
+              || property.equals("status");
+    }
+
+    private static String normalize(String property, String value) {
+      if (!property.equals("status")) {
+        return value;
+      }
+      boolean isPublic = value.equalsIgnoreCase("public") || value.equalsIgnoreCase("true");
+      return isPublic ? "public" : "private";
+    }
+
+    private void applyTo(IEvent event) {
+      switch (property) {
+        case "location":
+          event.setLocation(value);
+          break;
+        case "description":
+          event.setDescription(value);
+          break;
+        default:
+          event.setPublic(value.equals("public"));
+          break;
+      }
+    }
+  }
+}
@@ -0,0 +1,435 @@
+package calendar.model;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Predicate;
+
+/**
+ * The recurring series a calendar keeps as rules, and the merging of their occurrences into
+ * the results of queries over the calendar's stored events.
+ * A set of rules never changes; adding, replacing or removing a rule returns a new set, so a
+ * snapshot can keep the set it was taken with.
+ * Each set is indexed when it is made: by subject, for the lookups that match an event, and
+ * by weekday in start-time order, for checking whether a time is busy and for counting busy
+ * minutes without building occurrences.
+ */
+final class SeriesRules {
+  static final SeriesRules NONE = new SeriesRules(Collections.emptyMap());
+  private static final int MINUTES_PER_DAY = 1440;
+
+  private final Map<UUID, SeriesRule> rules;
+  private final Map<String, List<SeriesRule>> bySubject;
+  private final SeriesRule[][] byWeekday;
+  private final LocalTime[][] latestEnd;
+  private final boolean disjoint;
+
+  private SeriesRules(Map<UUID, SeriesRule> rules) {
+    this.rules = rules;
+    this.bySubject = new HashMap<>();
+    this.byWeekday = new SeriesRule[7][];
+    this.latestEnd = new LocalTime[7][];
+    for (SeriesRule rule : rules.values()) {
+      bySubject.computeIfAbsent(rule.getSubject(), subject -> new ArrayList<>(1)).add(rule);
+    }
+    boolean apart = true;
+    for (int day = 0; day < 7; day++) {
+      List<SeriesRule> onDay = new ArrayList<>();
+      for (SeriesRule rule : rules.values()) {
+        if ((rule.getWeekdays() & (1 << day)) != 0) {
+          onDay.add(rule);
+        }
+      }
+      onDay.sort(Comparator.comparing(SeriesRule::getStartTime));
+      byWeekday[day] = onDay.toArray(new SeriesRule[0]);
+      latestEnd[day] = new LocalTime[onDay.size()];
+      LocalTime latest = LocalTime.MIN;
+      int busyUntil = 0;
+      for (int i = 0; i < onDay.size(); i++) {
+        SeriesRule rule = onDay.get(i);
+        latest = rule.getEndTime().isAfter(latest) ? rule.getEndTime() : latest;
+        latestEnd[day][i] = latest;
+        apart &= rule.firstMinuteOfDay() >= busyUntil;
+        busyUntil = Math.max(busyUntil, rule.endMinuteOfDay());
+      }
+    }
+    this.disjoint = apart;
+  }
+
+  boolean isEmpty() {
+    return rules.isEmpty();
+  }
+
+  /**
+   * Gets the rule of a series.
+   *
+   * @param seriesId the series
+   * @return its rule, or null if the series is not kept as a rule
+   */
+  SeriesRule get(UUID seriesId) {
+    return rules.get(seriesId);
+  }
+
+  /**
+   * Gets these rules with one added or replaced. A rule with no occurrences left is dropped.
+   *
+   * @param rule the rule
+   * @return the new set of rules
+   */
+  SeriesRules with(SeriesRule rule) {
+    Map<UUID, SeriesRule> next = new LinkedHashMap<>(rules);
+    if (rule.size() == 0) {
+      next.remove(rule.getSeriesId());
+    } else {
+      next.put(rule.getSeriesId(), rule);
+    }
+    return next.isEmpty() ? NONE : new SeriesRules(next);
+  }
+
+  /**
+   * Gets these rules without the rule of a series.
+   *
+   * @param seriesId the series
+   * @return the new set of rules
+   */
+  SeriesRules without(UUID seriesId) {
+    if (!rules.containsKey(seriesId)) {
+      return this;
+    }
+    Map<UUID, SeriesRule> next = new LinkedHashMap<>(rules);
+    next.remove(seriesId);
+    return next.isEmpty() ? NONE : new SeriesRules(next);
+  }
+
+  /**
+   * Gets the rule with an occurrence that has the event's subject, start and end.
+   *
+   * @param event the event
+   * @return the rule, or null if the event is not one of the occurrences
+   */
+  SeriesRule ruleOf(IEvent event) {
+    for (SeriesRule rule : withSubject(event.getSubject())) {
+      if (rule.matches(event)) {
+        return rule;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Gets these rules with the occurrence that has the event's subject, start and end taken out.
+   *
+   * @param event the event
+   * @return the new set of rules, or this set if the event is not one of the occurrences
+   */
+  SeriesRules detach(IEvent event) {
+    SeriesRule rule = ruleOf(event);
+    if (rule == null) {
+      return this;
+    }
+    return with(rule.without(event.getStart().toLocalDate()));
+  }
+
+  /**
+   * Checks whether some rule would produce the same event as the given rule on some date.
+   *
+   * @param rule the rule
+   * @return true if the rule duplicates an occurrence already kept here
+   */
+  boolean overlaps(SeriesRule rule) {
+    for (SeriesRule other : withSubject(rule.getSubject())) {
+      if (other.overlaps(rule)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private List<SeriesRule> withSubject(String subject) {
+    return bySubject.getOrDefault(subject, Collections.emptyList());
+  }
+
+  /**
+   * Checks whether some occurrence starts before and ends after a time.
+   * Only the rules of the time's weekday that start before it are looked at, latest start
+   * first, stopping once none of the earlier ones runs past the time.
+   *
+   * @param time the time
+   * @return true if an occurrence covers the time
+   */
+  boolean covers(LocalDateTime time) {
+    int day = time.getDayOfWeek().getValue() - 1;
+    SeriesRule[] onDay = byWeekday[day];
+    LocalTime clock = time.toLocalTime();
+    int low = 0;
+    int high = onDay.length;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (onDay[mid].getStartTime().isBefore(clock)) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    for (int i = low - 1; i >= 0 && latestEnd[day][i].isAfter(clock); i--) {
+      if (onDay[i].covers(time)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Counts the minutes in a range during which some occurrence is in progress and no stored
+   * event is. When no two rules share a minute of any weekday, each rule's minutes are
+   * counted arithmetically and the stored minutes taken back out only on days that have
+   * both; otherwise the occurrences' minutes are merged and each run checked against the
+   * stored ones.
+   *
+   * @param stored the busy minutes of the stored events
+   * @param from   the first minute of the range
+   * @param to     the first minute after the range
+   * @return the number of minutes only occurrences make busy
+   */
+  long countBusyMinutesBeyond(BusyBitmap stored, long from, long to) {
+    if (rules.isEmpty() || from >= to) {
+      return 0;
+    }
+    if (!disjoint) {
+      return countMergedMinutesBeyond(stored, from, to);
+    }
+    LocalDateTime start = EpochMinutes.toDateTime(from);
+    LocalDateTime end = EpochMinutes.toDateTime(to);
+    long count = 0;
+    for (SeriesRule rule : rules.values()) {
+      count += rule.countBusyMinutes(start, end);
+    }
+    long firstDay = Math.floorDiv(from, MINUTES_PER_DAY);
+    long lastDay = Math.floorDiv(to - 1, MINUTES_PER_DAY);
+    if (lastDay - firstDay < stored.dayCount()) {
+      for (long day = firstDay; day <= lastDay; day++) {
+        count -= countStoredOn(stored, day, from, to);
+      }
+    } else {
+      for (long day : stored.days()) {
+        if (day >= firstDay && day <= lastDay) {
+          count -= countStoredOn(stored, day, from, to);
+        }
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Counts the stored busy minutes within the range that fall inside the occurrences of a day.
+   */
+  private long countStoredOn(BusyBitmap stored, long day, long from, long to) {
+    LocalDate date = LocalDate.ofEpochDay(day);
+    long count = 0;
+    for (SeriesRule rule : byWeekday[date.getDayOfWeek().getValue() - 1]) {
+      if (rule.occursOn(date)) {
+        long midnight = day * MINUTES_PER_DAY;
+        long first = Math.max(from, midnight + rule.firstMinuteOfDay());
+        long last = Math.min(to, midnight + rule.endMinuteOfDay());
+        if (first < last) {
+          count += stored.countCovered(first, last);
+        }
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Counts the minutes only occurrences make busy by merging their minutes into runs.
+   */
+  private long countMergedMinutesBeyond(BusyBitmap stored, long from, long to) {
+    List<long[]> blocks = new ArrayList<>();
+    LocalDateTime start = EpochMinutes.toDateTime(from);
+    LocalDateTime end = EpochMinutes.toDateTime(to);
+    for (SeriesRule rule : rules.values()) {
+      rule.addBusyMinutes(start, end, blocks);
+    }
+    blocks.sort(Comparator.comparingLong(block -> block[0]));
+    long count = 0;
+    long runStart = 0;
+    long runEnd = Long.MIN_VALUE;
+    for (long[] block : blocks) {
+      if (block[0] > runEnd) {
+        if (runEnd > runStart) {
+          count += runEnd - runStart - stored.countCovered(runStart, runEnd);
+        }
+        runStart = block[0];
+        runEnd = block[1];
+      } else {
+        runEnd = Math.max(runEnd, block[1]);
+      }
+    }
+    if (runEnd > runStart) {
+      count += runEnd - runStart - stored.countCovered(runStart, runEnd);
+    }
+    return count;
+  }
+
+  /**
+   * Gets the occurrences with a subject and start time.
+   *
+   * @param subject the subject
+   * @param start   the start time
+   * @return the matching occurrences
+   */
+  List<IEvent> find(String subject, LocalDateTime start) {
+    List<IEvent> found = new ArrayList<>(1);
+    for (SeriesRule rule : withSubject(subject)) {
+      IEvent occurrence = rule.occursOn(start.toLocalDate())
+              ? rule.occurrenceOn(start.toLocalDate()) : null;
+      if (occurrence != null && occurrence.getSubject().equals(subject)
+              && occurrence.getStart().equals(start)) {
+        found.add(occurrence);
+      }
+    }
+    return found;
+  }
+
+  /**
+   * Merges the occurrences that end after from and start before to into stored events.
+   *
+   * @param stored the stored events that overlap the range
+   * @param from   the start of the range
+   * @param to     the end of the range
+   * @return the stored events alone if no occurrence overlaps, otherwise all of them sorted
+   *      by start, end and subject
+   */
+  List<IEvent> mergeOverlapping(List<IEvent> stored, LocalDateTime from, LocalDateTime to) {
+    if (rules.isEmpty()) {
+      return stored;
+    }
+    List<IEvent> result = new ArrayList<>(stored);
+    for (SeriesRule rule : rules.values()) {
+      rule.addOverlapping(from, to, result);
+    }
+    if (result.size() > stored.size()) {
+      result.sort(EventKey.ORDER);
+    }
+    return result;
+  }
+
+  /**
+   * Merges the occurrences on a date into the stored events that start that day.
+   *
+   * @param stored the stored events that start on the date
+   * @param date   the date
+   * @return the stored events alone if no occurrence falls on the date, otherwise all of them
+   *      sorted by start, end and subject
+   */
+  List<IEvent> mergeOnDate(List<IEvent> stored, LocalDate date) {
+    if (rules.isEmpty()) {
+      return stored;
+    }
+    List<IEvent> result = new ArrayList<>(stored);
+    for (SeriesRule rule : rules.values()) {
+      if (rule.occursOn(date)) {
+        result.add(rule.occurrenceOn(date));
+      }
+    }
+    if (result.size() > stored.size()) {
+      result.sort(EventKey.ORDER);
+    }
+    return result;
+  }
+
+  /**
+   * Merges a page of stored events with the first occurrences of every rule that pass the
+   * same lower bound, keeping the first pageSize of them.
+   *
+   * @param stored     the first pageSize stored events that pass the bound, in order
+   * @param lowerBound true for events at or after the first one wanted, monotone in time
+   * @param fromDate   a date no later than the first event wanted
+   * @param pageSize   the largest number of events to return
+   * @return the merged page, sorted by start, end and subject
+   */
+  List<IEvent> mergePage(List<IEvent> stored, Predicate<IEvent> lowerBound, LocalDate fromDate,
+                         int pageSize) {
+    if (rules.isEmpty()) {
+      return stored;
+    }
+    List<IEvent> result = new ArrayList<>(stored);
+    for (SeriesRule rule : rules.values()) {
+      rule.addFirstMatching(lowerBound, fromDate, pageSize, result);
+    }
+    result.sort(EventKey.ORDER);
+    return result.size() > pageSize ? new ArrayList<>(result.subList(0, pageSize)) : result;
+  }
+
+  /**
+   * Appends every occurrence of every rule to the stored events.
+   *
+   * @param stored all stored events
+   * @return the stored events followed by every occurrence, series by series
+   */
+  List<IEvent> mergeAll(List<IEvent> stored) {
+    if (rules.isEmpty()) {
+      return stored;
+    }
+    List<IEvent> result = new ArrayList<>(stored);
+    for (SeriesRule rule : rules.values()) {
+      rule.addAll(result);
+    }
+    return result;
+  }
+
+  /**
+   * Gets every occurrence of a series kept as a rule.
+   *
+   * @param seriesId the series
+   * @return the occurrences in date order, empty if the series is not kept as a rule
+   */
+  List<IEvent> occurrencesOf(UUID seriesId) {
+    List<IEvent> result = new ArrayList<>();
+    SeriesRule rule = rules.get(seriesId);
+    if (rule != null) {
+      rule.addAll(result);
+    }
+    return result;
+  }
+
+  /**
+   * Gets these rules with every occurrence that ends after from and starts before to taken out.
+   *
+   * @param from the start of the range
+   * @param to   the end of the range
+   * @return the new set of rules
+   */
+  SeriesRules withoutOverlapping(LocalDateTime from, LocalDateTime to) {
+    SeriesRules next = this;
+    for (SeriesRule rule : rules.values()) {
+      SeriesRule trimmed = rule.withoutOverlapping(from, to);
+      if (trimmed != rule) {
+        next = next.with(trimmed);
+      }
+    }
+    return next;
+  }
+
+  /**
+   * Counts the occurrences that end after from and start before to.
+   *
+   * @param from the start of the range
+   * @param to   the end of the range
+   * @return the number of occurrences in the range
+   */
+  int countOverlapping(LocalDateTime from, LocalDateTime to) {
+    int count = 0;
+    for (SeriesRule rule : rules.values()) {
+      count += rule.countOverlapping(from, to);
+    }
+    return count;
+  }
+}
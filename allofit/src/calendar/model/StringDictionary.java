@@ -0,0 +1,86 @@
+package calendar.model;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Keeps one shared copy of each distinct string a calendar stores, so events that repeat a
+ * subject, location or description all point at the same String.
+ * Entries are held weakly: once no event uses a string any more, the garbage collector may
+ * drop it from the dictionary.
+ * Lookups are counted so the dictionary's hit rate can be observed.
+ */
+public final class StringDictionary {
+  private final Map<String, WeakReference<String>> canonical;
+  private long lookups;
+  private long hits;
+
+  /**
+   * Makes an empty dictionary.
+   */
+  StringDictionary() {
+    this.canonical = new WeakHashMap<>();
+    this.lookups = 0;
+    this.hits = 0;
+  }
+
+  /**
+   * Gets the shared copy of a string, making the given string the shared copy if the
+   * dictionary has none.
+   *
+   * @param value the string, may be null
+   * @return an equal string that is shared by every caller, or null if value was null
+   */
+  synchronized String canonicalize(String value) {
+    if (value == null) {
+      return null;
+    }
+    lookups++;
+    WeakReference<String> ref = canonical.get(value);
+    String shared = ref == null ? null : ref.get();
+    if (shared != null) {
+      hits++;
+      return shared;
+    }
+    canonical.put(value, new WeakReference<>(value));
+    return value;
+  }
+
+  /**
+   * Gets the number of distinct strings currently held.
+   * Strings no longer used by any event may still be counted until they are collected.
+   *
+   * @return the number of entries
+   */
+  public synchronized int size() {
+    return canonical.size();
+  }
+
+  /**
+   * Gets the number of strings looked up so far.
+   *
+   * @return the number of lookups
+   */
+  public synchronized long getLookups() {
+    return lookups;
+  }
+
+  /**
+   * Gets the number of lookups that found an existing shared copy.
+   *
+   * @return the number of hits
+   */
+  public synchronized long getHits() {
+    return hits;
+  }
+
+  /**
+   * Gets the fraction of lookups that found an existing shared copy.
+   *
+   * @return the hit rate between 0 and 1, or 0 if nothing has been looked up
+   */
+  public synchronized double getHitRate() {
+    return lookups == 0 ? 0 : (double) hits / lookups;
+  }
+}
@@ -0,0 +1,67 @@
+package calendar.model;
+
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+/**
+ * A span of time from a start up to, but not including, an end.
+ */
+public final class TimeInterval {
+  private final LocalDateTime start;
+  private final LocalDateTime end;
+
+  /**
+   * Makes an interval.
+   *
+   * @param start the first moment of the interval
+   * @param end   the first moment after the interval
+   * @throws IllegalArgumentException if end is before start
+   */
+  public TimeInterval(LocalDateTime start, LocalDateTime end) {
+    if (end.isBefore(start)) {
+      throw new IllegalArgumentException("Interval end must not be before its start.");
+    }
+    this.start = start;
+    this.end = end;
+  }
+
+  /**
+   * Gets the first moment of the interval.
+   *
+   * @return the start
+   */
+  public LocalDateTime getStart() {
+    return start;
+  }
+
+  /**
+   * Gets the first moment after the interval.
+   *
+   * @return the end
+   */
+  public LocalDateTime getEnd() {
+    return end;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof TimeInterval)) {
+      return false;
+    }
+    TimeInterval that = (TimeInterval) o;
+    return start.equals(that.start) && end.equals(that.end);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(start, end);
+  }
+
+  @Override
+  public String toString() {
+    return start + " to " + end;
+  }
+}
@@ -0,0 +1,68 @@
+package calendar.model;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * The changes made to a calendar since a transaction began, kept as the inverse operations
+ * that undo them: an added event is undone by removing it, a removed one by adding it back.
+ * It holds one reference per change, so a transaction costs memory in proportion to what it
+ * changes rather than to the size of the calendar.
+ */
+final class UndoJournal {
+  private final List<IEvent> events;
+  private final BitSet added;
+
+  /**
+   * Makes an empty journal.
+   */
+  UndoJournal() {
+    this.events = new ArrayList<>();
+    this.added = new BitSet();
+  }
+
+  /**
+   * Records that an event was added.
+   *
+   * @param event the added event
+   */
+  void recordAdded(IEvent event) {
+    added.set(events.size());
+    events.add(event);
+  }
+
+  /**
+   * Records that an event was removed.
+   *
+   * @param event the removed event
+   */
+  void recordRemoved(IEvent event) {
+    events.add(event);
+  }
+
+  /**
+   * Gets the number of changes recorded.
+   *
+   * @return the number of changes
+   */
+  int size() {
+    return events.size();
+  }
+
+  /**
+   * Undoes every recorded change on a calendar, latest first.
+   * The calendar must no longer be recording into this journal.
+   *
+   * @param calendar the calendar the changes were made to
+   */
+  void undo(ICalendarModel calendar) {
+    for (int i = events.size() - 1; i >= 0; i--) {
+      if (added.get(i)) {
+        calendar.removeEvent(events.get(i));
+      } else {
+        calendar.addEvent(events.get(i));
+      }
+    }
+  }
+}
@@ -0,0 +1,108 @@
+package calendar.model;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.Set;
+
+/**
+ * Arithmetic on sets of weekdays kept as seven-bit masks, bit 0 for Monday through bit 6 for
+ * Sunday. Finding the next matching day, the n-th matching day and the number of matching
+ * days in a range all take constant time, whatever the distance between the dates.
+ */
+final class WeekdayMask {
+  private static final int ALL_DAYS = 0x7F;
+
+  private WeekdayMask() {
+  }
+
+  /**
+   * Gets the mask of a set of weekdays.
+   *
+   * @param days the weekdays
+   * @return the mask
+   */
+  static int of(Set<DayOfWeek> days) {
+    int mask = 0;
+    for (DayOfWeek day : days) {
+      mask |= 1 << (day.getValue() - 1);
+    }
+    return mask;
+  }
+
+  /**
+   * Checks whether a date falls on one of the weekdays.
+   *
+   * @param mask the weekdays
+   * @param date the date
+   * @return true if the date's weekday is in the mask
+   */
+  static boolean contains(int mask, LocalDate date) {
+    return (mask & (1 << dayIndex(date.toEpochDay()))) != 0;
+  }
+
+  /**
+   * Gets the first date on or after a date that falls on one of the weekdays.
+   *
+   * @param mask the weekdays, not empty
+   * @param date the date to start from
+   * @return the matching date, at most six days later
+   */
+  static LocalDate next(int mask, LocalDate date) {
+    long day = date.toEpochDay();
+    int ahead = Integer.numberOfTrailingZeros(rotate(mask, dayIndex(day)));
+    return ahead == 0 ? date : LocalDate.ofEpochDay(day + ahead);
+  }
+
+  /**
+   * Gets the n-th date on or after a date that falls on one of the weekdays. Whole weeks are
+   * skipped at once, so only the days of the last, partial week are stepped through.
+   *
+   * @param mask the weekdays, not empty
+   * @param from the date to start from, counted if it matches
+   * @param n    which matching date to get, 1 for the first
+   * @return the matching date
+   */
+  static LocalDate nth(int mask, LocalDate from, long n) {
+    int perWeek = Integer.bitCount(mask);
+    long weeks = (n - 1) / perWeek;
+    long rest = (n - 1) % perWeek;
+    LocalDate date = next(mask, from).plusDays(7 * weeks);
+    for (long i = 0; i < rest; i++) {
+      date = next(mask, date.plusDays(1));
+    }
+    return date;
+  }
+
+  /**
+   * Counts the dates between two dates, both included, that fall on one of the weekdays.
+   *
+   * @param mask the weekdays
+   * @param from the first date
+   * @param to   the last date
+   * @return the number of matching dates, 0 if to is before from
+   */
+  static long count(int mask, LocalDate from, LocalDate to) {
+    long first = from.toEpochDay();
+    long days = to.toEpochDay() - first + 1;
+    if (days <= 0) {
+      return 0;
+    }
+    int partial = (int) (days % 7);
+    int window = rotate(mask, dayIndex(first)) & ((1 << partial) - 1);
+    return days / 7 * Integer.bitCount(mask) + Integer.bitCount(window);
+  }
+
+  /**
+   * Gets the weekday of an epoch day, 0 for Monday. The epoch, 1970-01-01, was a Thursday.
+   */
+  private static int dayIndex(long epochDay) {
+    return (int) Math.floorMod(epochDay + 3, 7L);
+  }
+
+  /**
+   * Turns the mask so that bit 0 stands for the given weekday.
+   */
+  private static int rotate(int mask, int dayIndex) {
+    return ((mask >>> dayIndex) | (mask << (7 - dayIndex))) & ALL_DAYS;
+  }
+}
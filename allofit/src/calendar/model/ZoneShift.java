@@ -0,0 +1,86 @@
+package calendar.model;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+/**
+ * Moves wall-clock times from one timezone to the same instants in another, giving the same
+ * answer as {@code time.atZone(from).withZoneSameInstant(to).toLocalDateTime()} without
+ * building two zoned date/times per call.
+ * Offsets come from the shared per-year transition tables of {@link ZoneTransitions}; each side
+ * keeps the table its last lookup used, so a run of times within one year costs two binary
+ * searches over a few longs each and no lookups of the zone's rules. The remembered tables
+ * never change, so a shift can be shared between threads.
+ */
+public final class ZoneShift {
+  private final ZoneTransitions from;
+  private final ZoneTransitions to;
+  private final boolean identity;
+  private ZoneTransitions.Year fromYear;
+  private ZoneTransitions.Year toYear;
+
+  /**
+   * Makes a shift between two zones. A shift from a zone to itself still moves times that
+   * fall in a gap to after it, as the zoned conversion does, unless the zone never changes
+   * its offset.
+   *
+   * @param from the zone the times are on
+   * @param to   the zone to show them in
+   */
+  public ZoneShift(ZoneId from, ZoneId to) {
+    this.from = ZoneTransitions.of(from);
+    this.to = ZoneTransitions.of(to);
+    this.identity = from.equals(to) && from.getRules().isFixedOffset();
+  }
+
+  /**
+   * Gets the time in the target zone at the same instant as a time in the source zone.
+   *
+   * @param time the time on the source zone's clock
+   * @return the time on the target zone's clock
+   */
+  public LocalDateTime apply(LocalDateTime time) {
+    if (identity) {
+      return time;
+    }
+    long shifted = applyToSeconds(time.toEpochSecond(ZoneOffset.UTC));
+    return LocalDateTime.ofEpochSecond(shifted, time.getNano(), ZoneOffset.UTC);
+  }
+
+  /**
+   * Moves a clock time counted in whole seconds, without building any objects once the tables
+   * for its year are loaded.
+   *
+   * @param local the source clock time, in seconds since 1970-01-01T00:00
+   * @return the target clock time, in seconds since 1970-01-01T00:00
+   */
+  public long applyToSeconds(long local) {
+    if (identity) {
+      return local;
+    }
+    ZoneTransitions.Year source = fromYear;
+    if (source == null || !source.covers(local)) {
+      source = from.yearOf(local);
+      fromYear = source;
+    }
+    long instant = local - source.offsetAtLocal(local);
+    ZoneTransitions.Year target = toYear;
+    if (target == null || !target.covers(instant)) {
+      target = to.yearOf(instant);
+      toYear = target;
+    }
+    return instant + target.offsetAt(instant);
+  }
+
+  /**
+   * Moves a clock time counted in whole minutes, as the compact stores keep them.
+   *
+   * @param local the source clock time, in minutes since 1970-01-01T00:00
+   * @return the target clock time, in minutes since 1970-01-01T00:00, rounded down for the
+   *      rare offset that is not a whole number of minutes
+   */
+  public long applyToMinutes(long local) {
+    return Math.floorDiv(applyToSeconds(local * 60), 60);
+  }
+}
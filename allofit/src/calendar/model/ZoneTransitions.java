@@ -0,0 +1,170 @@
+package calendar.model;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The offset transitions of a timezone, worked out once per year and kept as primitive arrays,
+ * so converting between a clock time and an instant is a binary search over a handful of longs
+ * instead of a walk through the zone's rules.
+ * Times are counted in seconds since 1970-01-01T00:00, on the zone's clock for clock times and
+ * at UTC for instants. Tables are shared by every caller and never change once built.
+ */
+final class ZoneTransitions {
+  private static final Map<ZoneId, ZoneTransitions> ZONES = new ConcurrentHashMap<>();
+  private static final long SECONDS_PER_DAY = 86_400;
+
+  /**
+   * How far past either end of its year a table looks for transitions, wide enough that a
+   * clock time inside the year, at any offset, falls between transitions the table holds.
+   */
+  private static final long MARGIN = 2 * SECONDS_PER_DAY;
+
+  private final ZoneRules rules;
+  private final Map<Integer, Year> years;
+
+  private ZoneTransitions(ZoneId zone) {
+    this.rules = zone.getRules();
+    this.years = new ConcurrentHashMap<>();
+  }
+
+  /**
+   * Gets the shared tables of a zone.
+   *
+   * @param zone the zone
+   * @return its tables
+   */
+  static ZoneTransitions of(ZoneId zone) {
+    return ZONES.computeIfAbsent(zone, ZoneTransitions::new);
+  }
+
+  /**
+   * Gets the table for the year a count of seconds falls in, whether the count is a clock
+   * time or an instant.
+   *
+   * @param seconds the seconds since 1970-01-01T00:00
+   * @return the table covering that second
+   */
+  Year yearOf(long seconds) {
+    int year = LocalDate.ofEpochDay(Math.floorDiv(seconds, SECONDS_PER_DAY)).getYear();
+    return years.computeIfAbsent(year, y -> new Year(rules, y));
+  }
+
+  /**
+   * The transitions of one zone around one year: the instant each offset takes effect from
+   * and the offset itself, in order.
+   */
+  static final class Year {
+    private final long low;
+    private final long high;
+    private final long[] from;
+    private final int[] offsets;
+
+    private Year(ZoneRules rules, int year) {
+      this.low = LocalDate.of(year, 1, 1).toEpochDay() * SECONDS_PER_DAY;
+      this.high = LocalDate.of(year + 1, 1, 1).toEpochDay() * SECONDS_PER_DAY;
+      long first = low - MARGIN;
+      long last = high + MARGIN;
+      long[] starts = new long[4];
+      int[] values = new int[4];
+      starts[0] = first;
+      values[0] = rules.getOffset(Instant.ofEpochSecond(first)).getTotalSeconds();
+      int count = 1;
+      ZoneOffsetTransition next = rules.nextTransition(Instant.ofEpochSecond(first));
+      while (next != null && next.toEpochSecond() < last) {
+        if (count == starts.length) {
+          starts = Arrays.copyOf(starts, count * 2);
+          values = Arrays.copyOf(values, count * 2);
+        }
+        starts[count] = next.toEpochSecond();
+        values[count] = next.getOffsetAfter().getTotalSeconds();
+        count++;
+        next = rules.nextTransition(next.getInstant());
+      }
+      this.from = Arrays.copyOf(starts, count);
+      this.offsets = Arrays.copyOf(values, count);
+    }
+
+    /**
+     * Checks whether a count of seconds falls in this table's year.
+     *
+     * @param seconds the seconds since 1970-01-01T00:00
+     * @return true if this table answers for it
+     */
+    boolean covers(long seconds) {
+      return seconds >= low && seconds < high;
+    }
+
+    /**
+     * Gets the offset the zone shows at an instant.
+     *
+     * @param instant the instant, in seconds since the epoch
+     * @return the offset in seconds
+     */
+    int offsetAt(long instant) {
+      int at = Arrays.binarySearch(from, instant);
+      return offsets[at >= 0 ? at : -at - 2];
+    }
+
+    /**
+     * Gets the offset that turns a clock time into an instant. A time in an overlap takes the
+     * earlier offset and a time in a gap the offset from before the gap, so the instant is the
+     * one {@link java.time.LocalDateTime#atZone} picks.
+     *
+     * @param local the clock time, in seconds since 1970-01-01T00:00
+     * @return the offset in seconds
+     */
+    int offsetAtLocal(long local) {
+      int lowIndex = 0;
+      int highIndex = from.length - 1;
+      while (lowIndex < highIndex) {
+        int middle = (lowIndex + highIndex + 1) >>> 1;
+        if (from[middle] + offsets[middle] <= local) {
+          lowIndex = middle;
+        } else {
+          highIndex = middle - 1;
+        }
+      }
+      int at = lowIndex;
+      if (at > 0 && local < from[at] + offsets[at - 1]) {
+        return offsets[at - 1];
+      }
+      return offsets[at];
+    }
+  }
+
+  /**
+   * Gets the offset that turns a clock time into an instant, looking the year up each time.
+   *
+   * @param zone  the zone
+   * @param local the clock time, in seconds since 1970-01-01T00:00
+   * @return the offset in seconds
+   */
+  static int offsetAtLocal(ZoneId zone, long local) {
+    if (zone instanceof ZoneOffset) {
+      return ((ZoneOffset) zone).getTotalSeconds();
+    }
+    return of(zone).yearOf(local).offsetAtLocal(local);
+  }
+
+  /**
+   * Gets the offset a zone shows at an instant, looking the year up each time.
+   *
+   * @param zone    the zone
+   * @param instant the instant, in seconds since the epoch
+   * @return the offset in seconds
+   */
+  static int offsetAt(ZoneId zone, long instant) {
+    if (zone instanceof ZoneOffset) {
+      return ((ZoneOffset) zone).getTotalSeconds();
+    }
+    return of(zone).yearOf(instant).offsetAt(instant);
+  }
+}
@@ -37,10 +37,25 @@ public class CalendarView implements ICalendarView {
     System.out.println("  edit events <property> <subject> from <start> with <newValue>");
     System.out.println("  edit series <property> <subject> from <start> with <newValue>");
 
+    System.out.println("\nDELETE EVENTS:");
+    System.out.println("  delete events between <dateTime> and <dateTime>");
+    System.out.println("  delete series <subject> from <dateTime>");
+
+    System.out.println("\nTRANSACTIONS:");
+    System.out.println("  begin");
+    System.out.println("  commit");
+    System.out.println("  rollback");
+
+    System.out.println("\nCALENDARS:");
+    System.out.println("  create calendar --name <name> --timezone <zone> "
+            + "[--backend standard|concurrent|columnar|off-heap]");
+
     System.out.println("\nQUERIES:");
     System.out.println("  print events on <date>");
     System.out.println("  print events from <start> to <end>");
     System.out.println("  show status on <dateTime>");
+    System.out.println("  find free slots --calendars <a,b> --from <dateTime> --to <dateTime> "
+            + "--duration <minutes> --hours <HH:mm-HH:mm> [--count <n>] [--timezone <zone>]");
 
     System.out.println("\nOTHER:");
     System.out.println("  help - Show this help message");
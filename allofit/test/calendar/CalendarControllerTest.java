@@ -7,21 +7,30 @@ import org.junit.After;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertNotNull;
 
 import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
 import java.io.PrintStream;
+import java.nio.file.Files;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.LocalTime;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.UUID;
 
 import calendar.controller.CalendarController;
 import calendar.model.CalendarLibrary;
 import calendar.model.Event;
 import calendar.model.ICalendarModel;
 import calendar.model.IEvent;
+import calendar.model.TimeInterval;
 import calendar.view.CalendarView;
 
 /**
@@ -289,6 +298,7 @@ public class CalendarControllerTest {
             + " with \"Room101\"");
     String output = outContent.toString();
     assertTrue(output.contains("Error: Event not found."));
+    assertFalse(output.contains("Error: Error:"));
   }
 
 
@@ -381,11 +391,141 @@ public class CalendarControllerTest {
     assertEquals(ZoneId.of("Asia/Tokyo"), activeModel.getTimezone());
   }
 
+  @Test
+  public void testFindFreeSlotsAcrossCalendars() {
+    library.createCalendar("London", "Europe/London");
+    controller.processCommand("create event \"Standup\" from 2025-06-02T09:00 to 2025-06-02T10:00");
+    library.useCalendar("London");
+    controller.processCommand("create event \"Call\" from 2025-06-02T16:00 to 2025-06-02T17:30");
+    library.useCalendar("default");
+    outContent.reset();
 
+    controller.processCommand("find free slots --calendars default,London "
+            + "--from 2025-06-02T00:00 --to 2025-06-03T23:59 --duration 60 "
+            + "--hours 09:00-12:00 --count 3");
+    String output = outContent.toString();
+    assertTrue(output.contains("2025-06-02 10:00 - 11:00"));
+    assertTrue(output.contains("2025-06-03 09:00 - 12:00"));
+    assertFalse(output.contains("2025-06-02 09:00"));
+  }
 
+  @Test
+  public void testFindFreeSlotsReportsUnknownTimezone() {
+    controller.processCommand("find free slots --calendars default "
+            + "--from 2025-06-02T00:00 --to 2025-06-03T23:59 --duration 60 "
+            + "--hours 09:00-12:00 --timezone Mars/Base");
+    String output = outContent.toString();
+    assertTrue(output.contains("Error: Invalid value in find free slots"));
+    assertTrue(output.contains("Mars/Base"));
+  }
 
+  @Test
+  public void testFindFreeSlotsRespectsMinimumLength() {
+    List<String> calendars = List.of("default");
+    library.getActiveCalendar().addEvent(new Event("A", LocalDateTime.of(2025, 6, 2, 9, 30),
+            LocalDateTime.of(2025, 6, 2, 10, 0)));
+    library.getActiveCalendar().addEvent(new Event("B", LocalDateTime.of(2025, 6, 2, 10, 20),
+            LocalDateTime.of(2025, 6, 2, 11, 0)));
+
+    assertEquals(List.of(
+            new TimeInterval(LocalDateTime.of(2025, 6, 2, 9, 0),
+                    LocalDateTime.of(2025, 6, 2, 9, 30)),
+            new TimeInterval(LocalDateTime.of(2025, 6, 2, 11, 0),
+                    LocalDateTime.of(2025, 6, 2, 17, 0))),
+            library.findFreeSlots(calendars, LocalDateTime.of(2025, 6, 2, 0, 0),
+                    LocalDateTime.of(2025, 6, 2, 23, 0), ZoneId.of("America/New_York"),
+                    LocalTime.of(9, 0), LocalTime.of(17, 0), Duration.ofMinutes(30), 5));
+  }
 
+  @Test
+  public void testDeleteEventsBetweenAndSeries() {
+    UUID seriesId = UUID.randomUUID();
+    for (int i = 0; i < 5; i++) {
+      LocalDateTime start = LocalDateTime.of(2025, 6, 2, 9, 0).plusDays(i);
+      Event occurrence = new Event("Standup", start, start.plusMinutes(15));
+      occurrence.setSeriesId(seriesId);
+      library.getActiveCalendar().addEvent(occurrence);
+    }
+    controller.processCommand("create event \"Lunch\" from 2025-06-10T12:00 to 2025-06-10T13:00");
+    controller.processCommand("create event \"Review\" from 2025-06-11T12:00 to 2025-06-11T13:00");
+    ICalendarModel calendar = library.getActiveCalendar();
+    assertEquals(7, calendar.getEvents().size());
 
+    outContent.reset();
+    controller.processCommand("delete events between 2025-06-10T12:30 and 2025-06-11T12:00");
+    assertTrue(outContent.toString().contains("Deleted 1 event(s)."));
+    assertNull(calendar.findEvent("Lunch", LocalDateTime.of(2025, 6, 10, 12, 0)));
 
+    outContent.reset();
+    controller.processCommand("delete series \"Standup\" from 2025-06-04T09:00");
+    assertTrue(outContent.toString().contains("Deleted 5 event(s)."));
+    assertEquals(1, calendar.getEvents().size());
+  }
 
+  @Test
+  public void testBeginAndRollbackCommands() {
+    controller.processCommand("create event \"Keep\" from 2025-06-02T09:00 to 2025-06-02T10:00");
+    controller.processCommand("begin");
+    controller.processCommand("create event \"Temp\" from 2025-06-03T09:00 to 2025-06-03T10:00");
+    controller.processCommand("delete events between 2025-06-02T00:00 and 2025-06-02T23:00");
+    assertEquals(1, library.getActiveCalendar().getEvents().size());
+    controller.processCommand("rollback");
+
+    ICalendarModel calendar = library.getActiveCalendar();
+    assertEquals(1, calendar.getEvents().size());
+    assertEquals("Keep", calendar.getEvents().get(0).getSubject());
+    assertTrue(outContent.toString().contains("Transaction rolled back."));
+
+    controller.processCommand("begin");
+    controller.processCommand("create event \"Temp\" from 2025-06-03T09:00 to 2025-06-03T10:00");
+    controller.processCommand("commit");
+    assertEquals(2, calendar.getEvents().size());
+    assertFalse(library.isInTransaction());
+  }
+
+  @Test
+  public void testHeadlessRollsBackWhenACommandReportsAnError() throws IOException {
+    controller.processCommand("create event \"Keep\" from 2025-06-02T09:00 to 2025-06-02T10:00");
+    File script = File.createTempFile("transaction", ".txt");
+    script.deleteOnExit();
+    Files.write(script.toPath(), List.of(
+            "begin",
+            "create event \"Temp\" from 2025-06-03T09:00 to 2025-06-03T10:00",
+            "delete series Nope from 2025-06-02T09:00",
+            "delete events between 2025-06-02T00:00 and 2025-06-02T23:00",
+            "commit",
+            "begin",
+            "delete events between 2025-06-02T00:00 and tomorrow",
+            "commit",
+            "exit"));
+    outContent.reset();
+    controller.runHeadless(script.getPath());
+
+    String output = outContent.toString();
+    assertTrue(output.contains("Error: Event not found."));
+    assertTrue(output.contains("Error: Invalid date/time format."));
+    assertFalse(output.contains("Transaction committed."));
+    assertFalse(library.isInTransaction());
+    ICalendarModel calendar = library.getActiveCalendar();
+    assertEquals(1, calendar.getEvents().size());
+    assertEquals("Keep", calendar.getEvents().get(0).getSubject());
+  }
+
+  @Test
+  public void testControllersWithTheirOwnSessionsDoNotShareTheActiveCalendar() {
+    library.createCalendar("Work", "America/New_York");
+    CalendarController other = new CalendarController(library, library.openSession(),
+            new CalendarView());
+    other.processCommand("use calendar --name Work");
+    other.processCommand("create event Review from 2025-06-02T10:00 to 2025-06-02T11:00");
+    controller.processCommand("create event Lunch from 2025-06-02T12:00 to 2025-06-02T13:00");
+
+    assertEquals("default", library.getCurrentCalendarName());
+    List<IEvent> onDefault = library.getActiveCalendar().getEvents();
+    assertEquals(1, onDefault.size());
+    assertEquals("Lunch", onDefault.get(0).getSubject());
+    library.useCalendar("Work");
+    assertNotNull(library.getActiveCalendar().findEvent("Review",
+            LocalDateTime.of(2025, 6, 2, 10, 0)));
+  }
 }
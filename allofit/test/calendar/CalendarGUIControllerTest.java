@@ -22,6 +22,7 @@ public class CalendarGUIControllerTest {
 
   private ICalendarGUIController controller;
   private CalendarLibrary library;
+  private List<IEvent> shown;
 
   @Before
   public void setUp() {
@@ -38,7 +39,7 @@ public class CalendarGUIControllerTest {
 
       @Override
       public void showEvents(List<IEvent> events) {
-        //dummy stuff
+        shown = events;
       }
 
       @Override
@@ -78,4 +79,24 @@ public class CalendarGUIControllerTest {
     assertEquals(LocalDateTime.of(2025, 7, 1, 12, 0),
             updated.getStart());
   }
+
+  @Test
+  public void testLoadNextPage() {
+    for (int i = 0; i < 25; i++) {
+      LocalDateTime start = LocalDateTime.of(2025, 7, 1, 9, 0).plusDays(i);
+      library.getActiveCalendar().addEvent(new Event("Day " + i, start, start.plusHours(1)));
+    }
+
+    controller.loadEventsFromDate("2025-07-01");
+    assertEquals(10, shown.size());
+    assertEquals("Day 0", shown.get(0).getSubject());
+
+    controller.loadNextPage();
+    assertEquals(10, shown.size());
+    assertEquals("Day 10", shown.get(0).getSubject());
+
+    controller.loadNextPage();
+    assertEquals(5, shown.size());
+    assertEquals("Day 24", shown.get(4).getSubject());
+  }
 }
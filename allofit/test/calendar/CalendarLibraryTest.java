@@ -3,16 +3,22 @@ package calendar;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
 
+import calendar.model.CalendarBackend;
 import calendar.model.CalendarLibrary;
+import calendar.model.CalendarSession;
 import calendar.model.Event;
+import calendar.model.ICalendarModel;
 import calendar.model.IEvent;
+import calendar.model.TimeInterval;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
@@ -345,4 +351,238 @@ public class CalendarLibraryTest {
     assertEquals("Work", library.getCurrentCalendarName());
     assertEquals(ZoneId.of("Europe/Paris"), library.getActiveTimezone());
   }
+
+  /**
+   * Tests that busy blocks from calendars in different timezones are merged as instants.
+   */
+  @Test
+  public void testBusyIntervalsMergeAcrossTimezones() {
+    createAndUse("NY", "America/New_York");
+    lib.getActiveCalendar().addEvent(new Event("Standup",
+            LocalDateTime.of(2025, 6, 2, 9, 0), LocalDateTime.of(2025, 6, 2, 10, 0)));
+    lib.getActiveCalendar().addEvent(new Event("Review",
+            LocalDateTime.of(2025, 6, 2, 13, 0), LocalDateTime.of(2025, 6, 2, 14, 0)));
+    createAndUse("London", "Europe/London");
+    lib.getActiveCalendar().addEvent(new Event("Call",
+            LocalDateTime.of(2025, 6, 2, 14, 30), LocalDateTime.of(2025, 6, 2, 15, 30)));
+    lib.getActiveCalendar().addEvent(new Event("Late",
+            LocalDateTime.of(2025, 6, 2, 22, 0), LocalDateTime.of(2025, 6, 2, 23, 0)));
+
+    List<TimeInterval> busy = lib.getBusyIntervals(List.of("NY", "London"),
+            LocalDateTime.of(2025, 6, 2, 0, 0), LocalDateTime.of(2025, 6, 2, 17, 30),
+            ZoneId.of("America/New_York"));
+
+    assertEquals(List.of(
+            new TimeInterval(LocalDateTime.of(2025, 6, 2, 9, 0),
+                    LocalDateTime.of(2025, 6, 2, 10, 30)),
+            new TimeInterval(LocalDateTime.of(2025, 6, 2, 13, 0),
+                    LocalDateTime.of(2025, 6, 2, 14, 0)),
+            new TimeInterval(LocalDateTime.of(2025, 6, 2, 17, 0),
+                    LocalDateTime.of(2025, 6, 2, 17, 30))), busy);
+  }
+
+  /**
+   * Tests that asking for busy time of an unknown calendar throws.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testBusyIntervalsUnknownCalendarThrows() {
+    lib.getBusyIntervals(List.of("Missing"), LocalDateTime.of(2025, 6, 2, 0, 0),
+            LocalDateTime.of(2025, 6, 3, 0, 0), ZoneId.of("UTC"));
+  }
+
+  @Test
+  public void testConcurrentLibraryCopiesBothWaysWhileCalendarsAreWritten()
+          throws InterruptedException {
+    CalendarLibrary shared = new CalendarLibrary(true);
+    shared.createCalendar("A", "UTC");
+    shared.createCalendar("B", "UTC");
+    shared.useCalendar("A");
+    ICalendarModel a = shared.getActiveCalendar();
+    shared.useCalendar("B");
+    ICalendarModel b = shared.getActiveCalendar();
+    LocalDateTime june = LocalDateTime.of(2025, 6, 2, 9, 0);
+    LocalDateTime july = LocalDateTime.of(2025, 7, 1, 9, 0);
+    for (int i = 0; i < 20; i++) {
+      a.addEvent(new Event("June" + i, june.plusDays(i), june.plusDays(i).plusHours(1)));
+      b.addEvent(new Event("July" + i, july.plusDays(i), july.plusDays(i).plusHours(1)));
+    }
+
+    LocalDateTime january = LocalDateTime.of(2025, 1, 1, 8, 0);
+    int[] copied = new int[2];
+    List<Thread> threads = new ArrayList<>();
+    threads.add(new Thread(() -> {
+      for (int i = 0; i < 500; i++) {
+        a.addEvent(new Event("WA", january.plusHours(i), january.plusHours(i).plusMinutes(30)));
+      }
+    }));
+    threads.add(new Thread(() -> {
+      for (int i = 0; i < 500; i++) {
+        b.addEvent(new Event("WB", january.plusHours(i), january.plusHours(i).plusMinutes(30)));
+      }
+    }));
+    threads.add(new Thread(() -> {
+      for (int i = 0; i < 50; i++) {
+        copied[0] += shared.copyEventsBetweenDatesToCalendar("A", "B",
+                LocalDate.of(2025, 6, 1), LocalDate.of(2025, 6, 30), LocalDate.of(2025, 9, 1));
+      }
+    }));
+    threads.add(new Thread(() -> {
+      for (int i = 0; i < 50; i++) {
+        copied[1] += shared.copyEventsBetweenDatesToCalendar("B", "A",
+                LocalDate.of(2025, 7, 1), LocalDate.of(2025, 7, 31), LocalDate.of(2025, 10, 1));
+      }
+    }));
+    threads.add(new Thread(() -> {
+      for (int i = 0; i < 500; i++) {
+        a.getEventsWithinDates(january, january.plusDays(30));
+        b.isBusy(january.plusMinutes(10));
+      }
+    }));
+    runAll(threads);
+
+    assertEquals(20, copied[0]);
+    assertEquals(20, copied[1]);
+    assertEquals(540, a.getEvents().size());
+    assertEquals(540, b.getEvents().size());
+  }
+
+  @Test
+  public void testConcurrentReadersOfAnOffHeapCalendarSeeWholeEvents()
+          throws InterruptedException {
+    CalendarLibrary shared = new CalendarLibrary(true);
+    shared.createCalendar("Big", "UTC", CalendarBackend.OFF_HEAP);
+    shared.useCalendar("Big");
+    ICalendarModel big = shared.getActiveCalendar();
+    LocalDateTime base = LocalDateTime.of(2025, 1, 1, 0, 0);
+    List<Thread> threads = new ArrayList<>();
+    threads.add(new Thread(() -> {
+      for (int i = 0; i < 2000; i++) {
+        LocalDateTime start = base.plusMinutes(7L * i);
+        big.addEvent(new Event("Event number " + i, start, start.plusMinutes(5), "Room " + i,
+                "Notes " + i, "public"));
+      }
+    }));
+    for (int r = 0; r < 3; r++) {
+      threads.add(new Thread(() -> {
+        for (int i = 0; i < 200; i++) {
+          for (IEvent event : big.getEventsWithinDates(base, base.plusDays(30))) {
+            long index = Duration.between(base, event.getStart()).toMinutes() / 7;
+            assertEquals("Event number " + index, event.getSubject());
+            assertEquals("Room " + index, event.getLocation());
+          }
+          big.isBusy(base.plusMinutes(7L * i + 1));
+        }
+      }));
+    }
+    runAll(threads);
+
+    assertEquals(2000, big.getEvents().size());
+  }
+
+  /**
+   * Runs threads to the end and fails if any of them threw.
+   */
+  private static void runAll(List<Thread> threads) throws InterruptedException {
+    AtomicReference<Throwable> failure = new AtomicReference<>();
+    for (Thread t : threads) {
+      t.setUncaughtExceptionHandler((thread, e) -> failure.compareAndSet(null, e));
+      t.start();
+    }
+    for (Thread t : threads) {
+      t.join(30_000);
+      assertFalse(t.isAlive());
+    }
+    if (failure.get() != null) {
+      throw new AssertionError("A worker thread failed", failure.get());
+    }
+  }
+
+  @Test
+  public void testLibraryRollbackEndsEveryCalendarWhenOneFails() {
+    LocalDateTime start = LocalDateTime.of(2025, 6, 2, 9, 0);
+    String[] names = {"A", "B", "C"};
+    List<ICalendarModel> calendars = new ArrayList<>();
+    for (String name : names) {
+      lib.createCalendar(name, "UTC");
+      lib.useCalendar(name);
+      calendars.add(lib.getActiveCalendar());
+    }
+    lib.beginTransaction();
+    for (ICalendarModel calendar : calendars) {
+      calendar.addEvent(new Event("Meeting", start, start.plusHours(1)));
+    }
+    calendars.get(1).commitTransaction();
+
+    boolean rejected = false;
+    try {
+      lib.rollbackTransaction();
+    } catch (IllegalArgumentException e) {
+      rejected = true;
+    }
+    assertTrue(rejected);
+    assertFalse(lib.isInTransaction());
+    for (ICalendarModel calendar : calendars) {
+      assertFalse(calendar.isInTransaction());
+    }
+    assertTrue(calendars.get(0).getEvents().isEmpty());
+    assertEquals(1, calendars.get(1).getEvents().size());
+    assertTrue(calendars.get(2).getEvents().isEmpty());
+  }
+
+  @Test
+  public void testSessionsKeepTheirOwnActiveCalendar() {
+    lib.createCalendar("Work", "America/New_York");
+    lib.createCalendar("Home", "Europe/London");
+    CalendarSession first = lib.openSession();
+    CalendarSession second = lib.openSession();
+    assertNull(first.getCurrentCalendarName());
+
+    first.useCalendar("Work");
+    second.useCalendar("Home");
+    lib.useCalendar("Home");
+    assertEquals("Work", first.getCurrentCalendarName());
+    assertEquals(ZoneId.of("America/New_York"), first.getActiveTimezone());
+    assertEquals("Home", second.getCurrentCalendarName());
+    assertEquals("Home", lib.getDefaultSession().getCurrentCalendarName());
+
+    LocalDateTime start = LocalDateTime.of(2025, 6, 2, 9, 0);
+    first.getActiveCalendar().addEvent(new Event("Standup", start, start.plusHours(1)));
+    assertTrue(second.getActiveCalendar().getEvents().isEmpty());
+    assertTrue(first.copyEventToCalendar("Standup", start, "Home", start));
+    assertEquals(1, second.getActiveCalendar().getEvents().size());
+
+    lib.editCalendar("Work", "name", "Office");
+    assertEquals("Office", first.getCurrentCalendarName());
+    assertEquals(1, first.getActiveCalendar().getEvents().size());
+
+    lib.deleteCalendar("Office");
+    assertNull(first.getCurrentCalendarName());
+    boolean rejected = false;
+    try {
+      first.getActiveCalendar();
+    } catch (IllegalStateException e) {
+      rejected = true;
+    }
+    assertTrue(rejected);
+    assertEquals("Home", second.getCurrentCalendarName());
+  }
+
+  @Test
+  public void testSessionTimezoneFollowsARename() {
+    lib.createCalendar("Work", "America/New_York");
+    lib.createCalendar("Home", "Europe/London");
+    CalendarSession session = lib.openSession();
+    session.useCalendar("Home");
+
+    lib.editCalendar("Home", "name", "House");
+    assertEquals(ZoneId.of("Europe/London"), session.getActiveTimezone());
+    lib.editCalendar("House", "timezone", "Asia/Tokyo");
+    assertEquals(ZoneId.of("Asia/Tokyo"), session.getActiveTimezone());
+
+    LocalDateTime start = LocalDateTime.of(2025, 6, 2, 9, 0);
+    lib.useCalendar("Work");
+    lib.getActiveCalendar().addEvent(new Event("Standup", start, start.plusHours(1)));
+    assertTrue(lib.getDefaultSession().copyEventToCalendar("Standup", start, "House", start));
+    assertEquals(1, session.getActiveCalendar().getEvents().size());
+  }
 }
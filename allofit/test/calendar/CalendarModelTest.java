@@ -3,22 +3,37 @@ package calendar;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.time.DayOfWeek;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Random;
+import java.util.UUID;
 
+import calendar.model.CalendarBackend;
 import calendar.model.CalendarLibrary;
 import calendar.model.CalendarModel;
 import calendar.model.Event;
+import calendar.model.EventSeries;
 import calendar.model.ICalendarLibrary;
 import calendar.model.ICalendarModel;
 import calendar.model.IEvent;
+import calendar.model.StringDictionary;
+import calendar.model.TimeInterval;
+import calendar.model.ZoneShift;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -152,4 +167,755 @@ public class CalendarModelTest {
     assertEquals("Meeting", events.get(0).getSubject());
   }
 
+  @Test
+  public void testLinearModelIsNotIndexed() {
+    assertTrue(model.isIndexed());
+    assertFalse(new CalendarModel(ZoneId.of("America/New_York"), false).isIndexed());
+  }
+
+  @Test
+  public void testIndexedQueriesMatchLinearScan() {
+    CalendarModel linear = new CalendarModel(ZoneId.of("America/New_York"), false);
+    Random random = new Random(42);
+    LocalDateTime base = LocalDateTime.of(2025, 6, 1, 0, 0);
+    for (int i = 0; i < 500; i++) {
+      LocalDateTime start = base.plusMinutes(random.nextInt(60 * 24 * 30));
+      Event event = new Event("E" + i, start, start.plusMinutes(15 + random.nextInt(600)));
+      model.addEvent(event);
+      linear.addEvent(event);
+    }
+    for (int i = 0; i < 200; i++) {
+      LocalDateTime from = base.plusMinutes(random.nextInt(60 * 24 * 30));
+      LocalDateTime to = from.plusMinutes(random.nextInt(60 * 24));
+      assertEquals(new HashSet<>(linear.getEventsWithinDates(from, to)),
+              new HashSet<>(model.getEventsWithinDates(from, to)));
+      assertEquals(linear.isBusy(from), model.isBusy(from));
+      assertEquals(new HashSet<>(linear.getEventsOnDate(from.toLocalDate())),
+              new HashSet<>(model.getEventsOnDate(from.toLocalDate())));
+    }
+  }
+
+  @Test
+  public void testIndexUpdatedOnRemove() {
+    model.addEvent(e1);
+    model.addEvent(eOverlap);
+    model.removeEvent(eDup);
+    assertEquals(1, model.getEventsOnDate(LocalDate.of(2025, 6, 10)).size());
+    assertTrue(model.isBusy(LocalDateTime.of(2025, 6, 10, 10, 0)));
+    assertFalse(model.isBusy(LocalDateTime.of(2025, 6, 10, 9, 15)));
+  }
+
+  @Test
+  public void testDuplicateLookupsOnLargeCalendar() {
+    LocalDateTime base = LocalDateTime.of(2025, 1, 1, 9, 0);
+    for (int i = 0; i < 20000; i++) {
+      model.addEvent(new Event("Standup", base.plusDays(i), base.plusDays(i).plusMinutes(15)));
+    }
+    Event last = new Event("Standup", base.plusDays(19999), base.plusDays(19999).plusMinutes(15));
+    assertTrue(model.hasConflict(last));
+    model.removeEvent(last);
+    assertFalse(model.hasConflict(last));
+    assertEquals(19999, model.getEvents().size());
+    assertEquals(base, model.getEvents().get(0).getStart());
+  }
+
+  @Test
+  public void testFindEventFollowsRemoveAndEdit() {
+    LocalDateTime startA = LocalDateTime.of(2025, 6, 12, 9, 0);
+    Event a1 = new Event("Amb", startA, startA.plusHours(1));
+    Event a2 = new Event("Amb", startA, startA.plusHours(2));
+    model.addEvent(a1);
+    model.addEvent(a2);
+    model.removeEvent(a2);
+    assertEquals(a1, model.findEvent("Amb", startA));
+
+    model.editSingleEvent(a1, "subject", "Renamed",
+            DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm"));
+    assertNull(model.findEvent("Amb", startA));
+    assertEquals("Renamed", model.findEvent("Renamed", startA).getSubject());
+  }
+
+  /**
+   * Adds a daily series of one-hour events starting on the given day at 9:00.
+   */
+  private UUID addDailySeries(String subject, LocalDate first, int count) {
+    UUID seriesId = UUID.randomUUID();
+    for (int i = 0; i < count; i++) {
+      LocalDateTime start = first.plusDays(i).atTime(9, 0);
+      Event occurrence = new Event(subject, start, start.plusHours(1));
+      occurrence.setSeriesId(seriesId);
+      model.addEvent(occurrence);
+    }
+    return seriesId;
+  }
+
+  @Test
+  public void testEditWholeSeriesOnlyTouchesSeries() {
+    DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm");
+    addDailySeries("Standup", LocalDate.of(2025, 6, 2), 5);
+    model.addEvent(e1);
+    IEvent third = model.findEvent("Standup", LocalDateTime.of(2025, 6, 4, 9, 0));
+
+    assertEquals(5, model.editWholeSeries(third, "location", "Room 1", formatter));
+    for (IEvent e : model.getEvents()) {
+      assertEquals(e.getSeriesId() != null ? "Room 1" : "", e.getLocation());
+    }
+  }
+
+  @Test
+  public void testEditFutureEventsEditsTailOfSeries() {
+    DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm");
+    addDailySeries("Standup", LocalDate.of(2025, 6, 2), 5);
+    IEvent third = model.findEvent("Standup", LocalDateTime.of(2025, 6, 4, 9, 0));
+
+    assertEquals(3, model.editFutureEvents(third, "subject", "Sync", formatter));
+    assertNotNull(model.findEvent("Standup", LocalDateTime.of(2025, 6, 3, 9, 0)));
+    assertNotNull(model.findEvent("Sync", LocalDateTime.of(2025, 6, 4, 9, 0)));
+    assertNotNull(model.findEvent("Sync", LocalDateTime.of(2025, 6, 6, 9, 0)));
+    assertNull(model.findEvent("Standup", LocalDateTime.of(2025, 6, 6, 9, 0)));
+  }
+
+  @Test
+  public void testPagingMatchesLinearScan() {
+    CalendarModel linear = new CalendarModel(ZoneId.of("America/New_York"), false);
+    Random random = new Random(7);
+    LocalDateTime base = LocalDateTime.of(2025, 6, 1, 0, 0);
+    for (int i = 0; i < 300; i++) {
+      LocalDateTime start = base.plusMinutes(random.nextInt(60 * 24 * 20));
+      Event event = new Event("E" + i, start, start.plusMinutes(30));
+      model.addEvent(event);
+      linear.addEvent(event);
+    }
+    LocalDate from = LocalDate.of(2025, 6, 10);
+    List<IEvent> page = model.getEventsFromDate(from, 7);
+    assertEquals(linear.getEventsFromDate(from, 7), page);
+    assertFalse(page.get(0).getStart().toLocalDate().isBefore(from));
+    for (int i = 0; i < 10; i++) {
+      IEvent cursor = page.get(page.size() - 1);
+      page = model.getEventsAfter(cursor, 7);
+      assertEquals(linear.getEventsAfter(cursor, 7), page);
+      assertTrue(page.get(0).getStart().compareTo(cursor.getStart()) >= 0);
+    }
+    assertEquals(10, model.getEventsFromDate(from).size());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testPageSizeMustBePositive() {
+    model.getEventsFromDate(LocalDate.of(2025, 6, 10), 0);
+  }
+
+  @Test
+  public void testRepeatedTextIsShared() {
+    for (int i = 0; i < 10; i++) {
+      LocalDateTime start = LocalDateTime.of(2025, 6, 2, 9, 0).plusDays(i);
+      model.addEvent(new Event(new String("Standup"), start, start.plusMinutes(15),
+              new String("Room 1"), new String("Daily sync"), "public"));
+    }
+    List<IEvent> stored = model.getEvents();
+    for (IEvent event : stored) {
+      assertSame(stored.get(0).getSubject(), event.getSubject());
+      assertSame(stored.get(0).getLocation(), event.getLocation());
+      assertSame(stored.get(0).getDescription(), event.getDescription());
+    }
+
+    IEvent first = stored.get(0);
+    DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm");
+    model.editSingleEvent(first, "location", new String("Room 1"), formatter);
+    assertSame(stored.get(1).getLocation(),
+            model.findEvent("Standup", first.getStart()).getLocation());
+
+    StringDictionary strings = model.getStringDictionary();
+    assertEquals(3, strings.size());
+    assertEquals(33, strings.getLookups());
+    assertEquals(30, strings.getHits());
+    assertEquals(30.0 / 33, strings.getHitRate(), 1e-9);
+  }
+
+  @Test
+  public void testSnapshotDoesNotSeeLaterChanges() {
+    addDailySeries("Standup", LocalDate.of(2025, 6, 2), 5);
+    ICalendarModel snapshot = model.snapshot();
+    IEvent first = model.findEvent("Standup", LocalDateTime.of(2025, 6, 2, 9, 0));
+    DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm");
+
+    model.editWholeSeries(first, "subject", "Sync", formatter);
+    model.addEvent(new Event("Lunch", LocalDateTime.of(2025, 6, 3, 12, 0),
+            LocalDateTime.of(2025, 6, 3, 13, 0)));
+
+    assertEquals(5, snapshot.getEvents().size());
+    assertNotNull(snapshot.findEvent("Standup", LocalDateTime.of(2025, 6, 4, 9, 0)));
+    assertNull(snapshot.findEvent("Sync", LocalDateTime.of(2025, 6, 4, 9, 0)));
+    assertFalse(snapshot.isBusy(LocalDateTime.of(2025, 6, 3, 12, 30)));
+
+    ICalendarModel later = model.snapshot();
+    assertEquals(6, later.getEvents().size());
+    assertEquals(model.getEventsWithinDates(LocalDateTime.of(2025, 6, 1, 0, 0),
+            LocalDateTime.of(2025, 6, 10, 0, 0)),
+            later.getEventsWithinDates(LocalDateTime.of(2025, 6, 1, 0, 0),
+                    LocalDateTime.of(2025, 6, 10, 0, 0)));
+    assertTrue(later.isBusy(LocalDateTime.of(2025, 6, 3, 12, 30)));
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void testSnapshotIsReadOnly() {
+    model.snapshot().addEvent(new Event("Lunch", LocalDateTime.of(2025, 6, 3, 12, 0),
+            LocalDateTime.of(2025, 6, 3, 13, 0)));
+  }
+
+  @Test
+  public void testBusyBitmapMatchesLinearScan() {
+    CalendarModel linear = new CalendarModel(ZoneId.of("America/New_York"), false);
+    assertTrue(model.hasBusyBitmap());
+    assertFalse(linear.hasBusyBitmap());
+    Random random = new Random(5);
+    LocalDateTime base = LocalDateTime.of(2025, 6, 1, 0, 0);
+    List<Event> added = new ArrayList<>();
+    for (int i = 0; i < 300; i++) {
+      LocalDateTime start = base.plusMinutes(random.nextInt(60 * 24 * 10));
+      Event event = new Event("E" + i, start, start.plusMinutes(1 + random.nextInt(600)));
+      model.addEvent(event);
+      linear.addEvent(event);
+      added.add(event);
+    }
+    for (int i = 0; i < added.size(); i += 2) {
+      model.removeEvent(added.get(i));
+      linear.removeEvent(added.get(i));
+    }
+    for (int i = 0; i < 2000; i++) {
+      LocalDateTime time = base.plusSeconds(30L * random.nextInt(2 * 60 * 24 * 11));
+      assertEquals(linear.isBusy(time), model.isBusy(time));
+    }
+    for (int i = 0; i < 200; i++) {
+      LocalDateTime from = base.plusMinutes(random.nextInt(60 * 24 * 10));
+      LocalDateTime to = from.plusMinutes(random.nextInt(60 * 24 * 2));
+      assertEquals(linear.countBusyMinutes(from, to), model.countBusyMinutes(from, to));
+    }
+  }
+
+  @Test
+  public void testBusyBitmapWithEventsOffTheMinute() {
+    LocalDateTime start = LocalDateTime.of(2025, 6, 2, 9, 0, 30);
+    Event odd = new Event("Odd", start, start.plusMinutes(2));
+    model.addEvent(odd);
+    model.addEvent(new Event("Next", LocalDateTime.of(2025, 6, 2, 9, 5),
+            LocalDateTime.of(2025, 6, 2, 9, 10)));
+
+    assertFalse(model.isBusy(LocalDateTime.of(2025, 6, 2, 9, 0, 10)));
+    assertTrue(model.isBusy(LocalDateTime.of(2025, 6, 2, 9, 0, 40)));
+    assertTrue(model.isBusy(LocalDateTime.of(2025, 6, 2, 9, 2)));
+    assertFalse(model.isBusy(LocalDateTime.of(2025, 6, 2, 9, 5)));
+    assertEquals(8, model.countBusyMinutes(LocalDateTime.of(2025, 6, 2, 0, 0),
+            LocalDateTime.of(2025, 6, 3, 0, 0)));
+
+    model.removeEvent(odd);
+    assertEquals(5, model.countBusyMinutes(LocalDateTime.of(2025, 6, 2, 0, 0),
+            LocalDateTime.of(2025, 6, 3, 0, 0)));
+    assertTrue(model.isBusy(LocalDateTime.of(2025, 6, 2, 9, 7, 15)));
+  }
+
+  @Test
+  public void testFrozenQueriesMatchLiveCalendar() {
+    CalendarModel live = new CalendarModel(ZoneId.of("America/New_York"));
+    Random random = new Random(9);
+    LocalDateTime base = LocalDateTime.of(2025, 6, 1, 0, 0);
+    for (int i = 0; i < 300; i++) {
+      LocalDateTime start = base.plusSeconds(random.nextInt(60 * 60 * 24 * 20))
+              .plusNanos(random.nextInt(3) * 500_000_000L);
+      Event event = new Event("E" + (i % 30), start,
+              start.plusSeconds(1 + random.nextInt(60 * 60 * 30)));
+      if (!live.hasConflict(event)) {
+        live.addEvent(event);
+        model.addEvent(event);
+      }
+    }
+    model.freeze();
+    assertTrue(model.isFrozen());
+    assertEquals(live.getEvents(), model.getEvents());
+    for (int i = 0; i < 300; i++) {
+      LocalDateTime from = base.plusSeconds(random.nextInt(60 * 60 * 24 * 20));
+      LocalDateTime to = from.plusSeconds(random.nextInt(60 * 60 * 24));
+      assertEquals(live.getEventsWithinDates(from, to), model.getEventsWithinDates(from, to));
+      assertEquals(live.isBusy(from), model.isBusy(from));
+      assertEquals(live.getEventsOnDate(from.toLocalDate()),
+              model.getEventsOnDate(from.toLocalDate()));
+      List<IEvent> page = live.getEventsFromDate(from.toLocalDate(), 5);
+      assertEquals(page, model.getEventsFromDate(from.toLocalDate(), 5));
+      if (!page.isEmpty()) {
+        IEvent cursor = page.get(page.size() - 1);
+        assertEquals(live.getEventsAfter(cursor, 5), model.getEventsAfter(cursor, 5));
+        assertEquals(live.findEvent(cursor.getSubject(), cursor.getStart()),
+                model.findEvent(cursor.getSubject(), cursor.getStart()));
+        assertTrue(model.hasConflict(cursor));
+      }
+    }
+  }
+
+  @Test
+  public void testWriteThawsFrozenCalendar() {
+    addDailySeries("Standup", LocalDate.of(2025, 6, 2), 5);
+    model.freeze();
+    ICalendarModel frozenView = model.snapshot();
+    IEvent third = model.findEvent("Standup", LocalDateTime.of(2025, 6, 4, 9, 0));
+    DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm");
+
+    assertEquals(3, model.editFutureEvents(third, "subject", "Sync", formatter));
+    assertFalse(model.isFrozen());
+    assertNotNull(model.findEvent("Sync", LocalDateTime.of(2025, 6, 5, 9, 0)));
+    assertTrue(model.isBusy(LocalDateTime.of(2025, 6, 5, 9, 30)));
+    assertNotNull(frozenView.findEvent("Standup", LocalDateTime.of(2025, 6, 5, 9, 0)));
+
+    model.freeze();
+    model.addEvent(new Event("Lunch", LocalDateTime.of(2025, 6, 3, 12, 0),
+            LocalDateTime.of(2025, 6, 3, 13, 0)));
+    assertFalse(model.isFrozen());
+    assertEquals(6, model.getEvents().size());
+  }
+
+  @Test
+  public void testBusyIntervalsAreCoalescedAndClipped() {
+    model.addEvent(new Event("A", LocalDateTime.of(2025, 6, 2, 8, 0),
+            LocalDateTime.of(2025, 6, 2, 9, 30)));
+    model.addEvent(new Event("B", LocalDateTime.of(2025, 6, 2, 9, 0),
+            LocalDateTime.of(2025, 6, 2, 10, 0)));
+    model.addEvent(new Event("C", LocalDateTime.of(2025, 6, 2, 10, 0),
+            LocalDateTime.of(2025, 6, 2, 10, 15)));
+    model.addEvent(new Event("D", LocalDateTime.of(2025, 6, 2, 9, 10),
+            LocalDateTime.of(2025, 6, 2, 9, 20)));
+    model.addEvent(new Event("E", LocalDateTime.of(2025, 6, 2, 11, 0),
+            LocalDateTime.of(2025, 6, 2, 13, 0)));
+
+    List<TimeInterval> busy = model.getBusyIntervals(LocalDateTime.of(2025, 6, 2, 8, 30),
+            LocalDateTime.of(2025, 6, 2, 12, 0));
+    assertEquals(2, busy.size());
+    assertEquals(new TimeInterval(LocalDateTime.of(2025, 6, 2, 8, 30),
+            LocalDateTime.of(2025, 6, 2, 10, 15)), busy.get(0));
+    assertEquals(new TimeInterval(LocalDateTime.of(2025, 6, 2, 11, 0),
+            LocalDateTime.of(2025, 6, 2, 12, 0)), busy.get(1));
+
+    CalendarModel linear = new CalendarModel(ZoneId.of("America/New_York"), false);
+    for (IEvent e : model.getEvents()) {
+      linear.addEvent(e);
+    }
+    assertEquals(busy, linear.getBusyIntervals(LocalDateTime.of(2025, 6, 2, 8, 30),
+            LocalDateTime.of(2025, 6, 2, 12, 0)));
+  }
+
+  @Test
+  public void testAddEventsIsAllOrNothing() {
+    LocalDateTime start = LocalDateTime.of(2025, 6, 2, 9, 0);
+    model.addEvent(new Event("Standup", start.plusDays(2), start.plusDays(2).plusMinutes(15)));
+    List<Event> batch = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      batch.add(new Event("Standup", start.plusDays(i), start.plusDays(i).plusMinutes(15)));
+    }
+    boolean rejected = false;
+    try {
+      model.addEvents(batch);
+    } catch (IllegalArgumentException e) {
+      rejected = true;
+    }
+    assertTrue(rejected);
+    assertEquals(1, model.getEvents().size());
+
+    batch.remove(2);
+    batch.add(new Event("Standup", start, start.plusMinutes(15)));
+    rejected = false;
+    try {
+      model.addEvents(batch);
+    } catch (IllegalArgumentException e) {
+      rejected = true;
+    }
+    assertTrue(rejected);
+    assertEquals(1, model.getEvents().size());
+
+    batch.remove(batch.size() - 1);
+    ICalendarModel before = model.snapshot();
+    model.addEvents(batch);
+    assertEquals(5, model.getEvents().size());
+    assertEquals(1, before.getEvents().size());
+    assertEquals(5, model.snapshot().getEvents().size());
+    assertTrue(model.isBusy(start.plusDays(3).plusMinutes(5)));
+  }
+
+  @Test
+  public void testBulkRemovesMatchEveryBackend() {
+    ZoneId zone = ZoneId.of("America/New_York");
+    List<ICalendarModel> models = new ArrayList<>();
+    for (CalendarBackend backend : CalendarBackend.values()) {
+      models.add(backend.create(zone));
+    }
+    models.add(new CalendarModel(zone, false, true));
+    Random random = new Random(5);
+    LocalDateTime base = LocalDateTime.of(2025, 1, 1, 0, 0);
+    List<Event> expected = new ArrayList<>();
+    UUID seriesId = UUID.randomUUID();
+    for (int i = 0; i < 300; i++) {
+      LocalDateTime start = base.plusMinutes(random.nextInt(60 * 24 * 60));
+      Event event = new Event("E" + i, start, start.plusMinutes(15 + random.nextInt(600)));
+      if (i % 10 == 0) {
+        event.setSeriesId(seriesId);
+      }
+      expected.add(event);
+    }
+    for (ICalendarModel m : models) {
+      for (Event event : expected) {
+        Event copy = new Event(event.getSubject(), event.getStart(), event.getEnd());
+        copy.setSeriesId(event.getSeriesId());
+        m.addEvent(copy);
+      }
+    }
+
+    LocalDateTime from = base.plusDays(10);
+    LocalDateTime to = base.plusDays(20);
+    expected.removeIf(e -> e.getEnd().isAfter(from) && e.getStart().isBefore(to));
+    int inRange = 300 - expected.size();
+    long seriesLeft = expected.stream().filter(e -> seriesId.equals(e.getSeriesId())).count();
+    expected.removeIf(e -> seriesId.equals(e.getSeriesId()));
+
+    for (ICalendarModel m : models) {
+      ICalendarModel before = m.snapshot();
+      assertEquals(inRange, m.removeRange(from, to));
+      assertEquals(seriesLeft, m.removeSeries(seriesId));
+      assertEquals(0, m.removeSeries(seriesId));
+      assertEquals(300, before.getEvents().size());
+      assertEquals(expected.size(), m.getEvents().size());
+      assertTrue(m.getEventsWithinDates(from, to).isEmpty());
+      for (int i = 0; i < 200; i++) {
+        LocalDateTime time = base.plusMinutes(random.nextInt(60 * 24 * 60));
+        boolean busy = expected.stream()
+                .anyMatch(e -> e.getStart().isBefore(time) && e.getEnd().isAfter(time));
+        assertEquals(busy, m.isBusy(time));
+      }
+    }
+  }
+
+  @Test
+  public void testRemoveRangeKeepsZeroLengthEventsAtItsStart() {
+    ZoneId zone = ZoneId.of("America/New_York");
+    List<ICalendarModel> models = new ArrayList<>();
+    for (CalendarBackend backend : CalendarBackend.values()) {
+      models.add(backend.create(zone));
+    }
+    models.add(new CalendarModel(zone, false));
+    LocalDateTime start = LocalDateTime.of(2025, 6, 2, 9, 0);
+    for (ICalendarModel m : models) {
+      m.addEvent(new Event("Marker", start, start));
+      m.addEvent(new Event("Review", start, start.plusHours(1)));
+      m.addEvent(new Event("Inside", start.plusHours(2), start.plusHours(2)));
+      assertEquals(2, m.removeRange(start, start.plusHours(3)));
+      assertEquals(1, m.getEvents().size());
+      assertEquals("Marker", m.getEvents().get(0).getSubject());
+    }
+  }
+
+  @Test
+  public void testRemoveEventsIsAllOrNothing() {
+    model.addEvent(e1);
+    model.addEvent(e2);
+    boolean rejected = false;
+    try {
+      model.removeEvents(List.of(e1, eOverlap));
+    } catch (IllegalArgumentException e) {
+      rejected = true;
+    }
+    assertTrue(rejected);
+    assertEquals(2, model.getEvents().size());
+
+    model.removeEvents(List.of(e1, e2));
+    assertTrue(model.getEvents().isEmpty());
+    assertFalse(model.isBusy(LocalDateTime.of(2025, 6, 10, 9, 30)));
+  }
+
+  @Test
+  public void testRollbackUndoesChangesOnEveryBackend() {
+    ZoneId zone = ZoneId.of("America/New_York");
+    DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm");
+    for (CalendarBackend backend : CalendarBackend.values()) {
+      ICalendarModel m = backend.create(zone);
+      LocalDateTime start = LocalDateTime.of(2025, 6, 2, 9, 0);
+      for (int i = 0; i < 10; i++) {
+        m.addEvent(new Event("E" + i, start.plusHours(i), start.plusHours(i).plusMinutes(45),
+                "Room " + i, "", "public"));
+      }
+      List<IEvent> before = m.getEvents();
+
+      m.beginTransaction();
+      assertTrue(m.isInTransaction());
+      m.addEvent(new Event("New", start.plusDays(1), start.plusDays(1).plusHours(1)));
+      m.removeEvent(m.findEvent("E0", start));
+      m.editSingleEvent(m.findEvent("E1", start.plusHours(1)), "location", "Moved", formatter);
+      assertEquals(4, m.removeRange(start.plusHours(5), start.plusHours(9)));
+      m.rollbackTransaction();
+
+      assertFalse(m.isInTransaction());
+      assertEquals(new HashSet<>(before), new HashSet<>(m.getEvents()));
+      assertEquals("Room 1", m.findEvent("E1", start.plusHours(1)).getLocation());
+      assertTrue(m.isBusy(start.plusHours(6).plusMinutes(10)));
+      assertFalse(m.isBusy(start.plusDays(1).plusMinutes(10)));
+    }
+  }
+
+  @Test
+  public void testTransactionIsPublishedOnCommit() {
+    LocalDateTime start = LocalDateTime.of(2025, 6, 2, 9, 0);
+    model.addEvent(new Event("Keep", start, start.plusHours(1)));
+    model.addEvent(new Event("Drop", start.plusHours(2), start.plusHours(3)));
+
+    model.beginTransaction();
+    model.removeEvent(model.findEvent("Drop", start.plusHours(2)));
+    model.addEvent(new Event("Added", start.plusHours(4), start.plusHours(5)));
+    assertFalse(model.isBusy(start.plusHours(2).plusMinutes(30)));
+    assertEquals(60, model.countBusyMinutes(start.plusHours(2), start.plusHours(5)));
+    assertEquals(2, model.snapshot().getEvents().size());
+    assertNotNull(model.snapshot().findEvent("Drop", start.plusHours(2)));
+    model.commitTransaction();
+
+    assertNull(model.snapshot().findEvent("Drop", start.plusHours(2)));
+    assertNotNull(model.snapshot().findEvent("Added", start.plusHours(4)));
+    assertFalse(model.isBusy(start.plusHours(2).plusMinutes(30)));
+    assertEquals(60, model.countBusyMinutes(start.plusHours(2), start.plusHours(5)));
+  }
+
+  @Test
+  public void testSeriesOccurrencesAreBuiltOnDemand() {
+    LocalDateTime start = LocalDateTime.of(2025, 6, 2, 9, 0);
+    EventSeries series = new EventSeries("Standup", start, start.plusMinutes(15),
+            EnumSet.allOf(DayOfWeek.class), LocalDate.of(2035, 6, 1));
+    model.addSeries(series);
+
+    assertEquals(1, model.getEventsWithinDates(start, start.plusDays(1)).size());
+    LocalDateTime later = start.plusYears(5);
+    IEvent occurrence = model.findEvent("Standup", later);
+    assertNotNull(occurrence);
+    assertEquals(series.getSeriesId(), occurrence.getSeriesId());
+    assertTrue(model.isBusy(later.plusMinutes(5)));
+    assertFalse(model.isBusy(later.plusMinutes(20)));
+    assertEquals(1, model.getEventsOnDate(later.toLocalDate()).size());
+    assertEquals(15, model.countBusyMinutes(later, later.plusHours(1)));
+    List<IEvent> page = model.getEventsFromDate(later.toLocalDate(), 3);
+    assertEquals(3, page.size());
+    assertEquals(later.plusDays(2), page.get(2).getStart());
+    assertTrue(model.hasConflict(new Event("Standup", later, later.plusMinutes(15))));
+
+    boolean rejected = false;
+    try {
+      model.addEvent(new Event("Standup", later, later.plusMinutes(15)));
+    } catch (IllegalArgumentException e) {
+      rejected = true;
+    }
+    assertTrue(rejected);
+
+    assertEquals(365, model.removeRange(later, later.plusDays(365)));
+    assertFalse(model.isBusy(later.plusDays(100).plusMinutes(5)));
+    assertTrue(model.isBusy(later.plusDays(365).plusMinutes(5)));
+  }
+
+  @Test
+  public void testBusyMinutesCountSeriesRulesWithTheBitmap() {
+    CalendarModel linear = new CalendarModel(ZoneId.of("America/New_York"), false);
+    Random random = new Random(11);
+    LocalDateTime base = LocalDateTime.of(2025, 6, 2, 0, 0);
+    for (int i = 0; i < 150; i++) {
+      LocalDateTime start = base.plusMinutes(random.nextInt(60 * 24 * 20));
+      Event event = new Event("E" + i, start, start.plusMinutes(1 + random.nextInt(240)));
+      model.addEvent(event);
+      linear.addEvent(event);
+    }
+    EventSeries[] series = {
+        new EventSeries("Standup", base.plusHours(9), base.plusHours(9).plusMinutes(15),
+                EnumSet.allOf(DayOfWeek.class), 30),
+        new EventSeries("Standup", base.plusHours(17), base.plusHours(17).plusMinutes(10),
+                EnumSet.of(DayOfWeek.TUESDAY), 3),
+        new EventSeries("Review", base.plusHours(10), base.plusHours(11).plusMinutes(30),
+                EnumSet.of(DayOfWeek.MONDAY, DayOfWeek.FRIDAY), 6),
+        new EventSeries("Overlap", base.plusHours(9).plusMinutes(10), base.plusHours(10),
+                EnumSet.of(DayOfWeek.MONDAY), 2)};
+    for (EventSeries each : series) {
+      model.addSeries(each);
+      linear.addSeries(each);
+      for (int i = 0; i < 100; i++) {
+        LocalDateTime from = base.plusMinutes(random.nextInt(60 * 24 * 20));
+        LocalDateTime to = from.plusMinutes(random.nextInt(60 * 24 * 3));
+        assertEquals(linear.countBusyMinutes(from, to), model.countBusyMinutes(from, to));
+        LocalDateTime time = base.plusSeconds(30L * random.nextInt(2 * 60 * 24 * 20));
+        assertEquals(linear.isBusy(time), model.isBusy(time));
+      }
+    }
+    LocalDateTime tuesday = base.plusDays(1).plusHours(17);
+    assertTrue(model.hasConflict(new Event("Standup", tuesday, tuesday.plusMinutes(10))));
+    assertFalse(model.hasConflict(new Event("Review", tuesday, tuesday.plusMinutes(10))));
+    assertNotNull(model.findEvent("Standup", tuesday));
+  }
+
+  @Test
+  public void testEditingAnOccurrenceStoresOnlyThatOne() {
+    DateTimeFormatter formatter = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
+    LocalDateTime start = LocalDateTime.of(2025, 6, 2, 9, 0);
+    EventSeries series = new EventSeries("Standup", start, start.plusMinutes(15),
+            EnumSet.of(DayOfWeek.MONDAY, DayOfWeek.WEDNESDAY), 10);
+    model.addSeries(series);
+    assertEquals(10, model.getEvents().size());
+
+    LocalDateTime wednesday = start.plusDays(2);
+    assertTrue(model.editSingleEvent(model.findEvent("Standup", wednesday), "location",
+            "Room 4", formatter));
+    assertEquals(10, model.getEvents().size());
+    assertEquals("Room 4", model.findEvent("Standup", wednesday).getLocation());
+    assertEquals("", model.findEvent("Standup", start).getLocation());
+
+    assertEquals(10, model.editWholeSeries(model.findEvent("Standup", start), "subject",
+            "Sync", formatter));
+    assertNull(model.findEvent("Standup", start));
+    assertEquals("Room 4", model.findEvent("Sync", wednesday).getLocation());
+    assertNotNull(model.findEvent("Sync", start.plusDays(7)));
+
+    model.removeEvent(model.findEvent("Sync", start));
+    assertEquals(9, model.getEvents().size());
+    assertEquals(2, model.removeRange(start.plusDays(6), start.plusDays(10)));
+    assertEquals(7, model.removeSeries(series.getSeriesId()));
+    assertTrue(model.getEvents().isEmpty());
+  }
+
+  @Test
+  public void testRollbackAndSnapshotsKeepSeriesRules() {
+    LocalDateTime start = LocalDateTime.of(2025, 6, 2, 9, 0);
+    EventSeries series = new EventSeries("Standup", start, start.plusMinutes(15),
+            EnumSet.allOf(DayOfWeek.class), 30);
+    model.addSeries(series);
+    ICalendarModel before = model.snapshot();
+
+    model.beginTransaction();
+    model.removeEvent(model.findEvent("Standup", start));
+    model.addSeries(new EventSeries("Review", start.plusHours(1), start.plusHours(2),
+            EnumSet.of(DayOfWeek.FRIDAY), 4));
+    assertEquals(30, model.snapshot().getEvents().size());
+    model.rollbackTransaction();
+
+    assertEquals(30, model.getEvents().size());
+    assertNotNull(model.findEvent("Standup", start));
+    assertNull(model.findEvent("Review", start.plusDays(4).plusHours(1)));
+    model.removeSeries(series.getSeriesId());
+    assertEquals(30, before.getEvents().size());
+    assertTrue(before.isBusy(start.plusDays(3).plusMinutes(1)));
+    assertTrue(model.snapshot().getEvents().isEmpty());
+  }
+
+  @Test
+  public void testRollbackPutsBackAnEventThatDuplicatedADetachedOccurrence() {
+    LocalDateTime start = LocalDateTime.of(2025, 6, 2, 9, 0);
+    CalendarModel[] models = {model, new CalendarModel(ZoneId.of("America/New_York"), false)};
+    for (CalendarModel calendar : models) {
+      calendar.addSeries(new EventSeries("Standup", start, start.plusMinutes(15),
+              EnumSet.allOf(DayOfWeek.class), 3));
+      calendar.beginTransaction();
+      calendar.removeEvent(calendar.findEvent("Standup", start));
+      Event plain = new Event("Standup", start, start.plusMinutes(15));
+      calendar.addEvent(plain);
+      calendar.removeEvent(plain);
+      calendar.rollbackTransaction();
+
+      assertFalse(calendar.isInTransaction());
+      assertEquals(3, calendar.getEvents().size());
+      IEvent restored = calendar.findEvent("Standup", start);
+      assertNotNull(restored);
+      assertNotNull(restored.getSeriesId());
+    }
+  }
+
+  @Test
+  public void testSeriesEditsOverlayTheRule() {
+    DateTimeFormatter formatter = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
+    LocalDateTime start = LocalDateTime.of(2025, 6, 2, 9, 0);
+    EventSeries series = new EventSeries("Standup", start, start.plusMinutes(15),
+            EnumSet.allOf(DayOfWeek.class), 1000);
+    model.addSeries(series);
+    LocalDateTime middle = start.plusDays(500);
+    ICalendarModel before = model.snapshot();
+
+    assertEquals(500, model.editFutureEvents(model.findEvent("Standup", middle), "location",
+            "Room 2", formatter));
+    assertTrue(model.editSingleEvent(model.findEvent("Standup", middle.plusDays(1)),
+            "status", "private", formatter));
+    assertEquals("", model.findEvent("Standup", middle.minusDays(1)).getLocation());
+    assertEquals("Room 2", model.findEvent("Standup", middle).getLocation());
+    IEvent edited = model.findEvent("Standup", middle.plusDays(1));
+    assertEquals("Room 2", edited.getLocation());
+    assertEquals("private", edited.getStatus());
+    assertEquals("public", model.findEvent("Standup", middle.plusDays(2)).getStatus());
+    assertEquals("", before.findEvent("Standup", middle).getLocation());
+
+    assertEquals(1000, model.editWholeSeries(edited, "location", "Room 3", formatter));
+    assertEquals("Room 3", model.findEvent("Standup", middle.plusDays(1)).getLocation());
+    assertEquals("private", model.findEvent("Standup", middle.plusDays(1)).getStatus());
+    assertEquals(1000, model.getEvents().size());
+    assertEquals(1000, model.removeSeries(series.getSeriesId()));
+  }
+
+  @Test
+  public void testOverlappingSeriesEditsKeepTheLatestValue() {
+    DateTimeFormatter formatter = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
+    LocalDateTime start = LocalDateTime.of(2025, 6, 2, 9, 0);
+    model.addSeries(new EventSeries("Standup", start, start.plusMinutes(15),
+            EnumSet.allOf(DayOfWeek.class), 60));
+    String[] locations = new String[60];
+    String[] statuses = new String[60];
+    Arrays.fill(locations, "");
+    Arrays.fill(statuses, "public");
+    Random random = new Random(3);
+    for (int i = 0; i < 400; i++) {
+      int day = random.nextInt(60);
+      IEvent occurrence = model.findEvent("Standup", start.plusDays(day));
+      boolean location = random.nextBoolean();
+      String value = location ? "Room " + random.nextInt(5)
+              : (random.nextBoolean() ? "public" : "private");
+      String[] expected = location ? locations : statuses;
+      if (random.nextInt(3) == 0) {
+        model.editFutureEvents(occurrence, location ? "location" : "status", value, formatter);
+        Arrays.fill(expected, day, 60, value);
+      } else {
+        model.editSingleEvent(occurrence, location ? "location" : "status", value, formatter);
+        expected[day] = value;
+      }
+    }
+    for (int day = 0; day < 60; day++) {
+      IEvent occurrence = model.findEvent("Standup", start.plusDays(day));
+      assertEquals(locations[day], occurrence.getLocation());
+      assertEquals(statuses[day], occurrence.getStatus());
+    }
+  }
+
+  @Test
+  public void testZoneShiftMatchesZonedConversion() {
+    ZoneId newYork = ZoneId.of("America/New_York");
+    ZoneId[] targets = {ZoneId.of("Europe/London"), ZoneId.of("Asia/Kolkata"), newYork,
+        ZoneId.of("UTC")};
+    for (ZoneId target : targets) {
+      ZoneShift shift = new ZoneShift(newYork, target);
+      LocalDateTime time = LocalDateTime.of(2024, 1, 1, 0, 0);
+      while (time.getYear() < 2026) {
+        assertEquals(time.atZone(newYork).withZoneSameInstant(target).toLocalDateTime(),
+                shift.apply(time));
+        time = time.plusMinutes(47);
+      }
+    }
+    ZoneId[] unusual = {ZoneId.of("Australia/Lord_Howe"), ZoneId.of("Europe/Dublin"),
+        ZoneId.of("Pacific/Apia"), ZoneId.of("America/Sao_Paulo"), ZoneId.of("Europe/Paris")};
+    Random random = new Random(23);
+    for (int i = 0; i < 20_000; i++) {
+      ZoneId from = unusual[random.nextInt(unusual.length)];
+      ZoneId to = unusual[random.nextInt(unusual.length)];
+      LocalDateTime time = LocalDateTime.of(1890, 1, 1, 0, 0)
+              .plusMinutes(random.nextInt(150 * 366 * 24 * 60));
+      assertEquals(time.atZone(from).withZoneSameInstant(to).toLocalDateTime(),
+              new ZoneShift(from, to).apply(time));
+    }
+    ZoneShift minutes = new ZoneShift(newYork, ZoneId.of("Asia/Kolkata"));
+    assertEquals(LocalDateTime.of(2025, 7, 1, 18, 30).toEpochSecond(ZoneOffset.UTC) / 60,
+            minutes.applyToMinutes(
+                    LocalDateTime.of(2025, 7, 1, 9, 0).toEpochSecond(ZoneOffset.UTC) / 60));
+    LocalDateTime gap = LocalDateTime.of(2025, 3, 9, 2, 30);
+    assertEquals(LocalDateTime.of(2025, 3, 9, 3, 30), new ZoneShift(newYork, newYork).apply(gap));
+    ZoneId utc = ZoneId.of("UTC");
+    assertSame(gap, new ZoneShift(utc, utc).apply(gap));
+  }
 }
@@ -0,0 +1,226 @@
+package calendar;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import calendar.model.CalendarModel;
+import calendar.model.ColumnarCalendarModel;
+import calendar.model.Event;
+import calendar.model.IEvent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for the ColumnarCalendarModel class.
+ * Checks that the column store answers queries like CalendarModel and round-trips every field.
+ */
+public class ColumnarCalendarModelTest {
+  private ColumnarCalendarModel model;
+
+  @Before
+  public void setUp() {
+    model = new ColumnarCalendarModel(ZoneId.of("America/New_York"));
+  }
+
+  @Test
+  public void testQueriesMatchCalendarModel() {
+    CalendarModel reference = new CalendarModel(ZoneId.of("America/New_York"));
+    Random random = new Random(11);
+    LocalDateTime base = LocalDateTime.of(2025, 6, 1, 0, 0);
+    for (int i = 0; i < 400; i++) {
+      LocalDateTime start = base.plusMinutes(random.nextInt(60 * 24 * 30));
+      Event event = new Event("E" + (i % 25), start, start.plusMinutes(15 + random.nextInt(900)));
+      if (!reference.hasConflict(event)) {
+        reference.addEvent(event);
+        model.addEvent(event);
+      }
+    }
+    assertEquals(reference.getEvents().size(), model.getEvents().size());
+    for (int i = 0; i < 200; i++) {
+      LocalDateTime from = base.plusMinutes(random.nextInt(60 * 24 * 30));
+      LocalDateTime to = from.plusMinutes(random.nextInt(60 * 24));
+      assertEquals(reference.getEventsWithinDates(from, to), model.getEventsWithinDates(from, to));
+      assertEquals(reference.isBusy(from), model.isBusy(from));
+      assertEquals(reference.isBusy(from.plusSeconds(30)), model.isBusy(from.plusSeconds(30)));
+      assertEquals(reference.getEventsOnDate(from.toLocalDate()),
+              model.getEventsOnDate(from.toLocalDate()));
+      List<IEvent> page = reference.getEventsFromDate(from.toLocalDate(), 4);
+      assertEquals(page, model.getEventsFromDate(from.toLocalDate(), 4));
+      if (!page.isEmpty()) {
+        IEvent cursor = page.get(page.size() - 1);
+        assertEquals(reference.getEventsAfter(cursor, 4), model.getEventsAfter(cursor, 4));
+      }
+    }
+  }
+
+  @Test
+  public void testInterleavedWritesAndQueriesMatchCalendarModel() {
+    CalendarModel reference = new CalendarModel(ZoneId.of("America/New_York"));
+    Random random = new Random(17);
+    LocalDateTime base = LocalDateTime.of(2025, 6, 1, 0, 0);
+    UUID seriesId = UUID.randomUUID();
+    List<Event> stored = new ArrayList<>();
+    for (int i = 0; i < 2000; i++) {
+      int action = random.nextInt(10);
+      if (action < 6 || stored.isEmpty()) {
+        LocalDateTime start = base.plusMinutes(random.nextInt(60 * 24 * 30));
+        Event event = new Event("E" + random.nextInt(30), start,
+                start.plusMinutes(random.nextInt(600)), "Room " + random.nextInt(5), "", "public");
+        if (i % 7 == 0) {
+          event.setSeriesId(seriesId);
+        }
+        if (!reference.hasConflict(event)) {
+          reference.addEvent(event);
+          model.addEvent(event);
+          stored.add(event);
+        }
+      } else if (action < 9) {
+        Event doomed = stored.remove(random.nextInt(stored.size()));
+        reference.removeEvent(doomed);
+        model.removeEvent(doomed);
+      } else {
+        LocalDateTime from = base.plusMinutes(random.nextInt(60 * 24 * 30));
+        LocalDateTime to = from.plusMinutes(random.nextInt(60 * 24));
+        assertEquals(reference.getEventsWithinDates(from, to),
+                model.getEventsWithinDates(from, to));
+        assertEquals(reference.isBusy(from), model.isBusy(from));
+      }
+    }
+    assertEquals(describe(reference.getEvents()), describe(model.getEvents()));
+    IEvent member = null;
+    for (Event e : stored) {
+      if (seriesId.equals(e.getSeriesId())) {
+        member = e;
+      }
+    }
+    DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm");
+    assertEquals(reference.editWholeSeries(member, "location", "Hall", formatter),
+            model.editWholeSeries(member, "location", "Hall", formatter));
+    assertEquals(describe(reference.getEvents()), describe(model.getEvents()));
+    assertEquals(reference.removeSeries(seriesId), model.removeSeries(seriesId));
+    assertEquals(describe(reference.getEvents()), describe(model.getEvents()));
+  }
+
+  @Test
+  public void testDictionaryDropsStringsNoEventUses() {
+    LocalDateTime start = LocalDateTime.of(2025, 1, 1, 9, 0);
+    List<Event> events = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      Event event = new Event("Visit " + i, start.plusDays(i), start.plusDays(i).plusHours(1),
+              "Room 1", "", "public");
+      events.add(event);
+      model.addEvent(event);
+    }
+    assertEquals(102, model.getDictionarySize());
+    model.removeEvents(events.subList(0, 90));
+    assertEquals(12, model.getDictionarySize());
+    assertEquals(10, model.getEvents().size());
+    model.removeRange(start, start.plusDays(200));
+    assertEquals(0, model.getDictionarySize());
+  }
+
+  @Test
+  public void testRoundTripsAllFields() {
+    LocalDateTime start = LocalDateTime.of(2025, 6, 10, 9, 0);
+    Event event = new Event("Review", start, start.plusHours(1), "Room 4", "Quarterly", "private");
+    UUID seriesId = UUID.randomUUID();
+    event.setSeriesId(seriesId);
+    model.addEvent(event);
+
+    IEvent stored = model.findEvent("Review", start);
+    assertEquals("Room 4", stored.getLocation());
+    assertEquals("Quarterly", stored.getDescription());
+    assertFalse(stored.isPublic());
+    assertEquals(seriesId, stored.getSeriesId());
+    assertEquals(start.plusHours(1), stored.getEnd());
+  }
+
+  @Test
+  public void testSharedStringsAreStoredOnce() {
+    for (int i = 0; i < 100; i++) {
+      LocalDateTime start = LocalDateTime.of(2025, 1, 1, 9, 0).plusDays(i);
+      model.addEvent(new Event("Standup", start, start.plusMinutes(15), "Room 1", "", "public"));
+    }
+    assertEquals(100, model.getEvents().size());
+    assertEquals(3, model.getDictionarySize());
+  }
+
+  @Test
+  public void testRemoveConflictAndFind() {
+    LocalDateTime start = LocalDateTime.of(2025, 6, 10, 9, 0);
+    Event a = new Event("Amb", start, start.plusHours(1));
+    Event b = new Event("Amb", start, start.plusHours(2));
+    model.addEvent(a);
+    model.addEvent(b);
+    assertTrue(model.hasConflict(new Event("Amb", start, start.plusHours(2))));
+    assertNull(model.findEvent("Amb", start));
+    model.removeEvent(b);
+    assertEquals(a, model.findEvent("Amb", start));
+    assertEquals(1, model.getEventsOnDate(LocalDate.of(2025, 6, 10)).size());
+  }
+
+  @Test
+  public void testEditWholeSeries() {
+    UUID seriesId = UUID.randomUUID();
+    for (int i = 0; i < 5; i++) {
+      LocalDateTime start = LocalDateTime.of(2025, 6, 2, 9, 0).plusDays(i);
+      Event occurrence = new Event("Standup", start, start.plusMinutes(15));
+      occurrence.setSeriesId(seriesId);
+      model.addEvent(occurrence);
+    }
+    IEvent third = model.findEvent("Standup", LocalDateTime.of(2025, 6, 4, 9, 0));
+    DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm");
+    assertEquals(5, model.editWholeSeries(third, "location", "Room 9", formatter));
+    assertEquals(3, model.editFutureEvents(third, "subject", "Sync", formatter));
+    assertEquals("Room 9", model.findEvent("Sync",
+            LocalDateTime.of(2025, 6, 6, 9, 0)).getLocation());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRejectsTimesWithSeconds() {
+    LocalDateTime start = LocalDateTime.of(2025, 6, 10, 9, 0, 30);
+    model.addEvent(new Event("Odd", start, start.plusHours(1)));
+  }
+
+  @Test
+  public void testAddEventsRollsBackWhenAnEventIsRejected() {
+    LocalDateTime start = LocalDateTime.of(2025, 6, 2, 9, 0);
+    List<Event> batch = new ArrayList<>();
+    batch.add(new Event("A", start, start.plusHours(1)));
+    batch.add(new Event("B", start, start.plusHours(1)));
+    batch.add(new Event("C", start.plusSeconds(30), start.plusHours(1)));
+    boolean rejected = false;
+    try {
+      model.addEvents(batch);
+    } catch (IllegalArgumentException e) {
+      rejected = true;
+    }
+    assertTrue(rejected);
+    assertTrue(model.getEvents().isEmpty());
+    batch.remove(2);
+    model.addEvents(batch);
+    assertEquals(2, model.getEvents().size());
+  }
+
+  private static List<String> describe(List<IEvent> events) {
+    List<String> described = new ArrayList<>();
+    for (IEvent e : events) {
+      described.add(e.toString() + " " + e.getSeriesId());
+    }
+    Collections.sort(described);
+    return described;
+  }
+}
@@ -0,0 +1,210 @@
+package calendar;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import calendar.model.CalendarBackend;
+import calendar.model.CalendarLibrary;
+import calendar.model.CalendarModel;
+import calendar.model.ConcurrentCalendarModel;
+import calendar.model.Event;
+import calendar.model.ICalendarModel;
+import calendar.model.IEvent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for the ConcurrentCalendarModel class.
+ * Checks that it answers queries like CalendarModel and stays consistent under
+ * concurrent readers and writers.
+ */
+public class ConcurrentCalendarModelTest {
+  private ConcurrentCalendarModel model;
+
+  @Before
+  public void setUp() {
+    model = new ConcurrentCalendarModel(ZoneId.of("America/New_York"));
+  }
+
+  @Test
+  public void testQueriesMatchCalendarModel() {
+    CalendarModel reference = new CalendarModel(ZoneId.of("America/New_York"));
+    Random random = new Random(3);
+    LocalDateTime base = LocalDateTime.of(2025, 6, 1, 0, 0);
+    for (int i = 0; i < 400; i++) {
+      LocalDateTime start = base.plusMinutes(random.nextInt(60 * 24 * 30));
+      Event event = new Event("E" + (i % 40), start, start.plusMinutes(15 + random.nextInt(900)));
+      if (!reference.hasConflict(event)) {
+        reference.addEvent(event);
+        model.addEvent(event);
+      }
+    }
+    for (int i = 0; i < 200; i++) {
+      LocalDateTime from = base.plusMinutes(random.nextInt(60 * 24 * 30));
+      LocalDateTime to = from.plusMinutes(random.nextInt(60 * 24));
+      assertEquals(reference.getEventsWithinDates(from, to), model.getEventsWithinDates(from, to));
+      assertEquals(reference.isBusy(from), model.isBusy(from));
+      assertEquals(reference.getEventsOnDate(from.toLocalDate()),
+              model.getEventsOnDate(from.toLocalDate()));
+      assertEquals(reference.getEventsFromDate(from.toLocalDate(), 5),
+              model.getEventsFromDate(from.toLocalDate(), 5));
+    }
+  }
+
+  @Test
+  public void testAddRemoveFindAndConflict() {
+    LocalDateTime start = LocalDateTime.of(2025, 6, 10, 9, 0);
+    Event a = new Event("Amb", start, start.plusHours(1));
+    Event b = new Event("Amb", start, start.plusHours(2));
+    model.addEvent(a);
+    assertTrue(model.hasConflict(new Event("Amb", start, start.plusHours(1))));
+    assertEquals(a, model.findEvent("Amb", start));
+    model.addEvent(b);
+    assertNull(model.findEvent("Amb", start));
+    model.removeEvent(b);
+    assertEquals(a, model.findEvent("Amb", start));
+    assertFalse(model.isBusy(start));
+    assertTrue(model.isBusy(start.plusMinutes(1)));
+  }
+
+  @Test
+  public void testRangeQueriesFollowTheLongestEventStillStored() {
+    LocalDateTime start = LocalDateTime.of(2025, 6, 1, 9, 0);
+    Event retreat = new Event("Retreat", start, start.plusDays(10));
+    Event offsite = new Event("Offsite", start.plusDays(1), start.plusDays(11));
+    Event lunch = new Event("Lunch", start.plusDays(9), start.plusDays(9).plusHours(1));
+    model.addEvent(retreat);
+    model.addEvent(offsite);
+    model.addEvent(lunch);
+    LocalDateTime late = start.plusDays(9).plusHours(3);
+    assertEquals(2, model.getEventsWithinDates(late, late.plusHours(1)).size());
+
+    model.removeEvent(retreat);
+    assertEquals(List.of(offsite), model.getEventsWithinDates(late, late.plusHours(1)));
+    assertTrue(model.isBusy(late));
+    model.removeEvent(offsite);
+    assertTrue(model.getEventsWithinDates(late, late.plusHours(1)).isEmpty());
+    assertEquals(List.of(lunch), model.getEventsWithinDates(start.plusDays(9), late));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testAddDuplicateThrows() {
+    LocalDateTime start = LocalDateTime.of(2025, 6, 10, 9, 0);
+    model.addEvent(new Event("Meeting", start, start.plusHours(1)));
+    model.addEvent(new Event("Meeting", start, start.plusHours(1)));
+  }
+
+  @Test
+  public void testEditWholeSeries() {
+    UUID seriesId = UUID.randomUUID();
+    for (int i = 0; i < 4; i++) {
+      LocalDateTime start = LocalDateTime.of(2025, 6, 2, 9, 0).plusDays(i);
+      Event occurrence = new Event("Standup", start, start.plusMinutes(15));
+      occurrence.setSeriesId(seriesId);
+      model.addEvent(occurrence);
+    }
+    IEvent second = model.findEvent("Standup", LocalDateTime.of(2025, 6, 3, 9, 0));
+    DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm");
+    assertEquals(3, model.editFutureEvents(second, "subject", "Sync", formatter));
+    assertEquals(4, model.editWholeSeries(second, "location", "Room 2", formatter));
+    assertEquals("Room 2", model.findEvent("Standup",
+            LocalDateTime.of(2025, 6, 2, 9, 0)).getLocation());
+  }
+
+  @Test
+  public void testConcurrentWritersAndReaders() throws InterruptedException {
+    int writers = 4;
+    int perWriter = 500;
+    LocalDateTime base = LocalDateTime.of(2025, 1, 1, 9, 0);
+    AtomicBoolean readerFailed = new AtomicBoolean(false);
+    List<Thread> threads = new ArrayList<>();
+    for (int w = 0; w < writers; w++) {
+      int writer = w;
+      threads.add(new Thread(() -> {
+        for (int i = 0; i < perWriter; i++) {
+          LocalDateTime start = base.plusHours(i);
+          model.addEvent(new Event("W" + writer, start, start.plusMinutes(30)));
+        }
+      }));
+    }
+    threads.add(new Thread(() -> {
+      try {
+        for (int i = 0; i < 200; i++) {
+          model.getEventsWithinDates(base, base.plusDays(30));
+          model.isBusy(base.plusMinutes(10));
+        }
+      } catch (RuntimeException e) {
+        readerFailed.set(true);
+      }
+    }));
+    for (Thread t : threads) {
+      t.start();
+    }
+    for (Thread t : threads) {
+      t.join();
+    }
+    assertFalse(readerFailed.get());
+    assertEquals(writers * perWriter, model.getEvents().size());
+    assertEquals(writers * 15, model.getEventsOnDate(LocalDate.of(2025, 1, 1)).size());
+  }
+
+  @Test
+  public void testSnapshotsNeverSeePartialSeriesEdits() throws InterruptedException {
+    UUID seriesId = UUID.randomUUID();
+    for (int i = 0; i < 50; i++) {
+      LocalDateTime start = LocalDateTime.of(2025, 6, 2, 9, 0).plusDays(i);
+      Event occurrence = new Event("Standup", start, start.plusMinutes(15), "Room 0", "",
+              "public");
+      occurrence.setSeriesId(seriesId);
+      model.addEvent(occurrence);
+    }
+    IEvent first = model.findEvent("Standup", LocalDateTime.of(2025, 6, 2, 9, 0));
+    DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm");
+    AtomicBoolean writing = new AtomicBoolean(true);
+    AtomicBoolean sawPartialEdit = new AtomicBoolean(false);
+    Thread reader = new Thread(() -> {
+      while (writing.get()) {
+        ICalendarModel snapshot = model.snapshot();
+        List<IEvent> events = snapshot.getEvents();
+        if (events.size() != 50) {
+          sawPartialEdit.set(true);
+        }
+        for (IEvent e : events) {
+          if (!e.getLocation().equals(events.get(0).getLocation())) {
+            sawPartialEdit.set(true);
+          }
+        }
+      }
+    });
+    reader.start();
+    for (int i = 1; i <= 100; i++) {
+      assertEquals(50, model.editWholeSeries(first, "location", "Room " + i, formatter));
+    }
+    writing.set(false);
+    reader.join();
+    assertFalse(sawPartialEdit.get());
+    assertEquals("Room 100", model.snapshot().findEvent("Standup",
+            LocalDateTime.of(2025, 6, 2, 9, 0)).getLocation());
+  }
+
+  @Test
+  public void testLibraryCreatesConcurrentCalendar() {
+    CalendarLibrary library = new CalendarLibrary();
+    library.createCalendar("Shared", "UTC", CalendarBackend.CONCURRENT);
+    library.useCalendar("Shared");
+    assertTrue(library.getActiveCalendar() instanceof ConcurrentCalendarModel);
+  }
+}
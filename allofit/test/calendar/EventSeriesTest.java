@@ -6,14 +6,19 @@ import org.junit.Test;
 import java.time.DayOfWeek;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.EnumSet;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
 
 import calendar.model.Event;
 import calendar.model.EventSeries;
+import calendar.model.IEvent;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 
@@ -126,5 +131,61 @@ public class EventSeriesTest {
       assertEquals(expectedEnd, e.getEnd());
     }
   }
-}
 
+  @Test
+  public void testOccurrenceArithmeticMatchesTheDatesBuilt() {
+    Set<DayOfWeek> days = EnumSet.of(DayOfWeek.TUESDAY, DayOfWeek.FRIDAY, DayOfWeek.SUNDAY);
+    EventSeries series = new EventSeries("Gym", mondayStart, mondayEnd.plusHours(1), days,
+            LocalDate.of(2031, 3, 14));
+    List<Event> list = series.getEvents();
+    for (int n = 1; n <= list.size(); n += 37) {
+      assertEquals(list.get(n - 1).getStart().toLocalDate(), series.getOccurrenceDate(n));
+    }
+    assertEquals(list.size(), series.countOccurrences(LocalDate.of(2020, 1, 1),
+            LocalDate.of(2040, 1, 1)));
+
+    LocalDate from = LocalDate.of(2027, 2, 3);
+    LocalDate to = LocalDate.of(2029, 11, 20);
+    long expected = list.stream().map(e -> e.getStart().toLocalDate())
+            .filter(d -> !d.isBefore(from) && !d.isAfter(to)).count();
+    assertEquals(expected, series.countOccurrences(from, to));
+    assertEquals(0, series.countOccurrences(to, from));
+
+    EventSeries counted = new EventSeries("Gym", mondayStart, mondayEnd, days, 500);
+    assertEquals(500, counted.getEvents().size());
+    assertEquals(list.get(499).getStart().toLocalDate(), counted.getLastDate());
+
+    boolean rejected = false;
+    try {
+      counted.getOccurrenceDate(501);
+    } catch (IllegalArgumentException e) {
+      rejected = true;
+    }
+    assertTrue(rejected);
+  }
+
+  @Test
+  public void testOccurrencesStreamAndSplitInOrder() {
+    Set<DayOfWeek> days = EnumSet.of(DayOfWeek.MONDAY, DayOfWeek.THURSDAY);
+    EventSeries series = new EventSeries("Sync", mondayStart, mondayEnd, days, 1001);
+    List<Event> built = series.getEvents();
+
+    assertEquals(built, series.occurrences().collect(Collectors.toList()));
+    assertEquals(built, series.occurrences().parallel().collect(Collectors.toList()));
+    assertEquals(1001, series.occurrences().count());
+
+    Spliterator<IEvent> rest = series.spliterator();
+    assertTrue(rest.hasCharacteristics(Spliterator.SIZED | Spliterator.ORDERED));
+    rest.tryAdvance(e -> assertEquals(built.get(0), e));
+    Spliterator<IEvent> prefix = rest.trySplit();
+    assertEquals(500, prefix.estimateSize());
+    assertEquals(500, rest.estimateSize());
+    prefix.tryAdvance(e -> assertEquals(built.get(1), e));
+    rest.tryAdvance(e -> assertEquals(built.get(501), e));
+
+    Spliterator<IEvent> single = new EventSeries("One", mondayStart, mondayEnd, days, 1)
+            .spliterator();
+    assertNull(single.trySplit());
+    assertEquals(1, single.estimateSize());
+  }
+}
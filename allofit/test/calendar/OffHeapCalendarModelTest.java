@@ -0,0 +1,202 @@
+package calendar;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import calendar.model.CalendarBackend;
+import calendar.model.CalendarModel;
+import calendar.model.Event;
+import calendar.model.IEvent;
+import calendar.model.OffHeapCalendarModel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for the OffHeapCalendarModel class.
+ * Checks that the direct-memory store answers queries like CalendarModel, round-trips every
+ * field and reuses the space of removed events.
+ */
+public class OffHeapCalendarModelTest {
+  private OffHeapCalendarModel model;
+
+  @Before
+  public void setUp() {
+    model = new OffHeapCalendarModel(ZoneId.of("America/New_York"));
+  }
+
+  @Test
+  public void testQueriesMatchCalendarModel() {
+    CalendarModel reference = new CalendarModel(ZoneId.of("America/New_York"));
+    Random random = new Random(17);
+    LocalDateTime base = LocalDateTime.of(2025, 6, 1, 0, 0);
+    List<Event> added = new ArrayList<>();
+    for (int i = 0; i < 400; i++) {
+      LocalDateTime start = base.plusMinutes(random.nextInt(60 * 24 * 30));
+      Event event = new Event("E" + (i % 25), start, start.plusMinutes(15 + random.nextInt(900)),
+              "Room " + i, "Notes " + i, "public");
+      if (!reference.hasConflict(event)) {
+        reference.addEvent(event);
+        model.addEvent(event);
+        added.add(event);
+      }
+    }
+    for (int i = 0; i < added.size(); i += 3) {
+      reference.removeEvent(added.get(i));
+      model.removeEvent(added.get(i));
+    }
+    assertEquals(reference.getEvents().size(), model.getEvents().size());
+    for (int i = 0; i < 200; i++) {
+      LocalDateTime from = base.plusMinutes(random.nextInt(60 * 24 * 30));
+      LocalDateTime to = from.plusMinutes(random.nextInt(60 * 24));
+      assertEquals(reference.getEventsWithinDates(from, to), model.getEventsWithinDates(from, to));
+      assertEquals(reference.isBusy(from), model.isBusy(from));
+      assertEquals(reference.isBusy(from.plusSeconds(30)), model.isBusy(from.plusSeconds(30)));
+      assertEquals(reference.getEventsOnDate(from.toLocalDate()),
+              model.getEventsOnDate(from.toLocalDate()));
+      List<IEvent> page = reference.getEventsFromDate(from.toLocalDate(), 4);
+      assertEquals(page, model.getEventsFromDate(from.toLocalDate(), 4));
+      if (!page.isEmpty()) {
+        IEvent cursor = page.get(page.size() - 1);
+        assertEquals(reference.getEventsAfter(cursor, 4), model.getEventsAfter(cursor, 4));
+      }
+    }
+  }
+
+  @Test
+  public void testInterleavedWritesAndPagingMatchCalendarModel() {
+    CalendarModel reference = new CalendarModel(ZoneId.of("America/New_York"));
+    Random random = new Random(29);
+    LocalDateTime base = LocalDateTime.of(2025, 6, 1, 0, 0);
+    List<Event> stored = new ArrayList<>();
+    for (int i = 0; i < 2000; i++) {
+      int action = random.nextInt(10);
+      if (action < 6 || stored.isEmpty()) {
+        LocalDateTime start = base.plusHours(random.nextInt(24 * 30));
+        Event event = new Event("E" + random.nextInt(30), start,
+                start.plusHours(1 + random.nextInt(2)), "Room " + i, "", "public");
+        if (!reference.hasConflict(event)) {
+          reference.addEvent(event);
+          model.addEvent(event);
+          stored.add(event);
+        }
+      } else if (action < 9) {
+        Event doomed = stored.remove(random.nextInt(stored.size()));
+        reference.removeEvent(doomed);
+        model.removeEvent(doomed);
+      } else {
+        LocalDateTime from = base.plusMinutes(random.nextInt(60 * 24 * 30));
+        assertEquals(reference.getEventsWithinDates(from, from.plusHours(6)),
+                model.getEventsWithinDates(from, from.plusHours(6)));
+      }
+    }
+    List<IEvent> paged = new ArrayList<>();
+    List<IEvent> page = model.getEventsFromDate(base.toLocalDate(), 7);
+    while (!page.isEmpty()) {
+      paged.addAll(page);
+      page = model.getEventsAfter(page.get(page.size() - 1), 7);
+    }
+    assertEquals(stored.size(), paged.size());
+    assertEquals(model.getEvents(), paged);
+    List<IEvent> expected = new ArrayList<>(reference.getEvents());
+    expected.sort(Comparator.comparing(IEvent::getStart).thenComparing(IEvent::getEnd)
+            .thenComparing(IEvent::getSubject));
+    assertEquals(expected, paged);
+  }
+
+  @Test
+  public void testRoundTripsAllFields() {
+    LocalDateTime start = LocalDateTime.of(2025, 6, 10, 9, 0);
+    Event event = new Event("Réunion ☕", start, start.plusHours(1), "Salle 4", "Trimestriel",
+            "private");
+    UUID seriesId = UUID.randomUUID();
+    event.setSeriesId(seriesId);
+    model.addEvent(event);
+
+    IEvent stored = model.findEvent("Réunion ☕", start);
+    assertEquals("Salle 4", stored.getLocation());
+    assertEquals("Trimestriel", stored.getDescription());
+    assertFalse(stored.isPublic());
+    assertEquals(seriesId, stored.getSeriesId());
+    assertEquals(start.plusHours(1), stored.getEnd());
+  }
+
+  @Test
+  public void testRemovedSpaceIsReused() {
+    LocalDateTime base = LocalDateTime.of(2025, 1, 1, 9, 0);
+    String notes = "x".repeat(200);
+    for (int round = 0; round < 20; round++) {
+      List<Event> batch = new ArrayList<>();
+      for (int i = 0; i < 100; i++) {
+        LocalDateTime start = base.plusDays(i);
+        Event event = new Event("Standup", start, start.plusMinutes(15), "Room 1", notes,
+                "public");
+        model.addEvent(event);
+        batch.add(event);
+      }
+      for (Event event : batch) {
+        model.removeEvent(event);
+      }
+    }
+    assertTrue(model.getEvents().isEmpty());
+    assertTrue(model.getOffHeapBytes() < 20 * 100 * 200);
+
+    model.addEvent(new Event("Standup", base, base.plusMinutes(15), "Room 1", notes, "public"));
+    assertEquals(notes, model.findEvent("Standup", base).getDescription());
+  }
+
+  @Test
+  public void testRemoveConflictAndFind() {
+    LocalDateTime start = LocalDateTime.of(2025, 6, 10, 9, 0);
+    Event a = new Event("Amb", start, start.plusHours(1));
+    Event b = new Event("Amb", start, start.plusHours(2));
+    model.addEvent(a);
+    model.addEvent(b);
+    assertTrue(model.hasConflict(new Event("Amb", start, start.plusHours(2))));
+    assertNull(model.findEvent("Amb", start));
+    model.removeEvent(b);
+    assertEquals(a, model.findEvent("Amb", start));
+    assertEquals(1, model.getEventsOnDate(LocalDate.of(2025, 6, 10)).size());
+  }
+
+  @Test
+  public void testEditWholeSeries() {
+    UUID seriesId = UUID.randomUUID();
+    for (int i = 0; i < 5; i++) {
+      LocalDateTime start = LocalDateTime.of(2025, 6, 2, 9, 0).plusDays(i);
+      Event occurrence = new Event("Standup", start, start.plusMinutes(15));
+      occurrence.setSeriesId(seriesId);
+      model.addEvent(occurrence);
+    }
+    IEvent third = model.findEvent("Standup", LocalDateTime.of(2025, 6, 4, 9, 0));
+    DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm");
+    assertEquals(5, model.editWholeSeries(third, "location", "Room 9", formatter));
+    assertEquals(3, model.editFutureEvents(third, "subject", "Sync", formatter));
+    assertEquals("Room 9", model.findEvent("Sync",
+            LocalDateTime.of(2025, 6, 6, 9, 0)).getLocation());
+  }
+
+  @Test
+  public void testBackendName() {
+    assertEquals(CalendarBackend.OFF_HEAP, CalendarBackend.fromName("off-heap"));
+    assertTrue(CalendarBackend.OFF_HEAP.create(ZoneId.of("UTC")) instanceof OffHeapCalendarModel);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRejectsTimesWithSeconds() {
+    LocalDateTime start = LocalDateTime.of(2025, 6, 10, 9, 0, 30);
+    model.addEvent(new Event("Odd", start, start.plusHours(1)));
+  }
+}